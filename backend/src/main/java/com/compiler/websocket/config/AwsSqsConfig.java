@@ -6,7 +6,10 @@ import org.springframework.context.annotation.Configuration;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
 import software.amazon.awssdk.regions.Region;
-import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.SqsAsyncClient;
+import software.amazon.awssdk.services.sqs.SqsAsyncClientBuilder;
+
+import java.net.URI;
 
 @Configuration
 public class AwsSqsConfig {
@@ -20,15 +23,22 @@ public class AwsSqsConfig {
     @Value("${aws.secret.key}")
     private String awsSecretKey;
 
+    // e.g. http://localhost:9324 to run against ElasticMQ; empty uses the regional AWS endpoint
+    @Value("${aws.sqs.endpoint:}")
+    private String sqsEndpoint;
+
     @Bean
-    public SqsClient sqsClient() {
-        return SqsClient.builder()
+    public SqsAsyncClient sqsAsyncClient() {
+        SqsAsyncClientBuilder builder = SqsAsyncClient.builder()
                 .region(Region.of(awsRegion))
                 .credentialsProvider(
                         StaticCredentialsProvider.create(
                                 AwsBasicCredentials.create(awsAccessKey, awsSecretKey)
                         )
-                )
-                .build();
+                );
+        if (!sqsEndpoint.isBlank()) {
+            builder.endpointOverride(URI.create(sqsEndpoint));
+        }
+        return builder.build();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,73 @@
+package com.compiler.websocket.config;
+
+import com.compiler.websocket.service.AdmissionControl;
+import com.compiler.websocket.websocket.AdmittingHandshakeWebSocketService;
+import com.compiler.websocket.websocket.ReactiveCompilerWebSocketHandler;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.boot.web.embedded.netty.NettyServerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.cors.CorsConfiguration;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+import org.springframework.web.reactive.handler.SimpleUrlHandlerMapping;
+import org.springframework.web.reactive.socket.server.WebSocketService;
+import org.springframework.web.reactive.socket.server.upgrade.ReactorNettyRequestUpgradeStrategy;
+import reactor.netty.http.server.WebsocketServerSpec;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * WebFlux/Reactor Netty websocket endpoint for the "reactive" profile, serving the same path,
+ * origins, admission control and 512 KB frame limit as WebSocketConfig does on Tomcat.
+ */
+@Configuration
+@Profile("reactive")
+public class ReactiveWebSocketConfig implements WebFluxConfigurer {
+
+    private static final int MAX_FRAME_BYTES = 512 * 1024;
+
+    private final AdmissionControl admissionControl;
+
+    @Value("${app.ws.path}")
+    private String wsPath;
+
+    @Value("${app.ws.allowed-origins:*}")
+    private String[] allowedOrigins;
+
+    @Value("${app.ws.admission.trust-forwarded-for:false}")
+    private boolean trustForwardedFor;
+
+    public ReactiveWebSocketConfig(AdmissionControl admissionControl) {
+        this.admissionControl = admissionControl;
+    }
+
+    @Bean
+    public SimpleUrlHandlerMapping webSocketHandlerMapping(ReactiveCompilerWebSocketHandler wsHandler) {
+        CorsConfiguration cors = new CorsConfiguration();
+        cors.setAllowedOrigins(List.of(allowedOrigins));
+        // ahead of the annotated controllers, like the servlet websocket mapping
+        SimpleUrlHandlerMapping mapping = new SimpleUrlHandlerMapping(Map.of(wsPath, wsHandler), -1);
+        mapping.setCorsConfigurations(Map.of(wsPath, cors));
+        return mapping;
+    }
+
+    // picked up by the auto-configured WebSocketHandlerAdapter
+    @Override
+    public WebSocketService getWebSocketService() {
+        return new AdmittingHandshakeWebSocketService(
+                new ReactorNettyRequestUpgradeStrategy(() -> WebsocketServerSpec.builder().maxFramePayloadLength(MAX_FRAME_BYTES)),
+                admissionControl, trustForwardedFor);
+    }
+
+    // Tomcat is on the classpath for the servlet stack and would otherwise be chosen to run WebFlux too
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory(ObjectProvider<NettyServerCustomizer> serverCustomizers) {
+        NettyReactiveWebServerFactory factory = new NettyReactiveWebServerFactory();
+        serverCustomizers.orderedStream().forEach(factory::addServerCustomizers);
+        return factory;
+    }
+}
@@ -6,6 +6,7 @@ import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
 import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
@@ -19,7 +20,7 @@ public class RedisConfig {
 
     // TODO: check this
     @Bean
-    public RedisConnectionFactory redisConnectionFactory(org.springframework.core.env.Environment env) {
+    public LettuceConnectionFactory redisConnectionFactory(org.springframework.core.env.Environment env) {
         RedisStandaloneConfiguration cfg = new RedisStandaloneConfiguration(
                 Objects.requireNonNull(env.getProperty("spring.data.redis.host")),
                 Integer.parseInt(Objects.requireNonNull(env.getProperty("spring.data.redis.port")))
@@ -31,7 +32,10 @@ public class RedisConfig {
             builder.useSsl();
         }
 
-        return new LettuceConnectionFactory(cfg, builder.build());
+        LettuceConnectionFactory factory = new LettuceConnectionFactory(cfg, builder.build());
+        // one native connection for all non-blocking commands: Lettuce pipelines them on it
+        factory.setShareNativeConnection(true);
+        return factory;
     }
 
     /**
@@ -59,6 +63,14 @@ public class RedisConfig {
         return container;
     }
 
+    /**
+     * Non-blocking commands (RedisPublisher) on the same Lettuce connection factory.
+     */
+    @Bean
+    public ReactiveStringRedisTemplate reactiveStringRedisTemplate(LettuceConnectionFactory connectionFactory) {
+        return new ReactiveStringRedisTemplate(connectionFactory);
+    }
+
     @Bean
     public StringRedisTemplate stringRedisTemplate(RedisConnectionFactory connectionFactory) {
         return new StringRedisTemplate(connectionFactory);
@@ -4,12 +4,15 @@ import com.compiler.websocket.websocket.CompilerWebSocketHandler;
 import com.compiler.websocket.websocket.CompilerWebSocketHandshakeInterceptor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
 import org.springframework.web.socket.config.annotation.EnableWebSocket;
 import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
 import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
 
+/** Servlet (Tomcat) websocket endpoint; the "reactive" profile serves it from ReactiveWebSocketConfig instead. */
 @Configuration
 @EnableWebSocket
+@Profile("!reactive")
 public class WebSocketConfig implements WebSocketConfigurer {
     private final CompilerWebSocketHandler wsHandler;
     private final CompilerWebSocketHandshakeInterceptor wsInterceptor;
@@ -0,0 +1,79 @@
+package com.compiler.websocket.messaging;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.PatternTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Owns the Redis subscriptions for job output channels ({@code app.jobs.subscription.mode}).
+ * <p>
+ * PER_JOB issues a SUBSCRIBE when a job is submitted and an UNSUBSCRIBE when it ends.
+ * PATTERN subscribes once to {@code job:*} at startup; jobs are then routed in process
+ * and output for jobs owned by other nodes is dropped before it is parsed.
+ */
+@Component
+public class JobChannelSubscriptions {
+
+    public enum Mode { PER_JOB, PATTERN }
+
+    private static final Logger logger = LoggerFactory.getLogger(JobChannelSubscriptions.class);
+
+    private final RedisMessageListenerContainer redisMessageListenerContainer;
+    private final Mode mode;
+    // the container only unsubscribes a channel for the listener that subscribed it
+    private final Map<String, MessageListener> jobListeners = new ConcurrentHashMap<>();
+    private final Object startLock = new Object();
+
+    public JobChannelSubscriptions(RedisMessageListenerContainer redisMessageListenerContainer,
+                                   @Value("${app.jobs.subscription.mode:per-job}") Mode mode) {
+        this.redisMessageListenerContainer = redisMessageListenerContainer;
+        this.mode = mode;
+    }
+
+    public Mode mode() {
+        return mode;
+    }
+
+    /** Called once by the listener itself; only PATTERN mode subscribes up front. */
+    public void subscribeAll(MessageListener listener) {
+        if (mode == Mode.PATTERN) {
+            String pattern = ChannelNaming.jobChannel("*");
+            redisMessageListenerContainer.addMessageListener(listener, new PatternTopic(pattern));
+            logger.info("Subscribed to pattern: {}", pattern);
+        }
+    }
+
+    public void subscribe(String jobId, MessageListener listener) {
+        if (mode == Mode.PER_JOB) {
+            String channel = ChannelNaming.jobChannel(jobId);
+            jobListeners.put(jobId, listener);
+            if (redisMessageListenerContainer.isListening()) {
+                redisMessageListenerContainer.addMessageListener(listener, new ChannelTopic(channel));
+            } else {
+                // channels added while the container is still starting to listen are never subscribed:
+                // let the first one start it alone (it stops again whenever the last job ends)
+                synchronized (startLock) {
+                    redisMessageListenerContainer.addMessageListener(listener, new ChannelTopic(channel));
+                }
+            }
+            logger.info("Subscribed to: {}", channel);
+        }
+    }
+
+    public void unsubscribe(String jobId) {
+        MessageListener listener = mode == Mode.PER_JOB ? jobListeners.remove(jobId) : null;
+        if (listener != null) {
+            String channel = ChannelNaming.jobChannel(jobId);
+            redisMessageListenerContainer.removeMessageListener(listener, new ChannelTopic(channel));
+            logger.info("Unsubscribed redis listener from: {}", channel);
+        }
+    }
+}
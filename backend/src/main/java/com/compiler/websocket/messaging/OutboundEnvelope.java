@@ -0,0 +1,165 @@
+package com.compiler.websocket.messaging;
+
+import com.compiler.websocket.model.OutboundType;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Typed wrapper around a runner payload, built once when the message leaves Redis.
+ * <p>
+ * The frame is the already-encoded websocket message, so the drainer only has to
+ * look at {@link #type()} to decide whether the job is finished. For STDOUT/STDERR
+ * the decoded text is kept as well so adjacent chunks can be merged into one frame.
+ * <p>
+ * {@code seq} is the Redis Stream entry id when output is recorded to a stream
+ * (see JobOutputReplay), and null on the plain pub/sub transport.
+ * <p>
+ * The frame is a {@link TextMessage} on the String path and a {@link BinaryMessage} wrapping the
+ * Redis body on the byte path ({@link #parse(JsonFactory, byte[])}): the servlet websocket API only
+ * sends text frames from a String, so a binary frame is the only way to skip decoding the payload
+ * and encoding it again. Both carry the same UTF-8 JSON.
+ */
+public record OutboundEnvelope(OutboundType type, String content, String seq, WebSocketMessage<?> frame,
+                               long receivedAtNanos) {
+
+    public static OutboundEnvelope of(OutboundType type, String payload) {
+        return new OutboundEnvelope(type, null, null, new TextMessage(payload), System.nanoTime());
+    }
+
+    /**
+     * Classify a payload by streaming its top-level fields. Runners write
+     * (seq,) job_id, type and content in that order, so parsing stops right after them.
+     */
+    public static OutboundEnvelope parse(JsonFactory jsonFactory, String payload) {
+        try (JsonParser parser = jsonFactory.createParser(payload)) {
+            return read(parser, new TextMessage(payload));
+        } catch (IOException e) {
+            // malformed payload: forward as-is, it is neither terminal nor mergeable
+            return of(OutboundType.UNKNOWN, payload);
+        }
+    }
+
+    /**
+     * {@link #parse(JsonFactory, String)} straight from the Redis body: the bytes become the frame
+     * without being decoded. A body that is not valid UTF-8 takes the String path so the client
+     * sees exactly what it used to.
+     */
+    public static OutboundEnvelope parse(JsonFactory jsonFactory, byte[] body) {
+        if (!Utf8.isValid(body)) {
+            return parse(jsonFactory, new String(body, StandardCharsets.UTF_8));
+        }
+        BinaryMessage frame = new BinaryMessage(body);
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            return read(parser, frame);
+        } catch (IOException e) {
+            return new OutboundEnvelope(OutboundType.UNKNOWN, null, null, frame, System.nanoTime());
+        }
+    }
+
+    private static OutboundEnvelope read(JsonParser parser, WebSocketMessage<?> frame) throws IOException {
+        OutboundType type = OutboundType.UNKNOWN;
+        String content = null;
+        String seq = null;
+        boolean typeSeen = false;
+
+        if (parser.nextToken() == JsonToken.START_OBJECT) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("type".equals(field)) {
+                    typeSeen = true;
+                    if (value == JsonToken.VALUE_STRING) {
+                        type = OutboundType.from(parser.getText());
+                    }
+                    if (!type.isText() || content != null) break;
+                } else if ("seq".equals(field) && value == JsonToken.VALUE_STRING) {
+                    seq = parser.getText();
+                } else if ("content".equals(field) && value == JsonToken.VALUE_STRING) {
+                    content = parser.getText();
+                    if (typeSeen) break;
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+
+        return new OutboundEnvelope(type, type.isText() ? content : null, seq, frame, System.nanoTime());
+    }
+
+    /** Prepend the stream entry id to a runner payload, mirroring what send-output.js publishes. */
+    public static String withSeq(String payload, String seq) {
+        return "{\"seq\":\"" + seq + "\"," + payload.substring(payload.indexOf('{') + 1);
+    }
+
+    /** Undo {@link #withSeq}. */
+    public static String withoutSeq(String payload, String seq) {
+        return "{" + payload.substring(("{\"seq\":\"" + seq + "\",").length());
+    }
+
+    /**
+     * Whether stream id {@code seq} comes strictly after {@code other} ("ms-n" ordering).
+     * A null {@code other} means nothing has been delivered yet. Never throws: an id that is not
+     * a valid stream id on either side counts as after, so output is delivered rather than lost.
+     */
+    public static boolean isAfter(String seq, String other) {
+        if (other == null || !isValidSeq(seq) || !isValidSeq(other)) return true;
+        int a = seq.indexOf('-');
+        int b = other.indexOf('-');
+        int cmp = Long.compare(Long.parseLong(seq, 0, a, 10), Long.parseLong(other, 0, b, 10));
+        if (cmp == 0) {
+            cmp = Long.compare(Long.parseLong(seq, a + 1, seq.length(), 10),
+                    Long.parseLong(other, b + 1, other.length(), 10));
+        }
+        return cmp > 0;
+    }
+
+    /** Whether {@code seq} is a Redis Stream entry id: two dash-separated parts of 1 to 18 digits. */
+    public static boolean isValidSeq(String seq) {
+        if (seq == null) return false;
+        int dash = seq.indexOf('-');
+        return dash > 0 && dash <= 18 && seq.length() - dash - 1 <= 18
+                && isDigits(seq, 0, dash) && isDigits(seq, dash + 1, seq.length());
+    }
+
+    private static boolean isDigits(String s, int from, int to) {
+        if (from >= to) return false;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') return false;
+        }
+        return true;
+    }
+
+    /** Whether this chunk can be merged with an adjacent chunk of the same type. */
+    public boolean isMergeable() {
+        return content != null;
+    }
+
+    public String payload() {
+        if (frame instanceof TextMessage text) {
+            return text.getPayload();
+        }
+        // the whole body: sending may already have advanced the buffer's position
+        ByteBuffer bytes = ((BinaryMessage) frame).getPayload();
+        return new String(bytes.array(), bytes.arrayOffset(), bytes.capacity(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Size used for memory accounting: the UTF-16 length stands in for bytes on the String path
+     * so nothing is encoded, the byte path has the real length.
+     */
+    public int sizeBytes() {
+        if (frame instanceof TextMessage text) {
+            return text.getPayload().length();
+        }
+        return ((BinaryMessage) frame).getPayload().capacity();
+    }
+}
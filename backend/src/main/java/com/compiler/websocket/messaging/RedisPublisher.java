@@ -1,44 +1,150 @@
 package com.compiler.websocket.messaging;
 
 import com.compiler.websocket.model.RedisPublisherPayload;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
 import org.springframework.stereotype.Component;
 
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Publishes input and control events to the runners without blocking the caller.
+ * <p>
+ * Every PUBLISH goes out on Lettuce's shared connection, which pipelines commands from all
+ * threads instead of waiting a round trip per command. Input for a job is sent one PUBLISH at
+ * a time: keystrokes arriving while the previous one is in flight are merged into the next
+ * INPUT_EVENT, so a paste or fast typing costs one command per round trip and order is kept.
+ * A channel's entry only lives while a send is in flight, and SESSION_CLOSED drops whatever
+ * input was still waiting, so nothing is published to a program after it was told to stop.
+ * Results come back as futures (receiver count) so callers decide what a failure means.
+ */
 @Component
 public class RedisPublisher {
 
     private static final Logger logger = LoggerFactory.getLogger(RedisPublisher.class);
-    private final StringRedisTemplate redisTemplate;
+    private final ReactiveStringRedisTemplate redisTemplate;
     private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    // input channel -> input waiting for that channel's in-flight INPUT_EVENT; removed once nothing is in flight
+    private final Map<String, PendingInput> pendingInputs = new ConcurrentHashMap<>();
+
+    private static final class PendingInput {
+        private final StringBuilder content = new StringBuilder();
+        private CompletableFuture<Long> merged = new CompletableFuture<>();
+        private boolean inFlight;
+        // out of the map: callers that still hold it must look the channel up again
+        private boolean removed;
+    }
 
-    public RedisPublisher(StringRedisTemplate redisTemplate, ObjectMapper objectMapper) {
+    public RedisPublisher(ReactiveStringRedisTemplate redisTemplate, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
         this.redisTemplate = redisTemplate;
         this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
     }
 
-    public void publish(String channel, RedisPublisherPayload redisPublisherPayload) {
-        try{
-            String messageBody = objectMapper.writeValueAsString(redisPublisherPayload);
-
-            redisTemplate.convertAndSend(channel, messageBody);
-            logger.info("INPUT_EVENT published on {}, message {}", channel, messageBody);
-        }catch(Exception exception) {
-            logger.error("Error while publishing to redis {}", exception.getMessage());
+    /**
+     * Forward program input. Completes once the INPUT_EVENT carrying it has been published.
+     */
+    public CompletableFuture<Long> publishInput(String channel, String content) {
+        while (true) {
+            PendingInput pending = pendingInputs.computeIfAbsent(channel, c -> new PendingInput());
+            synchronized (pending) {
+                if (pending.removed) continue;
+                if (pending.inFlight) {
+                    pending.content.append(content);
+                    return pending.merged;
+                }
+                pending.inFlight = true;
+            }
+            return sendInput(channel, pending, content);
         }
     }
 
-    public void publishSessionCloseEvent(String channel, RedisPublisherPayload redisPublisherPayload) {
-        try{
-            String messageBody = objectMapper.writeValueAsString(redisPublisherPayload);
+    private CompletableFuture<Long> sendInput(String channel, PendingInput pending, String content) {
+        CompletableFuture<Long> sent = send(channel, RedisPublisherPayload.builder()
+                .event_type("INPUT_EVENT")
+                .content(content)
+                .build());
+        sent.whenComplete((receivers, error) -> {
+            String next;
+            CompletableFuture<Long> merged;
+            synchronized (pending) {
+                if (pending.removed) {
+                    // closed while this was in flight; the merged input was dropped with it
+                    return;
+                }
+                if (pending.content.isEmpty()) {
+                    pending.inFlight = false;
+                    pending.removed = true;
+                    pendingInputs.remove(channel, pending);
+                    return;
+                }
+                next = pending.content.toString();
+                pending.content.setLength(0);
+                merged = pending.merged;
+                pending.merged = new CompletableFuture<>();
+            }
+            sendInput(channel, pending, next).whenComplete((r, e) -> {
+                if (e == null) merged.complete(r);
+                else merged.completeExceptionally(e);
+            });
+        });
+        return sent;
+    }
+
+    /** Channels with input in flight. */
+    int pendingChannels() {
+        return pendingInputs.size();
+    }
+
+    public CompletableFuture<Long> publishFlowControlEvent(String channel, RedisPublisherPayload redisPublisherPayload) {
+        return send(channel, redisPublisherPayload);
+    }
 
-            redisTemplate.convertAndSend(channel, messageBody);
-            logger.info("SESSION_CLOSED_EVENT published on {}, message {}", channel, messageBody);
-        }catch(Exception exception) {
-            logger.error("Error while publishing SESSION_CLOSED_EVENT to redis {}", exception.getMessage());
+    public CompletableFuture<Long> publishSessionCloseEvent(String channel, RedisPublisherPayload redisPublisherPayload) {
+        // the program is about to be stopped, input still waiting for it no longer matters
+        PendingInput pending = pendingInputs.remove(channel);
+        if (pending != null) {
+            synchronized (pending) {
+                pending.removed = true;
+                pending.content.setLength(0);
+                pending.merged.cancel(false);
+            }
         }
+        return send(channel, redisPublisherPayload);
+    }
+
+    private CompletableFuture<Long> send(String channel, RedisPublisherPayload redisPublisherPayload) {
+        String eventType = redisPublisherPayload.getEvent_type();
+        String messageBody;
+        try {
+            messageBody = objectMapper.writeValueAsString(redisPublisherPayload);
+        } catch (JsonProcessingException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        // toFuture() subscribes, which writes the command now without waiting for the reply
+        return redisTemplate.convertAndSend(channel, messageBody).toFuture()
+                .whenComplete((receivers, error) -> {
+                    if (error != null) {
+                        logger.error("Error while publishing {} to redis {}", eventType, error.getMessage());
+                        Counter.builder("redis.publish.failures")
+                                .description("Events to runners that could not be published")
+                                .tag("event", eventType)
+                                .register(meterRegistry)
+                                .increment();
+                    } else {
+                        logger.debug("{} published on {} to {} receivers", eventType, channel, receivers);
+                    }
+                });
     }
 
 }
@@ -1,36 +1,87 @@
 package com.compiler.websocket.messaging;
 
 import com.compiler.websocket.service.JobMessagingService;
+import com.compiler.websocket.service.JobMetrics;
+import com.compiler.websocket.service.ResultCache;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.connection.Message;
 import org.springframework.data.redis.connection.MessageListener;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Hands runner output from Redis to the owning job's queue.
+ * <p>
+ * With {@code app.jobs.output.byte-path} the channel is matched and the body classified as bytes,
+ * and the body itself becomes a binary websocket frame, so output is never decoded to a String
+ * and encoded again on its way to the client. Off by default: clients must accept binary frames.
+ */
 @Component
 public class RedisSubscriber implements MessageListener {
 
     private static final Logger logger = LoggerFactory.getLogger(RedisSubscriber.class);
 
     private final JobMessagingService jobMessagingService;
+    private final JobChannelSubscriptions jobChannelSubscriptions;
+    private final JsonFactory jsonFactory;
+    private final JobMetrics jobMetrics;
+    private final ResultCache resultCache;
+    private final boolean bytePath;
+
+    private static final byte[] JOB_PREFIX = "job:".getBytes(StandardCharsets.UTF_8);
 
-    public RedisSubscriber(JobMessagingService jobMessagingService) {
+    public RedisSubscriber(JobMessagingService jobMessagingService,
+                           JobChannelSubscriptions jobChannelSubscriptions,
+                           ObjectMapper objectMapper,
+                           JobMetrics jobMetrics,
+                           ResultCache resultCache,
+                           @Value("${app.jobs.output.byte-path:false}") boolean bytePath) {
         this.jobMessagingService = jobMessagingService;
+        this.jobChannelSubscriptions = jobChannelSubscriptions;
+        this.jsonFactory = objectMapper.getFactory();
+        this.jobMetrics = jobMetrics;
+        this.resultCache = resultCache;
+        this.bytePath = bytePath;
+    }
+
+    @PostConstruct
+    void subscribe() {
+        jobChannelSubscriptions.subscribeAll(this);
     }
 
     @Override
     public void onMessage(Message message, byte[] pattern) {
+        if (bytePath && isJobChannel(message.getChannel())) {
+            onJobMessage(message.getChannel(), message.getBody());
+            return;
+        }
+
         String channel = new String(message.getChannel());
         String payload = new String(message.getBody());
-        logger.debug("Redis message on {}: {}", channel, payload);
+        logger.trace("Redis message on {}: {}", channel, payload);
 
         try {
             if (channel.startsWith("job:")) {
                 String jobId = channel.substring("job:".length());
-                logger.info("job id: {}", jobId);
+                logger.trace("job id: {}", jobId);
+
+                // with a pattern subscription every node sees every job: drop foreign ones before parsing
+                if (!jobMessagingService.hasJob(jobId)) {
+                    jobMetrics.droppedNotOwned();
+                    return;
+                }
 
-                // pass the payload string directly
-                jobMessagingService.sendToJob(jobId, payload);
+                // classify once here so the drainer never parses the payload
+                OutboundEnvelope envelope = OutboundEnvelope.parse(jsonFactory, payload);
+                resultCache.record(jobId, envelope);
+                jobMessagingService.sendToJob(jobId, envelope);
             } else {
                 logger.warn("Unhandled channel {}", channel);
             }
@@ -38,4 +89,25 @@ public class RedisSubscriber implements MessageListener {
             logger.error("Failed to handle redis message", e);
         }
     }
-}
\ No newline at end of file
+
+    private static boolean isJobChannel(byte[] channel) {
+        return channel.length > JOB_PREFIX.length
+                && Arrays.equals(channel, 0, JOB_PREFIX.length, JOB_PREFIX, 0, JOB_PREFIX.length);
+    }
+
+    private void onJobMessage(byte[] channel, byte[] body) {
+        try {
+            String jobId = jobMessagingService.jobIdFor(channel, JOB_PREFIX.length);
+            if (jobId == null) {
+                jobMetrics.droppedNotOwned();
+                return;
+            }
+
+            OutboundEnvelope envelope = OutboundEnvelope.parse(jsonFactory, body);
+            resultCache.record(jobId, envelope);
+            jobMessagingService.sendToJob(jobId, envelope);
+        } catch (Exception e) {
+            logger.error("Failed to handle redis message", e);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.compiler.websocket.messaging;
+
+/**
+ * Well-formedness check for payloads that are forwarded as raw bytes.
+ * <p>
+ * Runners publish UTF-8, but a payload that is not valid UTF-8 must still reach the
+ * client the way the String path delivers it (with replacement characters), so those
+ * take the decoding path instead.
+ */
+final class Utf8 {
+
+    private Utf8() {
+    }
+
+    static boolean isValid(byte[] bytes) {
+        int i = 0;
+        int n = bytes.length;
+        // program output is mostly ASCII
+        while (i < n && bytes[i] >= 0) i++;
+
+        while (i < n) {
+            int b = bytes[i++];
+            if (b >= 0) continue;
+
+            int extra;
+            int min;
+            if ((b & 0xE0) == 0xC0) {
+                extra = 1;
+                min = 0x80;
+            } else if ((b & 0xF0) == 0xE0) {
+                extra = 2;
+                min = 0x800;
+            } else if ((b & 0xF8) == 0xF0) {
+                extra = 3;
+                min = 0x10000;
+            } else {
+                return false;
+            }
+            if (i + extra > n) return false;
+
+            int cp = b & (0x3F >> extra);
+            for (int k = 0; k < extra; k++) {
+                int c = bytes[i++];
+                if ((c & 0xC0) != 0x80) return false;
+                cp = (cp << 6) | (c & 0x3F);
+            }
+            // overlong forms, surrogates and values past U+10FFFF
+            if (cp < min || cp > 0x10FFFF || (cp >= 0xD800 && cp <= 0xDFFF)) return false;
+        }
+        return true;
+    }
+}
@@ -1,5 +1,6 @@
 package com.compiler.websocket.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.*;
 
 @Getter
@@ -12,4 +13,8 @@ public class OutboundMessage {
     private String type;    // e.g. OUTPUT, ERROR, DONE
     private Object content; // flexible: string text or structured JSON
     private String job_id;   // optional
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String seq;      // stream entry id, only with app.jobs.output.transport=stream
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String token;    // per-job secret, only on SESSION_CREATED
 }
\ No newline at end of file
@@ -0,0 +1,44 @@
+package com.compiler.websocket.model;
+
+/**
+ * Message kinds published by the runners on {@code job:<jobId>}.
+ * <p>
+ * COMPLETION and TERMINATION are terminal: the session is closed after they are sent.
+ * CONTROL is never published by a runner: it is this server's own acknowledgements to the
+ * client (JOB_ENQUEUED, INPUT_RECEIVED, ERROR), queued with the output only to keep their order.
+ */
+public enum OutboundType {
+    STDOUT,
+    STDERR,
+    COMPLETION,
+    TERMINATION,
+    FAILURE,
+    CONTROL,
+    UNKNOWN;
+
+    public boolean isTerminal() {
+        return this == COMPLETION || this == TERMINATION;
+    }
+
+    /** Never dropped, held back or evicted when the job is over its memory allowance. */
+    public boolean isGuaranteed() {
+        return isTerminal() || this == CONTROL;
+    }
+
+    /** Program output whose content is plain text. */
+    public boolean isText() {
+        return this == STDOUT || this == STDERR;
+    }
+
+    public static OutboundType from(String type) {
+        if (type == null) return UNKNOWN;
+        return switch (type) {
+            case "STDOUT" -> STDOUT;
+            case "STDERR" -> STDERR;
+            case "COMPLETION" -> COMPLETION;
+            case "TERMINATION" -> TERMINATION;
+            case "FAILURE" -> FAILURE;
+            default -> UNKNOWN;
+        };
+    }
+}
@@ -0,0 +1,23 @@
+package com.compiler.websocket.model;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ResumeEvent {
+
+    @NotBlank
+    private String job_id;
+
+    @NotBlank
+    private String token; // the token SESSION_CREATED carried for this job
+
+    private String last_seq; // last "seq" the client received, null to replay everything
+
+}
@@ -0,0 +1,214 @@
+package com.compiler.websocket.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Who may open a websocket and how often a session may submit runs.
+ * <p>
+ * Three limits, all lock-free: a token bucket per client IP for handshakes, a node-wide cap on
+ * concurrent sessions, and a token bucket per session for RUN_EVENTs. The handshake only reads
+ * the session count; the slot is taken when the connection is established ({@link #open()}),
+ * since a handshake can still fail after the interceptor (origin check). Buckets are GCRA cells, a
+ * single "theoretical arrival time" advanced with CAS. Client buckets live in a map bounded by
+ * {@code max-tracked-clients}; a bucket that has refilled completely holds no state worth keeping
+ * and is swept every {@code sweep-interval-ms}.
+ */
+@Component
+public class AdmissionControl {
+
+    public enum Decision {
+        ADMITTED,
+        /** Client exceeded its handshake rate: HTTP 429. */
+        RATE_LIMITED,
+        /** Node is at its session cap, or cannot track another client: HTTP 503. */
+        OVERLOADED
+    }
+
+    /** GCRA token bucket: one token every {@code interval}, bursts of up to {@code burst} tokens. */
+    public static final class Bucket {
+        // theoretical arrival time of the next request, in System.nanoTime() units
+        private final AtomicLong tat = new AtomicLong(Long.MIN_VALUE);
+
+        boolean tryTake(long now, long intervalNanos, long burstNanos) {
+            while (true) {
+                long current = tat.get();
+                long next = Math.max(current, now) + intervalNanos;
+                if (next - now > burstNanos) return false;
+                if (tat.compareAndSet(current, next)) return true;
+            }
+        }
+
+        /** Nanoseconds until the next token, 0 if one is available. */
+        long waitNanos(long now, long intervalNanos, long burstNanos) {
+            return Math.max(0, Math.max(tat.get(), now) + intervalNanos - burstNanos - now);
+        }
+
+        boolean isFull(long now) {
+            return tat.get() <= now;
+        }
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(AdmissionControl.class);
+
+    private final int maxSessions;
+    private final int maxTrackedClients;
+    private final long handshakeIntervalNanos;
+    private final long handshakeBurstNanos;
+    private final long runIntervalNanos;
+    private final long runBurstNanos;
+
+    private final Map<String, Bucket> clients = new ConcurrentHashMap<>();
+    private final AtomicInteger sessions = new AtomicInteger();
+
+    private final Counter rateLimited;
+    private final Counter overloaded;
+    private final Counter untracked;
+    private final Counter runsRejected;
+
+    public AdmissionControl(MeterRegistry meterRegistry,
+                            @Value("${app.ws.admission.max-sessions:10000}") int maxSessions,
+                            @Value("${app.ws.admission.max-tracked-clients:100000}") int maxTrackedClients,
+                            @Value("${app.ws.admission.handshakes-per-minute:60}") int handshakesPerMinute,
+                            @Value("${app.ws.admission.handshake-burst:20}") int handshakeBurst,
+                            @Value("${app.ws.admission.runs-per-minute:30}") int runsPerMinute,
+                            @Value("${app.ws.admission.run-burst:5}") int runBurst,
+                            @Value("${app.ws.admission.sweep-interval-ms:60000}") long sweepIntervalMillis) {
+        this.maxSessions = maxSessions;
+        this.maxTrackedClients = maxTrackedClients;
+        this.handshakeIntervalNanos = TimeUnit.MINUTES.toNanos(1) / handshakesPerMinute;
+        this.handshakeBurstNanos = handshakeIntervalNanos * handshakeBurst;
+        this.runIntervalNanos = TimeUnit.MINUTES.toNanos(1) / runsPerMinute;
+        this.runBurstNanos = runIntervalNanos * runBurst;
+
+        Gauge.builder("ws.admission.sessions", sessions, AtomicInteger::get)
+                .description("Websocket sessions admitted and not yet closed")
+                .register(meterRegistry);
+        Gauge.builder("ws.admission.tracked.clients", clients, Map::size)
+                .description("Client IPs with a handshake bucket")
+                .register(meterRegistry);
+        this.rateLimited = rejected(meterRegistry, "rate_limited");
+        this.overloaded = rejected(meterRegistry, "session_cap");
+        this.untracked = rejected(meterRegistry, "client_table_full");
+        this.runsRejected = Counter.builder("ws.admission.runs.rejected")
+                .description("RUN_EVENTs refused by the per-session rate limit")
+                .register(meterRegistry);
+
+        ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread t = new Thread(runnable);
+            t.setName("admission-sweep");
+            t.setDaemon(true);
+            return t;
+        });
+        sweeper.scheduleWithFixedDelay(this::sweep, sweepIntervalMillis, sweepIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private static Counter rejected(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("ws.admission.rejected")
+                .description("Websocket handshakes refused by admission control")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Decide a handshake from {@code clientIp}.
+     */
+    public Decision admit(String clientIp) {
+        long now = System.nanoTime();
+        Bucket bucket = clients.get(clientIp);
+        if (bucket == null) {
+            if (clients.size() >= maxTrackedClients) {
+                untracked.increment();
+                return Decision.OVERLOADED;
+            }
+            bucket = clients.computeIfAbsent(clientIp, ip -> new Bucket());
+        }
+        if (!bucket.tryTake(now, handshakeIntervalNanos, handshakeBurstNanos)) {
+            rateLimited.increment();
+            return Decision.RATE_LIMITED;
+        }
+
+        if (sessions.get() >= maxSessions) {
+            overloaded.increment();
+            return Decision.OVERLOADED;
+        }
+        return Decision.ADMITTED;
+    }
+
+    /**
+     * Take a session slot for an established connection.
+     *
+     * @return false if concurrent handshakes pushed the node past {@code max-sessions}
+     */
+    public boolean open() {
+        int current;
+        do {
+            current = sessions.get();
+            if (current >= maxSessions) {
+                overloaded.increment();
+                return false;
+            }
+        } while (!sessions.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    /** Seconds a rate-limited client should wait, for the Retry-After header. */
+    public long retryAfterSeconds(String clientIp) {
+        Bucket bucket = clients.get(clientIp);
+        long wait = bucket == null ? 0 : bucket.waitNanos(System.nanoTime(), handshakeIntervalNanos, handshakeBurstNanos);
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(wait + TimeUnit.SECONDS.toNanos(1) - 1));
+    }
+
+    /** Give back the slot taken by {@link #open()}. */
+    public void release() {
+        sessions.decrementAndGet();
+    }
+
+    /** A fresh RUN_EVENT bucket for a new session. */
+    public Bucket newRunBucket() {
+        return new Bucket();
+    }
+
+    /**
+     * @return false if the session is submitting runs faster than {@code runs-per-minute}
+     */
+    public boolean tryRun(Bucket runs) {
+        if (runs == null || runs.tryTake(System.nanoTime(), runIntervalNanos, runBurstNanos)) {
+            return true;
+        }
+        runsRejected.increment();
+        return false;
+    }
+
+    public int sessions() {
+        return sessions.get();
+    }
+
+    public int trackedClients() {
+        return clients.size();
+    }
+
+    /** Drop buckets that have refilled: forgetting them changes nothing. */
+    void sweep() {
+        long now = System.nanoTime();
+        int before = clients.size();
+        clients.values().removeIf(bucket -> bucket.isFull(now));
+        int evicted = before - clients.size();
+        if (evicted > 0) {
+            logger.debug("Evicted {} idle client buckets, {} remain", evicted, clients.size());
+        }
+    }
+}
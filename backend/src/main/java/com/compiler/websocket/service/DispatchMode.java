@@ -0,0 +1,16 @@
+package com.compiler.websocket.service;
+
+/**
+ * How JobMessagingService runs per-job drainers ({@code app.jobs.dispatch.mode}).
+ */
+public enum DispatchMode {
+    /** Shared bounded pool of platform threads; a slow client holds one of its threads while sending. */
+    PLATFORM,
+    /** One virtual thread per drain; a client blocked in sendMessage only parks its own drainer. */
+    VIRTUAL,
+    /**
+     * Each job pinned to one of {@code app.jobs.dispatch.event-loops} single-threaded loops (see EventLoops):
+     * no per-message hand-offs or reschedules, but a client blocked in sendMessage delays the other jobs on its loop.
+     */
+    EVENT_LOOP
+}
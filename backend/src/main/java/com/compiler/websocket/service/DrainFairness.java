@@ -0,0 +1,62 @@
+package com.compiler.websocket.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deficit round-robin between the jobs sharing the dispatcher.
+ * <p>
+ * A drain may send {@code quantum-bytes} times the job's weight per turn, plus or minus what it
+ * left over last turn; then it yields and the job goes to the back of the dispatcher's queue, so a
+ * program printing in a loop takes turns with quiet jobs instead of holding a thread until its queue
+ * is empty. Jobs that used up their output budget (head truncated, or runner paused by flow control)
+ * weigh {@code noisy-weight}. Jobs that got input within {@code interactive-window-ms} weigh
+ * {@code interactive-weight} and skip the coalescing window, so a prompt's echo goes out at once.
+ * {@code quantum-bytes=0} drains every queue to the end as before.
+ */
+@Component
+public class DrainFairness {
+
+    private final long quantumBytes;
+    private final double interactiveWeight;
+    private final double noisyWeight;
+    private final long interactiveWindowNanos;
+    private final Counter yields;
+
+    public DrainFairness(MeterRegistry meterRegistry,
+                         @Value("${app.jobs.dispatch.fairness.quantum-bytes:16384}") long quantumBytes,
+                         @Value("${app.jobs.dispatch.fairness.interactive-weight:4}") double interactiveWeight,
+                         @Value("${app.jobs.dispatch.fairness.noisy-weight:0.25}") double noisyWeight,
+                         @Value("${app.jobs.dispatch.fairness.interactive-window-ms:2000}") long interactiveWindowMillis) {
+        this.quantumBytes = quantumBytes;
+        this.interactiveWeight = interactiveWeight;
+        this.noisyWeight = noisyWeight;
+        this.interactiveWindowNanos = TimeUnit.MILLISECONDS.toNanos(interactiveWindowMillis);
+        this.yields = Counter.builder("jobs.dispatcher.yields")
+                .description("Drains that used up their quantum and gave the thread to other jobs")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return quantumBytes > 0;
+    }
+
+    /** Whether input at {@code lastInputNanos} (0 for never) still makes the job interactive. */
+    public boolean isInteractive(long lastInputNanos) {
+        return lastInputNanos != 0 && System.nanoTime() - lastInputNanos < interactiveWindowNanos;
+    }
+
+    /** Bytes a job may send in one turn; a noisy job stays noisy even while it is being typed at. */
+    public long quantum(boolean noisy, boolean interactive) {
+        double weight = noisy ? noisyWeight : interactive ? interactiveWeight : 1.0;
+        return Math.max(1, (long) (quantumBytes * weight));
+    }
+
+    public void yielded() {
+        yields.increment();
+    }
+}
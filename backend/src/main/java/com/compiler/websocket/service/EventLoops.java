@@ -0,0 +1,117 @@
+package com.compiler.websocket.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Single-threaded event loops for {@link DispatchMode#EVENT_LOOP}.
+ * <p>
+ * Every job is pinned to one loop for its whole life, so all of its drains run on one thread
+ * in submission order and its queue, session and coalescing state stay in that core's cache.
+ * A job goes to the loop its id hashes to, unless that loop already carries {@code MAX_IMBALANCE}
+ * more jobs than the emptiest one; jobs never move once pinned, so loops only take work from
+ * each other at job boundaries, as finished jobs free room on theirs.
+ */
+final class EventLoops {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventLoops.class);
+
+    // pinned jobs a hashed loop may carry above the emptiest loop before new jobs go elsewhere
+    private static final int MAX_IMBALANCE = 2;
+
+    /** One loop: an MPSC inbox of tasks drained by a single thread that parks when idle. */
+    static final class Loop implements Executor {
+        private final MpscQueue<Runnable> inbox = new MpscQueue<>(Integer.MAX_VALUE);
+        private final AtomicInteger jobs = new AtomicInteger();
+        private final Thread thread;
+        private volatile boolean sleeping;
+
+        private Loop(int index) {
+            this.thread = new Thread(this::run, "job-loop-" + index);
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            inbox.offerAndCount(task);
+            // pairs with the re-check in run(): either it sees the task or we see it sleeping
+            if (sleeping) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        int jobs() {
+            return jobs.get();
+        }
+
+        int pending() {
+            return inbox.size();
+        }
+
+        private void run() {
+            while (true) {
+                Runnable task = inbox.poll();
+                if (task == null) {
+                    sleeping = true;
+                    if (inbox.size() == 0) {
+                        LockSupport.park(this);
+                    }
+                    sleeping = false;
+                    continue;
+                }
+                try {
+                    task.run();
+                } catch (Throwable t) {
+                    logger.error("Task failed on {}", thread.getName(), t);
+                }
+            }
+        }
+    }
+
+    private final Loop[] loops;
+
+    EventLoops(int size, MeterRegistry meterRegistry) {
+        this.loops = new Loop[size];
+        for (int i = 0; i < size; i++) {
+            Loop loop = new Loop(i);
+            loops[i] = loop;
+            Gauge.builder("jobs.dispatcher.loop.jobs", loop, Loop::jobs)
+                    .description("Jobs pinned to the event loop")
+                    .tag("loop", String.valueOf(i))
+                    .register(meterRegistry);
+            Gauge.builder("jobs.dispatcher.loop.pending", loop, Loop::pending)
+                    .description("Tasks waiting in the event loop's inbox")
+                    .tag("loop", String.valueOf(i))
+                    .register(meterRegistry);
+        }
+    }
+
+    int size() {
+        return loops.length;
+    }
+
+    /** The loop the job will run on until {@link #unpin}. */
+    Loop pin(String jobId) {
+        Loop hashed = loops[Math.floorMod(jobId.hashCode(), loops.length)];
+        Loop emptiest = hashed;
+        for (Loop loop : loops) {
+            if (loop.jobs() < emptiest.jobs()) {
+                emptiest = loop;
+            }
+        }
+        Loop chosen = hashed.jobs() - emptiest.jobs() > MAX_IMBALANCE ? emptiest : hashed;
+        chosen.jobs.incrementAndGet();
+        return chosen;
+    }
+
+    void unpin(Loop loop) {
+        loop.jobs.decrementAndGet();
+    }
+}
@@ -0,0 +1,75 @@
+package com.compiler.websocket.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lifecycle deadlines for jobs, all on one {@link TimerWheel} rather than a scheduled task per job.
+ * <p>
+ * {@code idle-before-run-ms} closes a session that never sends RUN_EVENT; {@code max-wall-ms}
+ * bounds a run from RUN_EVENT to its terminal message; {@code no-output-ms} ends a run whose
+ * runner has gone silent (crashed without COMPLETION/TERMINATION). A value of 0 disables the
+ * deadline. JobMessagingService decides what expiry means for each.
+ */
+@Component
+public class JobDeadlines {
+
+    public enum Kind { IDLE_BEFORE_RUN, MAX_WALL_TIME, NO_OUTPUT }
+
+    private final TimerWheel wheel;
+    private final long idleBeforeRunMillis;
+    private final long maxWallMillis;
+    private final long noOutputMillis;
+    private final MeterRegistry meterRegistry;
+
+    public JobDeadlines(MeterRegistry meterRegistry,
+                        @Value("${app.jobs.timers.tick-ms:100}") long tickMillis,
+                        @Value("${app.jobs.timers.wheel-size:1024}") int wheelSize,
+                        @Value("${app.jobs.timers.idle-before-run-ms:300000}") long idleBeforeRunMillis,
+                        @Value("${app.jobs.timers.max-wall-ms:900000}") long maxWallMillis,
+                        @Value("${app.jobs.timers.no-output-ms:120000}") long noOutputMillis) {
+        this.meterRegistry = meterRegistry;
+        this.wheel = new TimerWheel("job-timers", tickMillis, wheelSize);
+        this.idleBeforeRunMillis = idleBeforeRunMillis;
+        this.maxWallMillis = maxWallMillis;
+        this.noOutputMillis = noOutputMillis;
+
+        Gauge.builder("jobs.timers.pending", wheel, TimerWheel::pending)
+                .description("Lifecycle deadlines armed on the timer wheel")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Arm the deadline of the given kind, or return null if it is disabled.
+     */
+    public TimerWheel.Timeout arm(Kind kind, Runnable onExpiry) {
+        return after(kind, millis(kind), onExpiry);
+    }
+
+    /** Re-arm a deadline for what is left of it, e.g. after output moved the no-output deadline. */
+    public TimerWheel.Timeout after(Kind kind, long delayMillis, Runnable onExpiry) {
+        if (millis(kind) <= 0) return null;
+        return wheel.schedule(onExpiry, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public long millis(Kind kind) {
+        return switch (kind) {
+            case IDLE_BEFORE_RUN -> idleBeforeRunMillis;
+            case MAX_WALL_TIME -> maxWallMillis;
+            case NO_OUTPUT -> noOutputMillis;
+        };
+    }
+
+    public void expired(Kind kind) {
+        Counter.builder("jobs.timers.expired")
+                .description("Jobs ended by a lifecycle deadline")
+                .tag("kind", kind.name().toLowerCase())
+                .register(meterRegistry)
+                .increment();
+    }
+}
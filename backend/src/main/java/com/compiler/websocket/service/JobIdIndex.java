@@ -0,0 +1,71 @@
+package com.compiler.websocket.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Job ids of this node keyed by their UTF-8 bytes, so a Redis channel can be matched
+ * against the owned jobs without decoding it into a String first.
+ * <p>
+ * Lookups reuse a per-thread probe key that points into the caller's array; only
+ * {@link #add} copies bytes.
+ */
+final class JobIdIndex {
+
+    private final Map<Key, String> ids = new ConcurrentHashMap<>();
+    private final ThreadLocal<Key> probes = ThreadLocal.withInitial(Key::new);
+
+    void add(String jobId) {
+        byte[] bytes = jobId.getBytes(StandardCharsets.UTF_8);
+        ids.put(new Key().wrap(bytes, 0, bytes.length), jobId);
+    }
+
+    void remove(String jobId) {
+        if (jobId == null) return;
+        byte[] bytes = jobId.getBytes(StandardCharsets.UTF_8);
+        ids.remove(new Key().wrap(bytes, 0, bytes.length));
+    }
+
+    /** The owned job id spelled by {@code bytes[offset, offset + length)}, or null. */
+    String find(byte[] bytes, int offset, int length) {
+        Key probe = probes.get();
+        try {
+            return ids.get(probe.wrap(bytes, offset, length));
+        } finally {
+            // do not keep the caller's array reachable from the thread
+            probe.bytes = null;
+        }
+    }
+
+    private static final class Key {
+        private byte[] bytes;
+        private int offset;
+        private int length;
+        private int hash;
+
+        Key wrap(byte[] bytes, int offset, int length) {
+            this.bytes = bytes;
+            this.offset = offset;
+            this.length = length;
+            int h = 1;
+            for (int i = offset; i < offset + length; i++) {
+                h = 31 * h + bytes[i];
+            }
+            this.hash = h;
+            return this;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key other && hash == other.hash
+                    && Arrays.equals(bytes, offset, offset + length, other.bytes, other.offset, other.offset + other.length);
+        }
+    }
+}
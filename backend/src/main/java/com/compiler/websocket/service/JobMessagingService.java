@@ -1,67 +1,228 @@
 package com.compiler.websocket.service;
 
-import com.compiler.websocket.messaging.ChannelNaming;
+import com.compiler.websocket.messaging.JobChannelSubscriptions;
+import com.compiler.websocket.messaging.OutboundEnvelope;
 import com.compiler.websocket.model.OutboundMessage;
+import com.compiler.websocket.model.OutboundType;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.data.redis.listener.ChannelTopic;
-import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.socket.CloseStatus;
-import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
 
 import java.io.IOException;
 import java.time.Duration;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * High-throughput per-job ordered dispatcher.
  * <p>
  * Key optimizations:
- * - Pre-serialize OutboundMessage into String before queueing
- * - Use ArrayBlockingQueue per job (bounded, predictable GC)
- * - Single drainer per job using per-job AtomicBoolean
- * - Shared ThreadPoolExecutor sized for high throughput
+ * - Classify each payload once into an OutboundEnvelope before queueing
+ * - One JobContext per job holding its session, queue and drain state: one map lookup per message,
+ *   and unregistering is a single atomic remove of the context
+ * - Lock-free MPSC queue per job (bounded, see MpscQueue), so producers never contend on a queue lock
+ * - Single drainer per job using the context's AtomicBoolean, which also hands the queue's consumer side over
+ * - Shared ThreadPoolExecutor sized for high throughput, or a virtual thread per drain
+ *   (app.jobs.dispatch.mode=virtual) so a client stuck in sendMessage never delays other jobs,
+ *   or jobs pinned to single-threaded event loops (app.jobs.dispatch.mode=event-loop, see EventLoops)
+ * - Adjacent output chunks are coalesced into one frame (see OutputCoalescer);
+ *   COMPLETION/TERMINATION are dispatched immediately, output waits one short window
+ * - Queued bytes are accounted per job and per node by MemoryGovernor, which decides
+ *   what to do with output that does not fit; OutputFlowControl pauses the runner before that
+ * - Idle sessions and runs whose runner went away expire on a shared timer wheel (see JobDeadlines)
+ * - Each run's output is capped to a live head and a kept tail, whatever the runner does (see OutputBudget)
+ * - A drain sends one weighted quantum per turn and then yields (deficit round-robin, see DrainFairness),
+ *   so a job printing in a loop cannot hold a dispatcher thread while quiet and interactive jobs wait
+ * - Every live frame is handed to TranscriptStore, which appends it off the drain path so the output
+ *   can be read back after the session closed
  */
 @Service
 public class JobMessagingService {
 
     private static final Logger logger = LoggerFactory.getLogger(JobMessagingService.class);
-    private final RedisMessageListenerContainer redisMessageListenerContainer;
 
+    /**
+     * Session attribute set by sessions that already take concurrent sends and bound their own buffer
+     * (the reactive stack's), so they are used as they are instead of wrapped in a decorator.
+     */
+    public static final String CONCURRENT_SENDS_ATTRIBUTE = "ws.concurrent-sends";
+    private final JobChannelSubscriptions jobChannelSubscriptions;
 
-    // Per-job structures
-    private final Map<String, ArrayBlockingQueue<String>> jobQueues = new ConcurrentHashMap<>();
-    private final Map<String, AtomicBoolean> jobLocks = new ConcurrentHashMap<>();
-    // jobId -> active websocket session
-    private final Map<String, WebSocketSession> byJob = new ConcurrentHashMap<>();
-    // sessionId -> jobId
-    private final Map<String, String> sessionToJob = new ConcurrentHashMap<>();
 
+    // jobId -> everything kept for the job; removing the entry is what unregisters it
+    private final Map<String, JobContext> contexts = new ConcurrentHashMap<>();
+    // sessionId -> job bound to the session
+    private final Map<String, JobContext> sessions = new ConcurrentHashMap<>();
+    // owned job ids by their bytes, for the byte-level Redis ingress (app.jobs.output.byte-path)
+    private final JobIdIndex jobIds = new JobIdIndex();
 
-    // High-throughput pool for draining queues
-    private final ThreadPoolExecutor pool;
 
+    // High-throughput pool for draining queues
+    private final ExecutorService pool;
+    // Fires delayed drains once the coalescing window closes
+    private final ScheduledExecutorService flushScheduler;
+    // Loops jobs are pinned to in event-loop mode, null otherwise
+    private final EventLoops eventLoops;
+
+    private final OutputCoalescer outputCoalescer;
+    private final MemoryGovernor memoryGovernor;
+    private final OutputFlowControl outputFlowControl;
+    private final JobMetrics jobMetrics;
+    private final JobDeadlines jobDeadlines;
+    private final OutputBudget outputBudget;
+    private final DrainFairness drainFairness;
+    private final TranscriptStore transcriptStore;
     private final ObjectMapper objectMapper;
+    // drains currently running, for either dispatch mode
+    private final AtomicInteger activeDrains = new AtomicInteger();
 
     // Tunables (adjust for your hardware)
-    private static final int WEBSOCKET_BUFFER_BYTES = 20 * 1024 * 1024; // 20 MB per-session buffer
     private static final int DEFAULT_QUEUE_CAPACITY = 10_000; // per-job queue capacity
 
-    public JobMessagingService(ObjectMapper objectMapper,
-                               RedisMessageListenerContainer redisMessageListenerContainer
-    ) {
+    /**
+     * Deadlines of one job. Output only stamps {@code lastOutputNanos}; the no-output timeout
+     * checks it when it fires and re-arms itself for the remainder, so nothing is rescheduled per message.
+     */
+    private static final class JobTimers {
+        private volatile TimerWheel.Timeout idle;
+        private volatile TimerWheel.Timeout wall;
+        private volatile TimerWheel.Timeout quiet;
+        private volatile long startedNanos = System.nanoTime();
+        private volatile long lastOutputNanos = startedNanos;
+
+        void cancel() {
+            cancel(idle);
+            cancel(wall);
+            cancel(quiet);
+        }
+
+        private static void cancel(TimerWheel.Timeout timeout) {
+            if (timeout != null) timeout.cancel();
+        }
+    }
+
+    /**
+     * Everything this node keeps for one job. Producers look it up once per message and work on it
+     * directly; once it is out of {@code contexts} it is closed and late producers and drainers drop out.
+     */
+    private static final class JobContext {
+        private final String jobId;
+        // event-loop mode: the only thread this job's drains run on
+        private final EventLoops.Loop loop;
+        private final MpscQueue<OutboundEnvelope> queue = new MpscQueue<>(DEFAULT_QUEUE_CAPACITY);
+        // PAUSE policy: output past the allowance, waiting for room in the queue (consumed by the drainer)
+        private final MpscQueue<OutboundEnvelope> held = new MpscQueue<>(DEFAULT_QUEUE_CAPACITY);
+        // held by the drainer, or by a drain waiting for the coalescing window
+        private final AtomicBoolean draining = new AtomicBoolean();
+        // bytes currently queued for the job
+        private final MemoryGovernor.JobBudget budget = new MemoryGovernor.JobBudget();
+        // delayed drain waiting for the coalescing window to close
+        private final AtomicReference<ScheduledFuture<?>> pendingFlush = new AtomicReference<>();
+        // armed lifecycle deadlines, null once closed
+        private final AtomicReference<JobTimers> timers = new AtomicReference<>();
+        private volatile WebSocketSession session;
+        // output recorded while the client was away, drained before the live queue
+        private volatile MpscQueue<OutboundEnvelope> replay;
+        // last stream seq sent to the client (stream transport only), used to skip duplicates
+        private volatile String lastSeq;
+        // head/tail output budget of the current run, null when unlimited
+        private volatile OutputBudget.JobOutput output;
+        // when the client last sent input, 0 for never
+        private volatile long lastInputNanos;
+        // bytes left over (or overdrawn) from the job's last turn, drainer only
+        private long deficit;
+        private volatile boolean closed;
+
+        JobContext(String jobId, EventLoops.Loop loop) {
+            this.jobId = jobId;
+            this.loop = loop;
+        }
+    }
+
+    public JobMessagingService(JobChannelSubscriptions jobChannelSubscriptions,
+                               OutputCoalescer outputCoalescer,
+                               MemoryGovernor memoryGovernor,
+                               OutputFlowControl outputFlowControl,
+                               JobMetrics jobMetrics,
+                               JobDeadlines jobDeadlines,
+                               OutputBudget outputBudget,
+                               DrainFairness drainFairness,
+                               TranscriptStore transcriptStore,
+                               ObjectMapper objectMapper,
+                               @Value("${app.jobs.dispatch.mode:platform}") DispatchMode dispatchMode,
+                               @Value("${app.jobs.dispatch.event-loops:0}") int eventLoops) {
+        this.jobChannelSubscriptions = jobChannelSubscriptions;
+        this.outputCoalescer = outputCoalescer;
+        this.memoryGovernor = memoryGovernor;
+        this.outputFlowControl = outputFlowControl;
+        this.jobMetrics = jobMetrics;
+        this.jobDeadlines = jobDeadlines;
+        this.outputBudget = outputBudget;
+        this.drainFairness = drainFairness;
+        this.transcriptStore = transcriptStore;
         this.objectMapper = objectMapper;
-        this.redisMessageListenerContainer = redisMessageListenerContainer;
+        this.pool = createDispatcher(dispatchMode);
+
+        MeterRegistry meterRegistry = jobMetrics.registry();
+        // 0 means one loop per core
+        this.eventLoops = dispatchMode == DispatchMode.EVENT_LOOP
+                ? new EventLoops(eventLoops > 0 ? eventLoops : Runtime.getRuntime().availableProcessors(), meterRegistry)
+                : null;
+        // pool size, active threads and task queue depth (platform mode; virtual threads have no pool)
+        new ExecutorServiceMetrics(pool, "job-dispatcher", List.of()).bindTo(meterRegistry);
+        Gauge.builder("jobs.dispatcher.drains.active", activeDrains, AtomicInteger::get)
+                .description("Job queues being drained right now")
+                .register(meterRegistry);
+        Gauge.builder("jobs.active", contexts, Map::size)
+                .description("Jobs registered on this node")
+                .register(meterRegistry);
+        Gauge.builder("websocket.sessions.active", sessions, Map::size)
+                .description("Websocket sessions bound to a job")
+                .register(meterRegistry);
+
+        Gauge.builder("jobs.memory.session.buffer.bytes", contexts, JobMessagingService::sessionBufferBytes)
+                .description("Bytes buffered in websocket session decorators")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("jobs.memory.queued.messages", contexts, jobs -> jobs.values().stream().mapToInt(ctx -> ctx.queue.size()).sum())
+                .description("Messages queued across all jobs")
+                .register(meterRegistry);
+
+        this.flushScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread t = new Thread(runnable);
+            t.setName("job-flush-" + t.threadId());
+            t.setDaemon(true);
+            return t;
+        });
+
+        logger.info("Job dispatcher running in {} mode{}", dispatchMode,
+                this.eventLoops == null ? "" : " with " + this.eventLoops.size() + " loops");
+    }
 
+    private static ExecutorService createDispatcher(DispatchMode dispatchMode) {
+        if (dispatchMode == DispatchMode.VIRTUAL) {
+            // Unbounded by design: a drain blocked in sendMessage parks its virtual thread and frees the carrier
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("job-dispatcher-vt-", 0).factory());
+        }
 
         // ThreadPoolExecutor tuned for high throughput with a large queue for bursts
-        this.pool = new ThreadPoolExecutor(
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(
                 2,                       // core threads
                 8,                      // max threads
                 60L, TimeUnit.SECONDS,    // keepAlive
@@ -75,63 +236,292 @@ public class JobMessagingService {
                 new ThreadPoolExecutor.CallerRunsPolicy() // backpressure fallback
         );
         // avoid allowing core threads to time out (depends on workload)
-        this.pool.allowCoreThreadTimeOut(false);
+        pool.allowCoreThreadTimeOut(false);
+        return pool;
     }
 
     /**
-     * Register a new job -> session mapping and create per-job queue and lock.
+     * Register a new job -> session mapping and create the job's context.
      */
     public void registerJob(String jobId, WebSocketSession session) {
-        // Wrap the session with a larger buffer to handle bursts to slow clients.
-        WebSocketSession wrapped = new ConcurrentWebSocketSessionDecorator(
+        // If the job exists already (reconnect), keep its queue
+        JobContext ctx = contexts.computeIfAbsent(jobId, this::newContext);
+        ctx.session = decorate(session);
+        sessions.put(session.getId(), ctx);
+        jobIds.add(jobId);
+
+        JobTimers jobTimers = new JobTimers();
+        replaceTimers(ctx, jobTimers);
+        jobTimers.idle = jobDeadlines.arm(JobDeadlines.Kind.IDLE_BEFORE_RUN,
+                () -> executorFor(ctx).execute(() -> idleExpired(ctx, jobTimers)));
+
+        logger.debug("Registered job {} with session {}", jobId, session.getId());
+    }
+
+    /**
+     * The job's run was requested: the idle deadline gives way to the wall-time and no-output ones,
+     * and its output is budgeted with the limits of {@code language}.
+     */
+    public void jobStarted(String jobId, String language) {
+        JobContext ctx = contexts.get(jobId);
+        if (ctx == null) return;
+        ctx.output = outputBudget.newJob(language);
+        JobTimers jobTimers = ctx.timers.get();
+        if (jobTimers == null) return;
+        JobTimers.cancel(jobTimers.idle);
+        armRunDeadlines(ctx, jobTimers);
+    }
+
+    /** Activity that is not output (user input) also proves the job is alive. */
+    public void touch(String jobId) {
+        JobContext ctx = contexts.get(jobId);
+        if (ctx != null) {
+            touch(ctx);
+        }
+    }
+
+    /** The client sent input: the job counts as interactive for a while, so its echo is not kept waiting. */
+    public void inputReceived(String jobId) {
+        JobContext ctx = contexts.get(jobId);
+        if (ctx != null) {
+            ctx.lastInputNanos = System.nanoTime();
+            touch(ctx);
+        }
+    }
+
+    private static void touch(JobContext ctx) {
+        JobTimers jobTimers = ctx.timers.get();
+        if (jobTimers != null) {
+            jobTimers.lastOutputNanos = System.nanoTime();
+        }
+    }
+
+    private void armRunDeadlines(JobContext ctx, JobTimers jobTimers) {
+        jobTimers.startedNanos = jobTimers.lastOutputNanos = System.nanoTime();
+        JobTimers.cancel(jobTimers.wall);
+        JobTimers.cancel(jobTimers.quiet);
+        jobTimers.wall = jobDeadlines.arm(JobDeadlines.Kind.MAX_WALL_TIME,
+                () -> executorFor(ctx).execute(() -> runExpired(ctx, jobTimers, JobDeadlines.Kind.MAX_WALL_TIME)));
+        jobTimers.quiet = jobDeadlines.arm(JobDeadlines.Kind.NO_OUTPUT, () -> quietCheck(ctx, jobTimers));
+    }
+
+    private static void replaceTimers(JobContext ctx, JobTimers jobTimers) {
+        JobTimers previous = ctx.timers.getAndSet(jobTimers);
+        if (previous != null) {
+            previous.cancel();
+        }
+    }
+
+    // runs on the wheel thread: only a timestamp check, expiry itself goes to the pool
+    private void quietCheck(JobContext ctx, JobTimers jobTimers) {
+        if (ctx.timers.get() != jobTimers) return;
+        long limit = TimeUnit.MILLISECONDS.toNanos(jobDeadlines.millis(JobDeadlines.Kind.NO_OUTPUT));
+        long quietFor = System.nanoTime() - jobTimers.lastOutputNanos;
+        if (quietFor < limit) {
+            jobTimers.quiet = jobDeadlines.after(JobDeadlines.Kind.NO_OUTPUT,
+                    TimeUnit.NANOSECONDS.toMillis(limit - quietFor) + 1, () -> quietCheck(ctx, jobTimers));
+            return;
+        }
+        executorFor(ctx).execute(() -> runExpired(ctx, jobTimers, JobDeadlines.Kind.NO_OUTPUT));
+    }
+
+    // connected but never asked to run anything
+    private void idleExpired(JobContext ctx, JobTimers jobTimers) {
+        if (ctx.timers.get() != jobTimers) return;
+        jobDeadlines.expired(JobDeadlines.Kind.IDLE_BEFORE_RUN);
+        logger.info("Job {} idle for {} ms without a run, closing its session", ctx.jobId,
+                jobDeadlines.millis(JobDeadlines.Kind.IDLE_BEFORE_RUN));
+
+        WebSocketSession session = ctx.session;
+        if (session != null && session.isOpen()) {
+            // the handler's afterConnectionClosed unregisters the session
+            closeSession(session, CloseStatus.NORMAL.withReason("Idle timeout"));
+        } else {
+            unregister(ctx);
+        }
+    }
+
+    // the run is over its wall time, or its runner stopped publishing: end it as the runner would have
+    private void runExpired(JobContext ctx, JobTimers jobTimers, JobDeadlines.Kind kind) {
+        if (ctx.timers.get() != jobTimers) return;
+        jobTimers.cancel();
+        jobDeadlines.expired(kind);
+
+        String jobId = ctx.jobId;
+        String reason = kind == JobDeadlines.Kind.MAX_WALL_TIME
+                ? "Time limit exceeded: ran for more than " + jobDeadlines.millis(kind) / 1000 + " seconds"
+                : "Runner stopped responding (no output for " + jobDeadlines.millis(kind) / 1000 + "+ seconds)";
+        logger.warn("Job {}: {}", jobId, reason);
+
+        WebSocketSession session = ctx.session;
+        if (session != null && session.isOpen()) {
+            // terminal: the drainer sends it and closes the session, which unregisters the job
+            long executionTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - jobTimers.startedNanos);
+            sendToJob(ctx, OutboundEnvelope.of(OutboundType.TERMINATION, termination(jobId, reason, executionTime)));
+        } else {
+            unregister(ctx);
+        }
+    }
+
+    // the TERMINATION a runner sends when it kills a program, encoded by Jackson so the id and reason are escaped
+    private String termination(String jobId, String reason, long executionTime) {
+        ObjectNode content = objectMapper.createObjectNode()
+                .put("exitCode", 2)
+                .put("reason", reason);
+        content.putObject("metrics").put("executionTime", executionTime);
+        try {
+            return objectMapper.writeValueAsString(OutboundMessage.builder()
+                    .job_id(jobId)
+                    .type(OutboundType.TERMINATION.name())
+                    .content(content)
+                    .build());
+        } catch (JsonProcessingException e) {
+            // cannot happen for a tree of strings and numbers
+            throw new IllegalStateException("Failed to encode TERMINATION for job " + jobId, e);
+        }
+    }
+
+    /**
+     * Move an existing job onto a reconnected session and replay what the client missed.
+     * <p>
+     * The job gets a fresh context whose drain lock is held while the replay is read, so live
+     * messages arriving meanwhile queue up behind it; anything already covered by the replay is skipped by seq.
+     */
+    public void resumeJob(String jobId, WebSocketSession session, String lastSeq,
+                          Supplier<List<OutboundEnvelope>> replay) {
+        // drop the job created for this connection on connect, it never ran
+        JobContext fresh = sessions.get(session.getId());
+        if (fresh != null && !fresh.jobId.equals(jobId) && contexts.remove(fresh.jobId, fresh)) {
+            jobIds.remove(fresh.jobId);
+            close(fresh);
+        }
+
+        JobContext ctx = newContext(jobId);
+        ctx.session = decorate(session);
+        ctx.lastSeq = lastSeq;
+        ctx.draining.set(true);
+        JobContext previous = contexts.put(jobId, ctx);
+        if (previous != null) {
+            close(previous);
+        }
+        sessions.put(session.getId(), ctx);
+        jobIds.add(jobId);
+        // still running somewhere: restart its run deadlines from now
+        JobTimers jobTimers = new JobTimers();
+        replaceTimers(ctx, jobTimers);
+        armRunDeadlines(ctx, jobTimers);
+        // the run goes on with what is left of its budget (see OutputBudget.resume)
+        ctx.output = previous != null ? previous.output : outputBudget.resume(jobId);
+
+        try {
+            List<OutboundEnvelope> replayed = replay.get();
+            MpscQueue<OutboundEnvelope> replayQueue = new MpscQueue<>(replayed.size());
+            replayed.forEach(replayQueue::offerAndCount);
+            ctx.replay = replayQueue;
+        } finally {
+            releaseDrainLock(ctx);
+        }
+
+        logger.debug("Resumed job {} on session {} after seq {}", jobId, session.getId(), lastSeq);
+    }
+
+    // Wrap the session with a larger buffer to handle bursts to slow clients.
+    private WebSocketSession decorate(WebSocketSession session) {
+        if (Boolean.TRUE.equals(session.getAttributes().get(CONCURRENT_SENDS_ATTRIBUTE))) {
+            return session;
+        }
+        return new ConcurrentWebSocketSessionDecorator(
                 session,
                 (int) Duration.ofSeconds(15).toMillis(), // sendTimeLimit ms
-                WEBSOCKET_BUFFER_BYTES
+                memoryGovernor.sessionBufferBytes()
         );
+    }
 
-        byJob.put(jobId, wrapped);
-        sessionToJob.put(session.getId(), jobId);
-        // If queue exists already (reconnect), don't overwrite capacity
-        jobQueues.computeIfAbsent(jobId, id -> new ArrayBlockingQueue<>(DEFAULT_QUEUE_CAPACITY));
-        jobLocks.computeIfAbsent(jobId, id -> new AtomicBoolean(false));
+    private static double sessionBufferBytes(Map<String, JobContext> jobs) {
+        long total = 0;
+        for (JobContext ctx : jobs.values()) {
+            if (ctx.session instanceof ConcurrentWebSocketSessionDecorator decorator) {
+                total += decorator.getBufferSize();
+            }
+        }
+        return total;
+    }
 
-        logger.debug("Registered job {} with session {}", jobId, session.getId());
+    private JobContext newContext(String jobId) {
+        return new JobContext(jobId, eventLoops == null ? null : eventLoops.pin(jobId));
+    }
+
+    // where the job's drains and expiries run
+    private Executor executorFor(JobContext ctx) {
+        return ctx.loop != null ? ctx.loop : pool;
+    }
+
+    // Release what a context holds once it is out of the map; producers and drainers still holding it drop out.
+    private void close(JobContext ctx) {
+        ctx.closed = true;
+        if (ctx.loop != null) {
+            eventLoops.unpin(ctx.loop);
+        }
+        memoryGovernor.close(ctx.budget);
+        cancelPendingFlush(ctx);
+        replaceTimers(ctx, null);
+        ctx.replay = null;
     }
 
     /**
      * Unregister a job and cleanup resources.
      */
     public void unregisterJob(String jobId) {
-        WebSocketSession session = byJob.remove(jobId);
-        sessionToJob.remove(session.getId());
-        jobQueues.remove(jobId);
-        jobLocks.remove(jobId);
+        JobContext ctx = contexts.get(jobId);
+        if (ctx != null) {
+            unregister(ctx);
+        }
+    }
 
-        unsubscribeJobChannel(jobId);
-        closeSession(session);
+    // Whoever removes the context cleans it up, exactly once; a context already replaced by a resume is left alone.
+    private boolean remove(JobContext ctx) {
+        if (!contexts.remove(ctx.jobId, ctx)) {
+            return false;
+        }
+        jobIds.remove(ctx.jobId);
+        close(ctx);
+        unsubscribeJobChannel(ctx.jobId);
+        return true;
+    }
 
-        logger.debug("Unregistered job {}", jobId);
+    private void unregister(JobContext ctx) {
+        if (!remove(ctx)) return;
+        WebSocketSession session = ctx.session;
+        if (session != null) {
+            sessions.remove(session.getId(), ctx);
+            closeSession(session);
+        }
+
+        logger.debug("Unregistered job {}", ctx.jobId);
     }
 
     /**
      * Unregister a job and cleanup resources.
      */
     public void  unregisterSession(WebSocketSession session) {
-        String jobId = sessionToJob.remove(session.getId());
-        byJob.remove(jobId);
-        jobQueues.remove(jobId);
-        jobLocks.remove(jobId);
-
-        unsubscribeJobChannel(jobId);
+        JobContext ctx = sessions.remove(session.getId());
+        if (ctx != null && remove(ctx)) {
+            // the run may go on without its client: a resume here continues its output budget
+            outputBudget.detach(ctx.jobId, ctx.output);
+        }
         closeSession(session);
 
         logger.debug("Unregistered session {}", session.getId());
     }
 
     public void closeSession(WebSocketSession session) {
+        closeSession(session, CloseStatus.NORMAL);
+    }
+
+    private void closeSession(WebSocketSession session, CloseStatus status) {
         try {
             if (session.isOpen()) {
-                session.close(CloseStatus.NORMAL);
+                session.close(status);
                 logger.info("Session closed: {}", session.getId());
             }
         } catch (Exception e) {
@@ -142,83 +532,356 @@ public class JobMessagingService {
 
     // Unsubscribe redis listener from a channel
     public void unsubscribeJobChannel(String jobId) {
-        String channel = ChannelNaming.jobChannel(jobId);
-        redisMessageListenerContainer.removeMessageListener(null, new ChannelTopic(channel));
-        System.out.println("Unsubscribed from " + channel);
-        logger.info("Unsubscribed redis listener from: {}", channel);
+        jobChannelSubscriptions.unsubscribe(jobId);
     }
 
 
+    /**
+     * Cheap ownership check so output for jobs owned by other nodes can be dropped before parsing.
+     */
+    public boolean hasJob(String jobId) {
+        return contexts.containsKey(jobId);
+    }
+
+    /**
+     * Byte form of {@link #hasJob}: the owned job id spelled by {@code channel} from {@code offset}
+     * to its end, or null when the job belongs to another node.
+     */
+    public String jobIdFor(byte[] channel, int offset) {
+        return jobIds.find(channel, offset, channel.length - offset);
+    }
+
     public String jobIdCorrespondingToSession(WebSocketSession session) {
-        return sessionToJob.get(session.getId());
+        JobContext ctx = sessions.get(session.getId());
+        return ctx == null ? null : ctx.jobId;
     }
 
     /**
-     * Enqueue message for the job. We pre-serialize the message to avoid doing it inside pool threads.
-     * If the per-job queue is full, this will drop the message (or could block/metrics depending on policy).
+     * Enqueue message for the job. The envelope is classified and encoded by the caller so pool threads never parse.
+     * Output past the run's head budget is held back as tail and sent, after a truncation marker, just before
+     * the terminal message.
      */
-    public void sendToJob(String jobId, String payload) {
-        ArrayBlockingQueue<String> queue = jobQueues.get(jobId);
-        if (queue == null) {
+    public void sendToJob(String jobId, OutboundEnvelope envelope) {
+        JobContext ctx = contexts.get(jobId);
+        if (ctx == null) {
             // job not registered; optionally log or buffer elsewhere
             logger.debug("sendToJob: job {} not found, dropping message", jobId);
+            jobMetrics.droppedUnregistered();
+            return;
+        }
+        sendToJob(ctx, envelope);
+    }
+
+    private void sendToJob(JobContext ctx, OutboundEnvelope envelope) {
+        OutputBudget.JobOutput output = ctx.output;
+        if (output != null) {
+            if (envelope.type().isTerminal()) {
+                for (OutboundEnvelope held : output.finish(ctx.jobId)) {
+                    enqueue(ctx, held);
+                }
+            } else if (!output.admit(envelope)) {
+                // kept in the tail or elided: the runner is still alive
+                touch(ctx);
+                return;
+            }
+        }
+        enqueue(ctx, envelope);
+    }
+
+    /**
+     * Output that exceeds the job's byte allowance is handled by the governor's overflow policy.
+     */
+    private void enqueue(JobContext ctx, OutboundEnvelope envelope) {
+        if (ctx.closed) {
+            // unregistered since the lookup
+            logger.debug("sendToJob: job {} not found, dropping message", ctx.jobId);
+            jobMetrics.droppedUnregistered();
             return;
         }
 
+        boolean pause = memoryGovernor.policy() == MemoryGovernor.OverflowPolicy.PAUSE;
+        // once output is held back, what follows is held behind it so the client still sees it in order
+        if (pause && ctx.held.size() > 0) {
+            hold(ctx, envelope);
+            return;
+        }
+        if (!admit(ctx, envelope)) {
+            if (pause) {
+                hold(ctx, envelope);
+                return;
+            }
+            logger.warn("Output budget exceeded for job {} - dropping message", ctx.jobId);
+            jobMetrics.droppedBudget();
+            return;
+        }
 
-        // Offer into bounded queue (non-blocking). If full, you can:
-        // - drop, - block with offer(timeout), - or apply backpressure upstream.
-        boolean offered = queue.offer(payload);
-        if (!offered) {
-            // TODO: increase size
+        // Offer into bounded queue (non-blocking).
+        int queued = ctx.queue.offerAndCount(envelope);
+        if (queued == 0) {
             // Queue full: increment metric or log. For high-throughput, avoid blocking.
-            logger.warn("Queue full for job {} - dropping message", jobId);
+            memoryGovernor.release(ctx.budget, envelope.sizeBytes());
+            logger.warn("Queue full for job {} - dropping message", ctx.jobId);
+            jobMetrics.droppedQueueFull();
+            return;
+        }
+        jobMetrics.queueDepth(queued);
+        outputFlowControl.afterAcquire(ctx.jobId, ctx.budget);
+        touch(ctx);
+
+        // an event loop is woken once per batch, by the message that found the queue empty (or one that
+        // must not wait); the drain it runs takes everything queued behind that message too
+        boolean flushNow = envelope.type().isGuaranteed() || drainFairness.isInteractive(ctx.lastInputNanos);
+        if (ctx.loop == null || queued == 1 || flushNow) {
+            tryDispatch(ctx, flushNow);
+        }
+    }
+
+    /**
+     * Reserve the envelope's bytes, applying the overflow policy when the job is over its allowance.
+     * Terminal messages and the server's own acks are always admitted.
+     */
+    private boolean admit(JobContext ctx, OutboundEnvelope envelope) {
+        int bytes = envelope.sizeBytes();
+        if (envelope.type().isGuaranteed()) {
+            memoryGovernor.forceAcquire(ctx.budget, bytes);
+            return true;
+        }
+        if (memoryGovernor.tryAcquire(ctx.budget, bytes)) {
+            return true;
+        }
+
+        memoryGovernor.overflow();
+        return switch (memoryGovernor.policy()) {
+            case DROP_OLDEST -> evictUntilFits(ctx, bytes);
+            // held by the caller
+            case PAUSE, DROP_NEWEST -> false;
+        };
+    }
+
+    // PAUSE: keep the message on the job instead of blocking the producer (usually the Redis listener thread,
+    // shared by every job), and stop the runner until the drainer has caught up
+    private void hold(JobContext ctx, OutboundEnvelope envelope) {
+        int bytes = envelope.sizeBytes();
+        if (envelope.type().isGuaranteed()) {
+            memoryGovernor.forceHold(ctx.budget, bytes);
+        } else if (!memoryGovernor.tryHold(ctx.budget, bytes)) {
+            logger.warn("Output hold full for job {} - dropping message", ctx.jobId);
+            jobMetrics.droppedBudget();
             return;
         }
+        if (ctx.held.offerAndCount(envelope) == 0) {
+            memoryGovernor.release(ctx.budget, bytes);
+            logger.warn("Hold queue full for job {} - dropping message", ctx.jobId);
+            jobMetrics.droppedQueueFull();
+            return;
+        }
+        outputFlowControl.pause(ctx.jobId, ctx.budget);
+        touch(ctx);
+        tryDispatch(ctx, true);
+    }
+
+    // Drainer side of hold(): move held output into the queue while the allowance has room. An empty
+    // queue always takes the next message, so one larger than the allowance cannot stall the job.
+    private void promoteHeld(JobContext ctx) {
+        OutboundEnvelope head;
+        while ((head = ctx.held.peek()) != null) {
+            boolean force = head.type().isGuaranteed() || ctx.queue.size() == 0;
+            if (!memoryGovernor.promote(ctx.budget, head.sizeBytes(), force)) {
+                return;
+            }
+            ctx.held.poll();
+            if (ctx.queue.offerAndCount(head) == 0) {
+                memoryGovernor.release(ctx.budget, head.sizeBytes());
+                jobMetrics.droppedQueueFull();
+            }
+        }
+    }
 
-        tryDispatch(jobId);
+    // keep the tail: evict queued output from the head (never a terminal message or an ack) until the new one fits.
+    // Polling is the consumer's side of the queue, so the producer borrows the drain lock for it. While a
+    // drainer holds the lock the message is dropped instead: waiting for it would block the producer.
+    private boolean evictUntilFits(JobContext ctx, int bytes) {
+        if (!acquireDrainLock(ctx)) {
+            return false;
+        }
+        try {
+            OutboundEnvelope head;
+            while ((head = ctx.queue.peek()) != null && !head.type().isGuaranteed()) {
+                ctx.queue.poll();
+                memoryGovernor.release(ctx.budget, head.sizeBytes());
+                if (memoryGovernor.tryAcquire(ctx.budget, bytes)) {
+                    return true;
+                }
+            }
+            return memoryGovernor.tryAcquire(ctx.budget, bytes);
+        } finally {
+            releaseDrainLock(ctx);
+        }
     }
 
     /**
      * Attempt to acquire the per-job lock and schedule a drainer if not already running.
+     * Output waits for the coalescing window so followers can be merged; {@code flushNow}
+     * skips the window, and also pulls forward a drain that is still waiting for it.
      */
-    private void tryDispatch(String jobId) {
-        AtomicBoolean lock = jobLocks.get(jobId);
-        if (lock != null && lock.compareAndSet(false, true)) {
+    private void tryDispatch(JobContext ctx, boolean flushNow) {
+        if (ctx.closed) return;
+
+        if (ctx.loop != null) {
+            // a loop runs the job's drains one after another, so there is no lock to take here;
+            // a drain that finds the queue already emptied is a no-op
+            long window = outputCoalescer.windowMillis();
+            if (flushNow || window <= 0) {
+                ctx.loop.execute(() -> drainOnLoop(ctx));
+            } else {
+                flushScheduler.schedule(() -> ctx.loop.execute(() -> drainOnLoop(ctx)), window, TimeUnit.MILLISECONDS);
+            }
+            return;
+        }
+
+        if (ctx.draining.compareAndSet(false, true)) {
             try {
-                pool.execute(() -> drainQueue(jobId));
+                long window = outputCoalescer.windowMillis();
+                if (flushNow || window <= 0) {
+                    pool.execute(() -> drainQueue(ctx));
+                } else {
+                    ctx.pendingFlush.set(flushScheduler.schedule(() -> {
+                        ctx.pendingFlush.set(null);
+                        pool.execute(() -> drainQueue(ctx));
+                    }, window, TimeUnit.MILLISECONDS));
+                }
             } catch (RejectedExecutionException rex) {
-                // TODO:
-                // If pool is saturated, release lock and handle fallback (CallerRunsPolicy would have handled).
-                lock.set(false);
-                logger.error("Pool saturated while scheduling drainer for job {}", jobId, rex);
+                // Pool saturated: count it and give the lock back. The messages stay queued and the job's
+                // next message schedules the drain again; nothing is sent on the producer's thread.
+                ctx.draining.set(false);
+                jobMetrics.rejectedDrain();
+                logger.error("Pool saturated while scheduling drainer for job {}", ctx.jobId, rex);
             }
+        } else if (flushNow) {
+            // A successful cancel means the delayed drain never started, so we still own the lock
+            ScheduledFuture<?> pending = ctx.pendingFlush.getAndSet(null);
+            if (pending != null && pending.cancel(false)) {
+                pool.execute(() -> drainQueue(ctx));
+            }
+        }
+    }
+
+    // The drain lock for a caller that polls itself: free, or taken over from a drain still waiting for its window.
+    private boolean acquireDrainLock(JobContext ctx) {
+        if (ctx.draining.compareAndSet(false, true)) {
+            return true;
+        }
+        ScheduledFuture<?> pending = ctx.pendingFlush.getAndSet(null);
+        return pending != null && pending.cancel(false);
+    }
+
+    // If messages arrived while the lock was held, re-schedule. They have already
+    // waited for the lock holder, so don't hold them for another window.
+    private void releaseDrainLock(JobContext ctx) {
+        ctx.draining.set(false);
+        if (ctx.queue.size() > 0 || ctx.held.size() > 0) {
+            tryDispatch(ctx, true);
+        }
+    }
+
+    private static void cancelPendingFlush(JobContext ctx) {
+        ScheduledFuture<?> pending = ctx.pendingFlush.getAndSet(null);
+        if (pending != null) {
+            pending.cancel(false);
+        }
+    }
+
+    // Event-loop mode: the loop is the only drainer, the lock just keeps it out while a resume or an
+    // eviction holds it; they dispatch again when they let go.
+    private void drainOnLoop(JobContext ctx) {
+        if (ctx.draining.compareAndSet(false, true)) {
+            drainQueue(ctx);
         }
     }
 
+    // bytes the job may send this turn
+    private long quantum(JobContext ctx) {
+        OutputBudget.JobOutput output = ctx.output;
+        boolean noisy = ctx.budget.isProducerPaused() || (output != null && output.isTruncating());
+        return drainFairness.quantum(noisy, drainFairness.isInteractive(ctx.lastInputNanos));
+    }
+
     /**
      * Drains queue and sends messages sequentially for a job. If the session fails, job is unregistered.
      */
-    private void drainQueue(String jobId) {
+    private void drainQueue(JobContext ctx) {
+        activeDrains.incrementAndGet();
+        String jobId = ctx.jobId;
         try {
-            WebSocketSession session = byJob.get(jobId);
-            ArrayBlockingQueue<String> queue = jobQueues.get(jobId);
+            WebSocketSession session = ctx.session;
+            MpscQueue<OutboundEnvelope> queue = ctx.queue;
+            // only live envelopes hold budget, replayed ones were never admitted
+            Consumer<OutboundEnvelope> released = envelope -> {
+                memoryGovernor.release(ctx.budget, envelope.sizeBytes());
+                outputFlowControl.afterRelease(jobId, ctx.budget);
+            };
+
+            MpscQueue<OutboundEnvelope> replay = ctx.replay;
+            boolean fair = drainFairness.isEnabled();
+            long deficit = fair ? ctx.deficit + quantum(ctx) : Long.MAX_VALUE;
+            boolean yielded = false;
+
+            // If session missing or the job unregistered, exit early.
+            while (session != null && !ctx.closed) {
+                // replayed output (after a resume) goes out before anything live
+                MpscQueue<OutboundEnvelope> source = queue;
+                if (replay != null) {
+                    if (replay.size() == 0) {
+                        ctx.replay = null;
+                        replay = null;
+                    } else {
+                        source = replay;
+                    }
+                }
+
+                // turn used up: the lock release below puts the job at the back of the dispatcher's queue
+                if (deficit <= 0) {
+                    yielded = source.peek() != null;
+                    break;
+                }
+
+                OutboundEnvelope envelope = source.poll();
+                if (envelope == null) {
+                    if (source == queue && ctx.held.size() > 0) {
+                        promoteHeld(ctx);
+                        continue;
+                    }
+                    break;
+                }
+                if (source == queue) {
+                    released.accept(envelope);
+                }
 
-            // If session or queue missing, exit early.
-            while (session != null && queue != null) {
-                String payload = queue.poll();
-                if (payload == null) break;
+                // stream transport: skip what the client already has
+                if (envelope.seq() != null && !OutboundEnvelope.isAfter(envelope.seq(), ctx.lastSeq)) {
+                    continue;
+                }
 
-                OutboundMessage msg = objectMapper.readValue(payload, OutboundMessage.class);
+                OutboundEnvelope frame = outputCoalescer.nextFrame(jobId, envelope, source,
+                        source == queue ? released : merged -> { });
 
                 try {
-                    logger.info("sending {} to session {} with job id: {}", payload, session.getId(), jobId);
+                    logger.trace("sending {} to session {} with job id: {}", frame.type(), session.getId(), jobId);
 
                     if (session.isOpen()) {
-                        session.sendMessage(new TextMessage(payload));
+                        session.sendMessage(frame.frame());
+                        // only program output the client was sent; replayed frames are in the transcript already
+                        if (source == queue && frame.type() != OutboundType.CONTROL) {
+                            transcriptStore.append(jobId, frame.frame());
+                        }
+                        deficit -= frame.sizeBytes();
+                        outputCoalescer.frameSent(frame);
+                        if (frame.seq() != null) {
+                            ctx.lastSeq = frame.seq();
+                        }
                     }
 
-                    if (msg.getType().equals("COMPLETION") || msg.getType().equals("TERMINATION")) {
+                    if (frame.type().isTerminal()) {
                         // remove all and close socket connection
                         // unregisterJob(jobId);
                         closeSession(session);
@@ -226,55 +889,25 @@ public class JobMessagingService {
                 } catch (IOException e) {
                     // If send fails, cleanup and break. Remaining messages are dropped.
                     logger.error("Failed to send to session for job {}: {}", jobId, e.getMessage());
+                    jobMetrics.sendFailed();
 
-                    // TODO: check after break does finally work or not, if wor then do not remove
-                    unregisterJob(jobId);
+                    unregister(ctx);
                     break;
                 }
             }
+
+            if (fair) {
+                // DRR: what is left carries over while the job stays backlogged, an emptied queue starts afresh
+                ctx.deficit = yielded ? deficit : 0;
+                if (yielded) {
+                    drainFairness.yielded();
+                }
+            }
         } catch (Exception e) {
             logger.error("Unexpected error during drain for job {}: {}", jobId, e.getMessage(), e);
         } finally {
-            AtomicBoolean lock = jobLocks.get(jobId);
-            if (lock != null) {
-                lock.set(false);
-                // If messages arrived while we were finishing, re-schedule
-                ArrayBlockingQueue<String> queue = jobQueues.get(jobId);
-                if (queue != null && !queue.isEmpty()) {
-                    tryDispatch(jobId);
-                }
-            }
+            activeDrains.decrementAndGet();
+            releaseDrainLock(ctx);
         }
     }
-
-
-//    public void sendToJob(String jobId, OutboundMessage msg) {
-//        try {
-//            String json = objectMapper.writeValueAsString(msg);
-//            WebSocketSession session = sessionRegistry.sessionCorrespondingToJobId(jobId);
-//
-//            // if session is open then send message to user
-//            if (session.isOpen()) {
-//                try {
-//                    logger.info("session id: {}", session.getId());
-//                    session.sendMessage(new TextMessage(json));
-//                } catch (IOException e) {
-//                    logger.warn("Failed to send to session {}: {}", session.getId(), e.getMessage());
-//                }
-//            }else {
-//                // TODO: if session is closed before successful execution then stop code execution
-//            }
-//
-//            // TODO: Auto-unsubscribe when job is DONE, and remove session from in memory
-//            // TODO: close the session, remove redis listener
-//            // TODO: creating a loop
-////            if ("DONE".equals(msg.getType())) {
-////                String channel = ChannelNaming.jobChannel(jobId);
-////                redisMessageListenerContainer.removeMessageListener(redisSubscriber, new ChannelTopic(channel));
-////                logger.info("Job {} finished. Unsubscribed from Redis channel {}", jobId, channel);
-////            }
-//        } catch (Exception e) {
-//            logger.error("Failed to send to job {}", jobId, e);
-//        }
-//    }
 }
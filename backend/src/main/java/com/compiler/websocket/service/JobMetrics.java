@@ -0,0 +1,107 @@
+package com.compiler.websocket.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+/**
+ * Meters for the job pipeline: websocket in, SQS out, Redis in, websocket out.
+ * <p>
+ * Hot-path meters are created once; per-language meters are looked up in the registry
+ * on use, which is fine at submission rate. Gauges over live state are registered by
+ * the components that own that state (JobMessagingService, MemoryGovernor).
+ */
+@Component
+public class JobMetrics {
+
+    private final MeterRegistry meterRegistry;
+
+    private final DistributionSummary queueDepth;
+    private final DistributionSummary sqsBatchSize;
+    private final Counter droppedUnregistered;
+    private final Counter droppedNotOwned;
+    private final Counter droppedBudget;
+    private final Counter droppedQueueFull;
+    private final Counter rejectedDrains;
+    private final Counter sendFailures;
+
+    public JobMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+
+        this.queueDepth = DistributionSummary.builder("jobs.queue.depth")
+                .description("Messages in a job's queue when output is enqueued")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.sqsBatchSize = DistributionSummary.builder("jobs.sqs.batch.size")
+                .description("Entries per SQS SendMessageBatch")
+                .register(meterRegistry);
+        this.droppedUnregistered = dropped("unregistered");
+        this.droppedNotOwned = dropped("not_owned");
+        this.droppedBudget = dropped("budget");
+        this.droppedQueueFull = dropped("queue_full");
+        this.rejectedDrains = Counter.builder("jobs.dispatcher.rejected")
+                .description("Drains the dispatcher refused with RejectedExecutionException")
+                .register(meterRegistry);
+        this.sendFailures = Counter.builder("jobs.output.send.failures")
+                .description("Websocket sends that failed and unregistered the job")
+                .register(meterRegistry);
+    }
+
+    private Counter dropped(String reason) {
+        return Counter.builder("jobs.output.dropped")
+                .description("Output messages dropped before reaching the client")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    public MeterRegistry registry() {
+        return meterRegistry;
+    }
+
+    public void queueDepth(int depth) {
+        queueDepth.record(depth);
+    }
+
+    public void droppedUnregistered() {
+        droppedUnregistered.increment();
+    }
+
+    public void droppedNotOwned() {
+        droppedNotOwned.increment();
+    }
+
+    public void droppedBudget() {
+        droppedBudget.increment();
+    }
+
+    public void droppedQueueFull() {
+        droppedQueueFull.increment();
+    }
+
+    public void rejectedDrain() {
+        rejectedDrains.increment();
+    }
+
+    public void sendFailed() {
+        sendFailures.increment();
+    }
+
+    public void sqsBatchSize(int entries) {
+        sqsBatchSize.record(entries);
+    }
+
+    public Timer.Sample startSqsPublish() {
+        return Timer.start(meterRegistry);
+    }
+
+    public void sqsPublished(Timer.Sample sample, String language, boolean success) {
+        sample.stop(Timer.builder("jobs.sqs.publish")
+                .description("SQS SendMessageBatch latency, by language")
+                .tag("language", language)
+                .tag("outcome", success ? "success" : "failure")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry));
+    }
+}
@@ -0,0 +1,105 @@
+package com.compiler.websocket.service;
+
+import com.compiler.websocket.messaging.ChannelNaming;
+import com.compiler.websocket.messaging.OutboundEnvelope;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Resumable job output on top of Redis Streams ({@code app.jobs.output.transport=stream}).
+ * <p>
+ * Runners append every payload to the capped stream {@code job-stream:<jobId>} and publish it,
+ * tagged with the entry id as "seq", on the usual {@code job:<jobId>} channel. Live delivery
+ * is unchanged; the stream is only read when a client comes back with RESUME_EVENT and the
+ * last seq it saw. A dropped connection keeps the program alive for {@code resume-grace-ms}
+ * before the runner is told to stop.
+ */
+@Service
+public class JobOutputReplay {
+
+    public enum Transport { PUBSUB, STREAM }
+
+    private static final Logger logger = LoggerFactory.getLogger(JobOutputReplay.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final JsonFactory jsonFactory;
+    private final Transport transport;
+    private final long graceMillis;
+
+    // jobId -> SESSION_CLOSED_EVENT waiting for the client to come back
+    private final Map<String, ScheduledFuture<?>> pendingCloses = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+
+    public JobOutputReplay(StringRedisTemplate redisTemplate,
+                           ObjectMapper objectMapper,
+                           @Value("${app.jobs.output.transport:pubsub}") Transport transport,
+                           @Value("${app.jobs.output.resume-grace-ms:30000}") long graceMillis) {
+        this.redisTemplate = redisTemplate;
+        this.jsonFactory = objectMapper.getFactory();
+        this.transport = transport;
+        this.graceMillis = graceMillis;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread t = new Thread(runnable);
+            t.setName("job-resume-" + t.threadId());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public boolean isEnabled() {
+        return transport == Transport.STREAM;
+    }
+
+    /**
+     * Read everything recorded for the job after {@code lastSeq} (null replays from the start).
+     */
+    public List<OutboundEnvelope> replay(String jobId, String lastSeq) {
+        String key = ChannelNaming.jobStream(jobId);
+        // XRANGE bounds are inclusive; the entry equal to lastSeq is skipped below
+        Range<String> range = lastSeq == null ? Range.unbounded() : Range.rightUnbounded(Range.Bound.inclusive(lastSeq));
+        List<MapRecord<String, Object, Object>> records = redisTemplate.opsForStream().range(key, range);
+
+        List<OutboundEnvelope> envelopes = new ArrayList<>(records == null ? 0 : records.size());
+        if (records == null) return envelopes;
+
+        for (MapRecord<String, Object, Object> record : records) {
+            String seq = record.getId().getValue();
+            Object data = record.getValue().get("data");
+            if (data == null || !OutboundEnvelope.isAfter(seq, lastSeq)) continue;
+            envelopes.add(OutboundEnvelope.parse(jsonFactory, OutboundEnvelope.withSeq(data.toString(), seq)));
+        }
+
+        logger.info("Replaying {} messages for job {} after seq {}", envelopes.size(), jobId, lastSeq);
+        return envelopes;
+    }
+
+    /**
+     * Defer the runner-side close of a job whose client dropped, so it can still resume.
+     */
+    public void scheduleClose(String jobId, Runnable closeJob) {
+        pendingCloses.put(jobId, scheduler.schedule(() -> {
+            pendingCloses.remove(jobId);
+            closeJob.run();
+        }, graceMillis, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * @return true if the job was waiting for its client and is still running
+     */
+    public boolean cancelClose(String jobId) {
+        ScheduledFuture<?> pending = pendingCloses.remove(jobId);
+        return pending != null && pending.cancel(false);
+    }
+}
@@ -0,0 +1,72 @@
+package com.compiler.websocket.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * Per-job secret handed to the client that started the job, with SESSION_CREATED.
+ * <p>
+ * Knowing a job id is not enough to act on the job: taking it over with RESUME_EVENT or reading its
+ * transcript needs the token as well. A token is the HMAC-SHA256 of the job id under
+ * {@code app.jobs.token-secret}, so any node sharing the secret can check it without shared state.
+ * Without a configured secret a random one is generated at startup, which only suits a single node.
+ */
+@Component
+public class JobTokens {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobTokens.class);
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final SecretKeySpec key;
+
+    public JobTokens(@Value("${app.jobs.token-secret:}") String secret) {
+        byte[] keyBytes;
+        if (secret == null || secret.isBlank()) {
+            logger.warn("app.jobs.token-secret is not set, job tokens are only valid on this node until it restarts");
+            keyBytes = new byte[32];
+            new SecureRandom().nextBytes(keyBytes);
+        } else {
+            keyBytes = secret.getBytes(StandardCharsets.UTF_8);
+        }
+        this.key = new SecretKeySpec(keyBytes, ALGORITHM);
+    }
+
+    /** The token for {@code jobId}; the same on every call and on every node with the same secret. */
+    public String issue(String jobId) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(mac(jobId));
+    }
+
+    /** Whether {@code token} was issued for {@code jobId}, compared in constant time. */
+    public boolean verify(String jobId, String token) {
+        if (jobId == null || token == null) return false;
+        byte[] presented;
+        try {
+            presented = Base64.getUrlDecoder().decode(token);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        return MessageDigest.isEqual(mac(jobId), presented);
+    }
+
+    private byte[] mac(String jobId) {
+        try {
+            // Mac instances are not thread-safe and cheap to create next to the hash itself
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac.doFinal(jobId.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            // HmacSHA256 is required of every JRE
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.compiler.websocket.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Byte accounting for queued job output, per job and across the node.
+ * <p>
+ * Each job may queue up to {@code job-max-bytes}, scaled down linearly as the node total
+ * approaches {@code node-max-bytes} but never below {@code job-min-bytes}. What happens to
+ * a message that does not fit is decided by the {@link OverflowPolicy}. Terminal messages
+ * (COMPLETION/TERMINATION) are always admitted so a job can finish.
+ * <p>
+ * No policy blocks the producer: output usually arrives on the shared Redis listener thread,
+ * so waiting for one slow client would stall every job on the node.
+ */
+@Component
+public class MemoryGovernor {
+
+    public enum OverflowPolicy {
+        /** Reject the incoming message, keeping the head of the output (previous behaviour). */
+        DROP_NEWEST,
+        /** Evict queued output from the head until the message fits, keeping the tail. */
+        DROP_OLDEST,
+        /**
+         * Hold the message on the job, up to {@code pause-hold-bytes}, and tell the runner to pause;
+         * held output is queued as the drainer frees the allowance. Drop once the hold is full.
+         */
+        PAUSE
+    }
+
+    /**
+     * Bytes currently queued for one job, including any held back under PAUSE.
+     * Once closed, late acquires and releases are ignored.
+     */
+    public static final class JobBudget {
+        private static final long CLOSED = Long.MIN_VALUE;
+        private final AtomicLong bytes = new AtomicLong();
+        // the part of bytes held back under PAUSE, not yet in the job's queue
+        private final AtomicLong held = new AtomicLong();
+        // runner was told to stop producing (see OutputFlowControl)
+        private final AtomicBoolean producerPaused = new AtomicBoolean();
+
+        public long bytes() {
+            return Math.max(0, bytes.get());
+        }
+
+        public long heldBytes() {
+            return held.get();
+        }
+
+        private boolean add(long delta) {
+            long current;
+            do {
+                current = bytes.get();
+                if (current == CLOSED) return false;
+            } while (!bytes.compareAndSet(current, current + delta));
+            return true;
+        }
+
+        boolean isProducerPaused() {
+            return producerPaused.get();
+        }
+
+        boolean markProducerPaused(boolean paused) {
+            return producerPaused.compareAndSet(!paused, paused);
+        }
+    }
+
+    private final long nodeMaxBytes;
+    private final long jobMaxBytes;
+    private final long jobMinBytes;
+    private final int sessionBufferBytes;
+    private final OverflowPolicy policy;
+    private final long pauseHoldBytes;
+
+    private final AtomicLong nodeBytes = new AtomicLong();
+    private final Counter overflows;
+
+    public MemoryGovernor(MeterRegistry meterRegistry,
+                          @Value("${app.jobs.memory.node-max-bytes:268435456}") long nodeMaxBytes,
+                          @Value("${app.jobs.memory.job-max-bytes:4194304}") long jobMaxBytes,
+                          @Value("${app.jobs.memory.job-min-bytes:65536}") long jobMinBytes,
+                          @Value("${app.jobs.memory.session-buffer-bytes:20971520}") int sessionBufferBytes,
+                          @Value("${app.jobs.memory.overflow-policy:drop-newest}") OverflowPolicy policy,
+                          @Value("${app.jobs.memory.pause-hold-bytes:1048576}") long pauseHoldBytes) {
+        this.nodeMaxBytes = nodeMaxBytes;
+        this.jobMaxBytes = jobMaxBytes;
+        this.jobMinBytes = jobMinBytes;
+        this.sessionBufferBytes = sessionBufferBytes;
+        this.policy = policy;
+        this.pauseHoldBytes = pauseHoldBytes;
+
+        Gauge.builder("jobs.memory.queued.bytes", nodeBytes, AtomicLong::get)
+                .description("Output bytes queued across all jobs on this node")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("jobs.memory.job.allowance.bytes", this, MemoryGovernor::jobAllowance)
+                .description("Bytes a single job may currently queue")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.overflows = Counter.builder("jobs.memory.overflow")
+                .description("Messages that did not fit in their job's allowance")
+                .tag("policy", policy.name())
+                .register(meterRegistry);
+    }
+
+    public OverflowPolicy policy() {
+        return policy;
+    }
+
+    /** Send buffer for each ConcurrentWebSocketSessionDecorator. */
+    public int sessionBufferBytes() {
+        return sessionBufferBytes;
+    }
+
+    /** Current per-job allowance: shrinks as node-wide pressure rises. */
+    public long jobAllowance() {
+        double free = 1.0 - (double) nodeBytes.get() / nodeMaxBytes;
+        return Math.max(jobMinBytes, (long) (jobMaxBytes * Math.max(0.0, free)));
+    }
+
+    /**
+     * Reserve {@code bytes} for the job if both its allowance and the node cap allow it.
+     */
+    public boolean tryAcquire(JobBudget budget, int bytes) {
+        if (budget.bytes() + bytes > jobAllowance() || nodeBytes.get() + bytes > nodeMaxBytes) {
+            return false;
+        }
+        forceAcquire(budget, bytes);
+        return true;
+    }
+
+    /** Reserve unconditionally, used for messages that must never be dropped. */
+    public void forceAcquire(JobBudget budget, int bytes) {
+        if (budget.add(bytes)) {
+            nodeBytes.addAndGet(bytes);
+        }
+    }
+
+    /**
+     * PAUSE: reserve {@code bytes} for a message held back from the job's queue, if the job's hold
+     * ({@code pause-hold-bytes}) and the node cap allow it.
+     */
+    public boolean tryHold(JobBudget budget, int bytes) {
+        if (budget.heldBytes() + bytes > pauseHoldBytes || nodeBytes.get() + bytes > nodeMaxBytes) {
+            return false;
+        }
+        forceHold(budget, bytes);
+        return true;
+    }
+
+    /** Hold unconditionally, used for terminal messages that arrive behind held output. */
+    public void forceHold(JobBudget budget, int bytes) {
+        forceAcquire(budget, bytes);
+        budget.held.addAndGet(bytes);
+    }
+
+    /**
+     * Move a held message into the job's queue if the queued part fits the allowance, or unconditionally
+     * with {@code force}. The bytes stay reserved, only the queued/held split changes.
+     */
+    public boolean promote(JobBudget budget, int bytes, boolean force) {
+        if (!force && budget.bytes() - budget.heldBytes() + bytes > jobAllowance()) {
+            return false;
+        }
+        budget.held.addAndGet(-bytes);
+        return true;
+    }
+
+    public void release(JobBudget budget, int bytes) {
+        if (budget.add(-bytes)) {
+            nodeBytes.addAndGet(-bytes);
+        }
+    }
+
+    /** Return whatever the job still holds when it is unregistered. */
+    public void close(JobBudget budget) {
+        long held = budget.bytes.getAndSet(JobBudget.CLOSED);
+        if (held > 0) {
+            nodeBytes.addAndGet(-held);
+        }
+    }
+
+    public void overflow() {
+        overflows.increment();
+    }
+
+    public long nodeBytes() {
+        return nodeBytes.get();
+    }
+}
@@ -0,0 +1,84 @@
+package com.compiler.websocket.service;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Bounded lock-free multi-producer single-consumer queue (Vyukov's linked queue).
+ * <p>
+ * Producers only swap the tail, so offering never blocks or retries against other producers,
+ * unlike the lock ArrayBlockingQueue takes on both ends. The consumer side ({@link #poll},
+ * {@link #peek}) must be used by one thread at a time; for job queues that is whoever holds
+ * the job's drain lock, which also publishes {@code head} from one drainer to the next.
+ * <p>
+ * A node offered but not yet linked is counted by {@link #size} but not yet visible to
+ * {@link #poll}; its producer signals the consumer after offering, so nothing is missed.
+ * <p>
+ * Deliberately not a {@link java.util.Queue}: iteration, bulk operations and {@code contains}
+ * could only be done safely by the consumer, so none are offered.
+ */
+final class MpscQueue<E> {
+
+    private static final class Node<E> {
+        private E value;
+        private volatile Node<E> next;
+
+        Node(E value) {
+            this.value = value;
+        }
+    }
+
+    private final int capacity;
+    private final AtomicInteger count = new AtomicInteger();
+    private final AtomicReference<Node<E>> tail;
+    // consumer-only: the last node consumed (a stub at first), its successor is the next element
+    private Node<E> head;
+
+    MpscQueue(int capacity) {
+        this.capacity = capacity;
+        this.head = new Node<>(null);
+        this.tail = new AtomicReference<>(head);
+    }
+
+    /**
+     * Append {@code element} and return the size with it counted, or 0 when the queue is full.
+     * 1 means the queue was empty, so this producer is the one that has to wake the consumer.
+     */
+    int offerAndCount(E element) {
+        Objects.requireNonNull(element);
+        int size = count.incrementAndGet();
+        if (size > capacity) {
+            count.decrementAndGet();
+            return 0;
+        }
+        Node<E> node = new Node<>(element);
+        tail.getAndSet(node).next = node;
+        return size;
+    }
+
+    E poll() {
+        Node<E> next = head.next;
+        if (next == null) return null;
+        E value = next.value;
+        // the consumed node becomes the stub: drop its element so it does not outlive the poll
+        next.value = null;
+        head = next;
+        count.decrementAndGet();
+        return value;
+    }
+
+    E peek() {
+        Node<E> next = head.next;
+        return next == null ? null : next.value;
+    }
+
+    int size() {
+        return count.get();
+    }
+
+    @Override
+    public String toString() {
+        return "MpscQueue[size=" + count.get() + ", capacity=" + capacity + "]";
+    }
+}
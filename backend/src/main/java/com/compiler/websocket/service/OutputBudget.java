@@ -0,0 +1,260 @@
+package com.compiler.websocket.service;
+
+import com.compiler.websocket.messaging.OutboundEnvelope;
+import com.compiler.websocket.model.OutboundMessage;
+import com.compiler.websocket.model.OutboundType;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Server-side cap on how much output one run may send, independent of the runner's own limits.
+ * <p>
+ * The first {@code head-bytes}/{@code head-lines} of STDOUT/STDERR go out live. After that only
+ * a ring of the last {@code tail-bytes}/{@code tail-lines} is kept; everything pushed out of it
+ * is elided. When the run ends the tail is sent behind a single "output truncated" marker.
+ * <p>
+ * Limits are read per language as {@code app.jobs.output.budget.<language>.<limit>}, falling back
+ * to {@code app.jobs.output.budget.<limit>}. A head of 0 bytes disables the budget.
+ * <p>
+ * A run whose client drops keeps its budget on this node for {@code resume-grace-ms} (stream
+ * transport only), so a RESUME_EVENT handled here continues with what was left of the head instead
+ * of a second full one. A run resumed on another node, or after the grace period, starts a fresh
+ * budget with the default limits: the state is not shared between nodes.
+ */
+@Component
+public class OutputBudget {
+
+    public record Limits(long headBytes, long headLines, long tailBytes, long tailLines) {
+    }
+
+    private static final String PREFIX = "app.jobs.output.budget.";
+    // detached budgets kept at most, oldest dropped first
+    private static final int MAX_DETACHED = 10_000;
+
+    private record Detached(JobOutput output, long atNanos) {
+    }
+
+    private final ObjectMapper objectMapper;
+    private final Environment environment;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Limits> limits = new ConcurrentHashMap<>();
+    private final Counter truncated;
+    // 0 unless output is resumable
+    private final long resumeGraceNanos;
+    // jobId -> budget of a live run whose client dropped, oldest first; guarded by itself
+    private final LinkedHashMap<String, Detached> detached = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Detached> eldest) {
+            return size() > MAX_DETACHED;
+        }
+    };
+
+    public OutputBudget(ObjectMapper objectMapper, MeterRegistry meterRegistry, Environment environment) {
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.environment = environment;
+        this.truncated = Counter.builder("jobs.output.truncated")
+                .description("Runs whose output went over the head budget")
+                .register(meterRegistry);
+        boolean resumable = "stream".equalsIgnoreCase(environment.getProperty("app.jobs.output.transport", "pubsub"));
+        this.resumeGraceNanos = resumable
+                ? TimeUnit.MILLISECONDS.toNanos(environment.getProperty("app.jobs.output.resume-grace-ms", Long.class, 30_000L))
+                : 0;
+    }
+
+    public Limits limits(String language) {
+        return limits.computeIfAbsent(language == null ? "" : language, lang -> new Limits(
+                limit(lang, "head-bytes", 1_048_576),
+                limit(lang, "head-lines", 10_000),
+                limit(lang, "tail-bytes", 65_536),
+                limit(lang, "tail-lines", 1_000)));
+    }
+
+    private long limit(String language, String name, long defaultValue) {
+        long fallback = environment.getProperty(PREFIX + name, Long.class, defaultValue);
+        return language.isEmpty() ? fallback : environment.getProperty(PREFIX + language + "." + name, Long.class, fallback);
+    }
+
+    /** Budget for one run, or null when output is not limited for the language. */
+    public JobOutput newJob(String language) {
+        Limits jobLimits = limits(language);
+        if (jobLimits.headBytes() <= 0) return null;
+        Counter elided = Counter.builder("jobs.output.elided.bytes")
+                .description("Output bytes dropped from the middle of over-budget runs")
+                .baseUnit("bytes")
+                .tag("language", language == null ? "unknown" : language)
+                .register(meterRegistry);
+        return new JobOutput(objectMapper, jobLimits, elided, truncated);
+    }
+
+    /** The client of a run dropped: keep what is left of its budget for a resume on this node. */
+    public void detach(String jobId, JobOutput output) {
+        if (output == null || resumeGraceNanos <= 0 || !output.detach()) return;
+        synchronized (detached) {
+            detached.put(jobId, new Detached(output, System.nanoTime()));
+        }
+    }
+
+    /**
+     * Budget for a resumed run: the one detached from it on this node within the grace period, otherwise
+     * a fresh one with the default limits (the language stays with the node that started the run).
+     */
+    public JobOutput resume(String jobId) {
+        Detached previous;
+        synchronized (detached) {
+            previous = detached.remove(jobId);
+        }
+        if (previous != null && System.nanoTime() - previous.atNanos() <= resumeGraceNanos) {
+            return previous.output();
+        }
+        return newJob(null);
+    }
+
+    /**
+     * Head/tail state of one run. Producers for a job may call in from different listener threads,
+     * so both methods are synchronized; they only touch counters and the tail ring.
+     */
+    public static final class JobOutput {
+        private final ObjectMapper objectMapper;
+        private final Limits limits;
+        private final Counter elided;
+        private final Counter truncated;
+
+        private long headBytes;
+        private long headLines;
+        // null until the head is used up
+        private ArrayDeque<Held> tail;
+        private long tailBytes;
+        private long tailLines;
+        private long elidedBytes;
+        private boolean finished;
+
+        private record Held(OutboundEnvelope envelope, long bytes, long lines) {
+        }
+
+        JobOutput(ObjectMapper objectMapper, Limits limits, Counter elided, Counter truncated) {
+            this.objectMapper = objectMapper;
+            this.limits = limits;
+            this.elided = elided;
+            this.truncated = truncated;
+        }
+
+        /** The head is used up: output is going to the tail or being elided. */
+        public synchronized boolean isTruncating() {
+            return tail != null;
+        }
+
+        /**
+         * Whether the envelope may be queued now. Output past the head is kept in the tail instead
+         * and returns false; anything that is not STDOUT/STDERR always passes.
+         */
+        public synchronized boolean admit(OutboundEnvelope envelope) {
+            if (!envelope.isMergeable()) return true;
+
+            String content = envelope.content();
+            long bytes = utf8Length(content);
+            long lines = lines(content);
+            if (tail == null) {
+                if (headBytes + bytes <= limits.headBytes() && headLines + lines <= limits.headLines()) {
+                    headBytes += bytes;
+                    headLines += lines;
+                    return true;
+                }
+                tail = new ArrayDeque<>();
+                truncated.increment();
+            }
+
+            tail.add(new Held(envelope, bytes, lines));
+            tailBytes += bytes;
+            tailLines += lines;
+            while (!tail.isEmpty() && (tailBytes > limits.tailBytes() || tailLines > limits.tailLines())) {
+                Held dropped = tail.poll();
+                tailBytes -= dropped.bytes();
+                tailLines -= dropped.lines();
+                elidedBytes += dropped.bytes();
+                elided.increment(dropped.bytes());
+            }
+            return false;
+        }
+
+        /** The run is over: the truncation marker (if anything was elided) followed by the kept tail. */
+        public synchronized List<OutboundEnvelope> finish(String jobId) {
+            finished = true;
+            if (tail == null || tail.isEmpty() && elidedBytes == 0) return List.of();
+
+            List<OutboundEnvelope> out = new ArrayList<>(tail.size() + 1);
+            if (elidedBytes > 0) {
+                out.add(marker(jobId));
+            }
+            for (Held held : tail) {
+                out.add(held.envelope());
+            }
+            tail.clear();
+            tailBytes = 0;
+            tailLines = 0;
+            return out;
+        }
+
+        public synchronized long elidedBytes() {
+            return elidedBytes;
+        }
+
+        // The client dropped. The tail was never sent, and a resume replays it from the stream, so only the
+        // counters are kept. False once the run is over: there is nothing left to resume.
+        synchronized boolean detach() {
+            if (finished) return false;
+            if (tail != null) {
+                tail.clear();
+                tailBytes = 0;
+                tailLines = 0;
+            }
+            return true;
+        }
+
+        private OutboundEnvelope marker(String jobId) {
+            try {
+                return OutboundEnvelope.of(OutboundType.STDERR, objectMapper.writeValueAsString(OutboundMessage.builder()
+                        .job_id(jobId)
+                        .type(OutboundType.STDERR.name())
+                        .content("\r\n... output truncated (" + elidedBytes + " bytes elided) ...\r\n")
+                        .build()));
+            } catch (JsonProcessingException e) {
+                // cannot happen for plain string content
+                throw new IllegalStateException("Failed to encode truncation marker for job " + jobId, e);
+            }
+        }
+    }
+
+    static long utf8Length(String s) {
+        long bytes = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) bytes++;
+            else if (c < 0x800) bytes += 2;
+            // each half of a surrogate pair: 4 bytes per pair
+            else if (Character.isSurrogate(c)) bytes += 2;
+            else bytes += 3;
+        }
+        return bytes;
+    }
+
+    private static long lines(String s) {
+        long lines = 0;
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) == '\n') lines++;
+        }
+        return lines;
+    }
+}
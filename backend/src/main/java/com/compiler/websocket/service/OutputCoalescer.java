@@ -0,0 +1,124 @@
+package com.compiler.websocket.service;
+
+import com.compiler.websocket.messaging.OutboundEnvelope;
+import com.compiler.websocket.model.OutboundMessage;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.TextMessage;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Merges adjacent STDOUT/STDERR chunks of a job into a single websocket frame.
+ * <p>
+ * The drainer hands over the chunk it just polled; consecutive chunks of the same type
+ * are taken from the head of the queue until {@code maxFrameChars} is reached. A single
+ * chunk is returned untouched so its pre-encoded frame is reused. A merged frame carries
+ * the seq of its last chunk, so a resuming client asks for exactly what it has not seen.
+ * <p>
+ * Frame count, frame size, chunks per frame and receive-to-send latency are published so the
+ * window ({@code app.jobs.output.coalesce-window-ms}) can be tuned.
+ */
+@Component
+public class OutputCoalescer {
+
+    private final ObjectMapper objectMapper;
+    private final long windowMillis;
+    private final int maxFrameChars;
+
+    private final Counter frames;
+    private final DistributionSummary chunksPerFrame;
+    private final DistributionSummary frameBytes;
+    private final Timer latency;
+
+    public OutputCoalescer(ObjectMapper objectMapper,
+                           MeterRegistry meterRegistry,
+                           @Value("${app.jobs.output.coalesce-window-ms:5}") long windowMillis,
+                           @Value("${app.jobs.output.max-frame-chars:16384}") int maxFrameChars) {
+        this.objectMapper = objectMapper;
+        this.windowMillis = windowMillis;
+        this.maxFrameChars = maxFrameChars;
+
+        this.frames = Counter.builder("jobs.output.frames")
+                .description("Websocket frames sent for job output")
+                .register(meterRegistry);
+        this.chunksPerFrame = DistributionSummary.builder("jobs.output.chunks.per.frame")
+                .description("Runner chunks merged into one websocket frame")
+                .register(meterRegistry);
+        this.frameBytes = DistributionSummary.builder("jobs.output.frame.bytes")
+                .description("Size of websocket frames sent for job output")
+                .baseUnit("bytes")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.latency = Timer.builder("jobs.output.latency")
+                .description("Time from Redis receive to websocket send")
+                .publishPercentiles(0.5, 0.99)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    /** How long the first chunk of a burst may wait for followers before it is flushed. */
+    public long windowMillis() {
+        return windowMillis;
+    }
+
+    /**
+     * Build the next frame starting with {@code first}, consuming mergeable followers from the queue.
+     * The returned envelope keeps the receive time of the oldest chunk it contains; every follower
+     * taken from the queue is reported to {@code consumed}.
+     */
+    OutboundEnvelope nextFrame(String jobId, OutboundEnvelope first, MpscQueue<OutboundEnvelope> queue,
+                                      Consumer<OutboundEnvelope> consumed) {
+        if (!first.isMergeable() || !canMerge(first, first.content().length(), queue.peek())) {
+            chunksPerFrame.record(1);
+            return first;
+        }
+
+        StringBuilder merged = new StringBuilder(first.content());
+        String seq = first.seq();
+        int chunks = 1;
+        OutboundEnvelope next;
+        while (canMerge(first, merged.length(), next = queue.peek())) {
+            queue.poll();
+            consumed.accept(next);
+            merged.append(next.content());
+            seq = next.seq();
+            chunks++;
+        }
+        chunksPerFrame.record(chunks);
+
+        String content = merged.toString();
+        try {
+            String payload = objectMapper.writeValueAsString(OutboundMessage.builder()
+                    .job_id(jobId)
+                    .type(first.type().name())
+                    .content(content)
+                    .seq(seq)
+                    .build());
+            return new OutboundEnvelope(first.type(), content, seq, new TextMessage(payload), first.receivedAtNanos());
+        } catch (JsonProcessingException e) {
+            // cannot happen for plain string content
+            throw new IllegalStateException("Failed to encode merged frame for job " + jobId, e);
+        }
+    }
+
+    public void frameSent(OutboundEnvelope frame) {
+        frames.increment();
+        frameBytes.record(frame.sizeBytes());
+        latency.record(System.nanoTime() - frame.receivedAtNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    private boolean canMerge(OutboundEnvelope first, int length, OutboundEnvelope next) {
+        return next != null
+                && next.isMergeable()
+                && next.type() == first.type()
+                && length + next.content().length() <= maxFrameChars;
+    }
+}
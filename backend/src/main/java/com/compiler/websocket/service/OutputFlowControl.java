@@ -0,0 +1,71 @@
+package com.compiler.websocket.service;
+
+import com.compiler.websocket.messaging.ChannelNaming;
+import com.compiler.websocket.messaging.RedisPublisher;
+import com.compiler.websocket.model.RedisPublisherPayload;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Watermark-based flow control towards the runners.
+ * <p>
+ * When a job's queued bytes cross {@code high-watermark} of its current allowance, the runner
+ * gets OUTPUT_PAUSE_EVENT on {@code input:<jobId>} and stops reading the program's PTY; once the
+ * drainer brings the job below {@code low-watermark} it gets OUTPUT_RESUME_EVENT. A fast producer
+ * is slowed to the client's pace instead of having its output dropped. Each transition is
+ * published once per crossing. Under the PAUSE overflow policy a job whose output is being held
+ * back is paused straight away ({@link #pause}).
+ */
+@Component
+public class OutputFlowControl {
+
+    private final RedisPublisher redisPublisher;
+    private final MemoryGovernor memoryGovernor;
+    private final boolean enabled;
+    private final double highWatermark;
+    private final double lowWatermark;
+
+    public OutputFlowControl(RedisPublisher redisPublisher,
+                             MemoryGovernor memoryGovernor,
+                             @Value("${app.jobs.flow-control.enabled:true}") boolean enabled,
+                             @Value("${app.jobs.flow-control.high-watermark:0.75}") double highWatermark,
+                             @Value("${app.jobs.flow-control.low-watermark:0.25}") double lowWatermark) {
+        this.redisPublisher = redisPublisher;
+        this.memoryGovernor = memoryGovernor;
+        this.enabled = enabled;
+        this.highWatermark = highWatermark;
+        this.lowWatermark = lowWatermark;
+    }
+
+    /** Called after output was queued for the job. */
+    public void afterAcquire(String jobId, MemoryGovernor.JobBudget budget) {
+        if (!enabled || budget.isProducerPaused()) return;
+
+        if (budget.bytes() >= memoryGovernor.jobAllowance() * highWatermark && budget.markProducerPaused(true)) {
+            publish(jobId, "OUTPUT_PAUSE_EVENT", budget);
+        }
+    }
+
+    /** Called when output had to be held back: the job is past its allowance, whatever the watermarks say. */
+    public void pause(String jobId, MemoryGovernor.JobBudget budget) {
+        if (enabled && budget.markProducerPaused(true)) {
+            publish(jobId, "OUTPUT_PAUSE_EVENT", budget);
+        }
+    }
+
+    /** Called after the drainer took output off the job's queue. Held output counts as queued. */
+    public void afterRelease(String jobId, MemoryGovernor.JobBudget budget) {
+        if (!enabled || !budget.isProducerPaused()) return;
+
+        if (budget.bytes() <= memoryGovernor.jobAllowance() * lowWatermark && budget.markProducerPaused(false)) {
+            publish(jobId, "OUTPUT_RESUME_EVENT", budget);
+        }
+    }
+
+    private void publish(String jobId, String eventType, MemoryGovernor.JobBudget budget) {
+        redisPublisher.publishFlowControlEvent(ChannelNaming.inputChannel(jobId), RedisPublisherPayload.builder()
+                .event_type(eventType)
+                .content("queued bytes: " + budget.bytes())
+                .build());
+    }
+}
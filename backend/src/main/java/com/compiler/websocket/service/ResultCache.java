@@ -0,0 +1,330 @@
+package com.compiler.websocket.service;
+
+import com.compiler.websocket.messaging.ChannelNaming;
+import com.compiler.websocket.messaging.OutboundEnvelope;
+import com.compiler.websocket.model.OutboundType;
+import com.compiler.websocket.model.RunEvent;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Content-addressed cache of finished runs ({@code app.jobs.result-cache.*}).
+ * <p>
+ * A run is keyed by the SHA-256 of language, file name and source. Its output is recorded
+ * as it passes through RedisSubscriber and stored once COMPLETION arrives with exit code 0; a
+ * non-zero exit, a TERMINATION or FAILURE, an INPUT_EVENT, the client leaving or output over
+ * {@code max-entry-bytes} discards the recording. A later RUN_EVENT with the same key is answered
+ * from the cache without SQS. Off by default.
+ * <p>
+ * Entries live in an LRU in this process, bounded by {@code max-entries} and {@code max-bytes},
+ * and optionally in Redis with a TTL so other nodes can share them. Runs are assumed deterministic: a program printing the time or random
+ * numbers will keep printing what it printed first until the entry expires.
+ */
+@Service
+public class ResultCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResultCache.class);
+
+    /** Output of one finished run, as the runner published it for {@code job_id}. */
+    public record CachedResult(String job_id, List<String> payloads, long runtime_ms, long created_at) {
+
+        long sizeBytes() {
+            long bytes = 0;
+            for (String payload : payloads) bytes += payload.length();
+            return bytes;
+        }
+    }
+
+    private static final class Recording {
+        final String key;
+        final List<String> payloads = new ArrayList<>();
+        long bytes;
+
+        Recording(String key) {
+            this.key = key;
+        }
+    }
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final boolean redisEnabled;
+    private final int maxEntries;
+    private final long maxEntryBytes;
+    private final long maxBytes;
+    private final Duration ttl;
+
+    // jobId -> output recorded so far
+    private final Map<String, Recording> recordings = new ConcurrentHashMap<>();
+    // key -> result, least recently used first; guarded by itself
+    private final LinkedHashMap<String, CachedResult> local;
+    private final AtomicLong localBytes = new AtomicLong();
+
+    private final Counter localHits;
+    private final Counter redisHits;
+    private final Counter misses;
+    private final Counter stored;
+    private final Counter evictions;
+    private final AtomicLong savedRuntimeMillis = new AtomicLong();
+
+    public ResultCache(StringRedisTemplate redisTemplate,
+                       ObjectMapper objectMapper,
+                       MeterRegistry meterRegistry,
+                       @Value("${app.jobs.result-cache.enabled:false}") boolean enabled,
+                       @Value("${app.jobs.result-cache.redis.enabled:false}") boolean redisEnabled,
+                       @Value("${app.jobs.result-cache.max-entries:10000}") int maxEntries,
+                       @Value("${app.jobs.result-cache.max-entry-bytes:65536}") long maxEntryBytes,
+                       @Value("${app.jobs.result-cache.max-bytes:67108864}") long maxBytes,
+                       @Value("${app.jobs.result-cache.ttl-seconds:3600}") long ttlSeconds) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.redisEnabled = redisEnabled;
+        this.maxEntries = maxEntries;
+        this.maxEntryBytes = maxEntryBytes;
+        this.maxBytes = maxBytes;
+        this.ttl = Duration.ofSeconds(ttlSeconds);
+        this.local = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedResult> eldest) {
+                if (size() <= ResultCache.this.maxEntries) return false;
+                localBytes.addAndGet(-eldest.getValue().sizeBytes());
+                evictions.increment();
+                return true;
+            }
+        };
+
+        this.localHits = lookups(meterRegistry, "hit_local");
+        this.redisHits = lookups(meterRegistry, "hit_redis");
+        this.misses = lookups(meterRegistry, "miss");
+        this.stored = Counter.builder("jobs.result.cache.stored")
+                .description("Finished runs recorded into the result cache")
+                .register(meterRegistry);
+        this.evictions = Counter.builder("jobs.result.cache.evictions")
+                .description("Entries evicted from the in-process result cache")
+                .register(meterRegistry);
+        FunctionCounter.builder("jobs.result.cache.saved.runtime", savedRuntimeMillis, AtomicLong::get)
+                .description("Runner time not spent thanks to cache hits")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        Gauge.builder("jobs.result.cache.hit.ratio", this, ResultCache::hitRatio)
+                .description("Share of RUN_EVENTs answered from the result cache")
+                .register(meterRegistry);
+        Gauge.builder("jobs.result.cache.entries", local, map -> {
+                    synchronized (map) { return map.size(); }
+                })
+                .description("Entries in the in-process result cache")
+                .register(meterRegistry);
+        Gauge.builder("jobs.result.cache.bytes", localBytes, AtomicLong::get)
+                .description("Payload bytes held by the in-process result cache")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    private static Counter lookups(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("jobs.result.cache.lookups")
+                .description("Result cache lookups on RUN_EVENT")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private double hitRatio() {
+        double hits = localHits.count() + redisHits.count();
+        double total = hits + misses.count();
+        return total == 0 ? 0 : hits / total;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public static String key(RunEvent req) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            // NUL separators so ("ab", "c") and ("a", "bc") hash differently
+            digest.update(String.valueOf(req.getLanguage()).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(String.valueOf(req.getFile_name()).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(String.valueOf(req.getSource_code()).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * @return the recorded run for {@code key}, or null on a miss
+     */
+    public CachedResult lookup(String key) {
+        if (!enabled) return null;
+
+        CachedResult result;
+        synchronized (local) {
+            result = local.get(key);
+        }
+        if (result != null && isExpired(result)) {
+            remove(key);
+            result = null;
+        }
+        if (result != null) {
+            hit(localHits, result);
+            return result;
+        }
+
+        result = redisEnabled ? readRedis(key) : null;
+        if (result != null) {
+            putLocal(key, result);
+            hit(redisHits, result);
+            return result;
+        }
+
+        misses.increment();
+        return null;
+    }
+
+    private void hit(Counter counter, CachedResult result) {
+        counter.increment();
+        savedRuntimeMillis.addAndGet(result.runtime_ms());
+    }
+
+    /** Start recording the output of a job that missed the cache. */
+    public void startRecording(String jobId, String key) {
+        if (enabled) {
+            recordings.put(jobId, new Recording(key));
+        }
+    }
+
+    /** The job read input, failed, or lost its client: its output is not reusable. */
+    public void discard(String jobId) {
+        if (jobId != null) {
+            recordings.remove(jobId);
+        }
+    }
+
+    /**
+     * Append a runner message to the job's recording, storing it on a successful COMPLETION.
+     * A no-op for jobs that are not being recorded.
+     */
+    public void record(String jobId, OutboundEnvelope envelope) {
+        Recording recording = recordings.get(jobId);
+        if (recording == null) return;
+
+        switch (envelope.type()) {
+            case TERMINATION, FAILURE -> recordings.remove(jobId);
+            default -> {
+                String payload = envelope.seq() == null
+                        ? envelope.payload()
+                        : OutboundEnvelope.withoutSeq(envelope.payload(), envelope.seq());
+                // only the subscriber thread appends to a job's recording
+                recording.payloads.add(payload);
+                recording.bytes += payload.length();
+                if (recording.bytes > maxEntryBytes) {
+                    recordings.remove(jobId);
+                } else if (envelope.type() == OutboundType.COMPLETION
+                        && recordings.remove(jobId, recording)) {
+                    JsonNode content = completionContent(payload);
+                    // a failed run may depend on something other than its source (quota, flaky I/O)
+                    if (content.path("exitCode").asInt(-1) == 0) {
+                        store(recording.key, new CachedResult(jobId, List.copyOf(recording.payloads),
+                                content.path("metrics").path("executionTime").asLong(0), System.currentTimeMillis()));
+                    }
+                }
+            }
+        }
+    }
+
+    /** The recorded payloads rewritten for {@code jobId}, in the order the runner sent them. */
+    public static List<String> payloadsFor(CachedResult result, String jobId) {
+        List<String> payloads = new ArrayList<>(result.payloads().size());
+        for (String payload : result.payloads()) {
+            // job ids are UUIDs, so the only occurrence is the job_id field
+            payloads.add(payload.replace(result.job_id(), jobId));
+        }
+        return payloads;
+    }
+
+    private void store(String key, CachedResult result) {
+        stored.increment();
+        putLocal(key, result);
+        if (redisEnabled) {
+            try {
+                redisTemplate.opsForValue().set(ChannelNaming.resultCache(key), objectMapper.writeValueAsString(result), ttl);
+            } catch (Exception e) {
+                logger.warn("Failed to write result cache entry {} to redis: {}", key, e.getMessage());
+            }
+        }
+        logger.debug("Cached result of job {} under {}", result.job_id(), key);
+    }
+
+    private CachedResult readRedis(String key) {
+        try {
+            String json = redisTemplate.opsForValue().get(ChannelNaming.resultCache(key));
+            return json == null ? null : objectMapper.readValue(json, CachedResult.class);
+        } catch (Exception e) {
+            logger.warn("Failed to read result cache entry {} from redis: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    private void putLocal(String key, CachedResult result) {
+        synchronized (local) {
+            CachedResult previous = local.put(key, result);
+            if (previous != null) {
+                localBytes.addAndGet(-previous.sizeBytes());
+            }
+            localBytes.addAndGet(result.sizeBytes());
+            // max-entries is enforced by removeEldestEntry, the byte bound here
+            Iterator<CachedResult> eldest = local.values().iterator();
+            while (localBytes.get() > maxBytes && eldest.hasNext()) {
+                localBytes.addAndGet(-eldest.next().sizeBytes());
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    private void remove(String key) {
+        synchronized (local) {
+            CachedResult removed = local.remove(key);
+            if (removed != null) {
+                localBytes.addAndGet(-removed.sizeBytes());
+            }
+        }
+    }
+
+    private boolean isExpired(CachedResult result) {
+        return System.currentTimeMillis() - result.created_at() > ttl.toMillis();
+    }
+
+    // COMPLETION carries content.exitCode and content.metrics.executionTime (ms)
+    private JsonNode completionContent(String completionPayload) {
+        try {
+            return objectMapper.readTree(completionPayload).path("content");
+        } catch (Exception e) {
+            return objectMapper.missingNode();
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.compiler.websocket.service;
+
+import com.compiler.websocket.model.SqsPayload;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.services.sqs.SqsAsyncClient;
+import software.amazon.awssdk.services.sqs.model.BatchResultErrorEntry;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchResponse;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchResultEntry;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Non-blocking job submission: run requests are packed into SendMessageBatch calls on the
+ * {@link SqsAsyncClient}, one batcher per language queue.
+ * <p>
+ * A batch is sent when it holds {@value #MAX_BATCH_ENTRIES} entries, would exceed
+ * {@code batch-max-bytes}, or {@code batch-window-ms} after its first entry, whichever comes
+ * first. Each submission gets its own future, completed from the batch response: entries
+ * SQS failed on its side are retried in a later batch up to {@code max-retries} times,
+ * entries rejected as malformed fail right away.
+ */
+@Service
+public class SqsBatchPublisher {
+
+    private static final Logger logger = LoggerFactory.getLogger(SqsBatchPublisher.class);
+
+    /** SendMessageBatch limit. */
+    static final int MAX_BATCH_ENTRIES = 10;
+
+    private final SqsAsyncClient sqsAsyncClient;
+    private final ObjectMapper objectMapper;
+    private final JobMetrics jobMetrics;
+    private final long windowMillis;
+    private final int maxBatchBytes;
+    private final int maxRetries;
+
+    // language -> batcher for that language's queue
+    private final Map<String, QueueBatcher> batchers;
+    private final ScheduledExecutorService scheduler;
+
+    public SqsBatchPublisher(@Value("${aws.sqs.queue-url}") String javaQueueUrl,
+                             @Value("${aws.sqs.cpp-queue-url}") String cppQueueUrl,
+                             @Value("${aws.sqs.python-queue-url}") String pythonQueueUrl,
+                             SqsAsyncClient sqsAsyncClient,
+                             ObjectMapper objectMapper,
+                             JobMetrics jobMetrics,
+                             @Value("${app.sqs.batch-window-ms:10}") long windowMillis,
+                             @Value("${app.sqs.batch-max-bytes:262144}") int maxBatchBytes,
+                             @Value("${app.sqs.max-retries:2}") int maxRetries) {
+        this.sqsAsyncClient = sqsAsyncClient;
+        this.objectMapper = objectMapper;
+        this.jobMetrics = jobMetrics;
+        this.windowMillis = windowMillis;
+        this.maxBatchBytes = maxBatchBytes;
+        this.maxRetries = maxRetries;
+        this.batchers = Map.of(
+                "java", new QueueBatcher("java", javaQueueUrl),
+                "cpp", new QueueBatcher("cpp", cppQueueUrl),
+                "py", new QueueBatcher("py", pythonQueueUrl));
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread t = new Thread(runnable);
+            t.setName("sqs-batch-" + t.threadId());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** Whether there is a runner queue for {@code language}. */
+    public boolean supports(String language) {
+        return language != null && batchers.containsKey(language);
+    }
+
+    /**
+     * Queue a job for its language's runners.
+     *
+     * @return the SQS message id once the batch holding this job has been accepted
+     */
+    public CompletableFuture<String> submit(SqsPayload payload) {
+        QueueBatcher batcher = batchers.get(payload.getLanguage());
+        if (batcher == null) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Unsupported language: " + payload.getLanguage()));
+        }
+
+        String messageBody;
+        try {
+            messageBody = objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            logger.error("Failed to convert Java object to JSON: {}", e.getMessage());
+            return CompletableFuture.failedFuture(e);
+        }
+
+        Entry entry = new Entry(messageBody, messageBody.getBytes(StandardCharsets.UTF_8).length, new CompletableFuture<>());
+        batcher.add(entry);
+        return entry.result;
+    }
+
+    private static final class Entry {
+        final String body;
+        final int bytes;
+        final CompletableFuture<String> result;
+        int attempts;
+
+        Entry(String body, int bytes, CompletableFuture<String> result) {
+            this.body = body;
+            this.bytes = bytes;
+            this.result = result;
+        }
+    }
+
+    private final class QueueBatcher {
+        private final String language;
+        private final String queueUrl;
+
+        // guarded by this
+        private List<Entry> pending = new ArrayList<>(MAX_BATCH_ENTRIES);
+        private int pendingBytes;
+        private ScheduledFuture<?> flushTask;
+
+        QueueBatcher(String language, String queueUrl) {
+            this.language = language;
+            this.queueUrl = queueUrl;
+        }
+
+        synchronized void add(Entry entry) {
+            if (!pending.isEmpty() && pendingBytes + entry.bytes > maxBatchBytes) {
+                flush();
+            }
+            pending.add(entry);
+            pendingBytes += entry.bytes;
+
+            if (pending.size() == MAX_BATCH_ENTRIES || windowMillis <= 0) {
+                flush();
+            } else if (flushTask == null) {
+                flushTask = scheduler.schedule(this::flushWindow, windowMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        private synchronized void flushWindow() {
+            flushTask = null;
+            flush();
+        }
+
+        private void flush() {
+            if (flushTask != null) {
+                flushTask.cancel(false);
+                flushTask = null;
+            }
+            if (pending.isEmpty()) return;
+
+            List<Entry> batch = pending;
+            pending = new ArrayList<>(MAX_BATCH_ENTRIES);
+            pendingBytes = 0;
+            send(batch);
+        }
+
+        private void send(List<Entry> batch) {
+            List<SendMessageBatchRequestEntry> entries = new ArrayList<>(batch.size());
+            for (int i = 0; i < batch.size(); i++) {
+                // the entry id is the index into this batch, used to route each result back
+                entries.add(SendMessageBatchRequestEntry.builder()
+                        .id(Integer.toString(i))
+                        .messageBody(batch.get(i).body)
+                        .build());
+            }
+            SendMessageBatchRequest request = SendMessageBatchRequest.builder()
+                    .queueUrl(queueUrl)
+                    .entries(entries)
+                    .build();
+
+            jobMetrics.sqsBatchSize(batch.size());
+            Timer.Sample sample = jobMetrics.startSqsPublish();
+            sqsAsyncClient.sendMessageBatch(request).whenComplete((response, error) -> {
+                jobMetrics.sqsPublished(sample, language, error == null && response.failed().isEmpty());
+                if (error != null) {
+                    logger.error("Failed to send batch of {} to SQS: {}", batch.size(), error.getMessage());
+                    batch.forEach(entry -> entry.result.completeExceptionally(error));
+                } else {
+                    complete(batch, response);
+                }
+            });
+        }
+
+        private void complete(List<Entry> batch, SendMessageBatchResponse response) {
+            for (SendMessageBatchResultEntry result : response.successful()) {
+                batch.get(Integer.parseInt(result.id())).result.complete(result.messageId());
+            }
+            for (BatchResultErrorEntry failed : response.failed()) {
+                Entry entry = batch.get(Integer.parseInt(failed.id()));
+                if (!Boolean.TRUE.equals(failed.senderFault()) && ++entry.attempts <= maxRetries) {
+                    logger.warn("SQS failed entry ({}), retrying: {}", failed.code(), failed.message());
+                    add(entry);
+                } else {
+                    logger.error("SQS rejected entry ({}): {}", failed.code(), failed.message());
+                    entry.result.completeExceptionally(
+                            new IllegalStateException("SQS rejected message: " + failed.code() + " " + failed.message()));
+                }
+            }
+            logger.debug("Batch of {} sent to {} queue, {} failed", batch.size(), language, response.failed().size());
+        }
+    }
+}
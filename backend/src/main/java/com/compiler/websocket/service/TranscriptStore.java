@@ -0,0 +1,376 @@
+package com.compiler.websocket.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Append-only transcripts of every job's output frames ({@code app.jobs.transcripts.*}), so what a
+ * run printed can still be read after its session closed.
+ * <p>
+ * The drainer only offers a sent frame to an MPSC queue; one writer thread encodes it and appends it
+ * to the active memory-mapped segment, so live delivery never waits for the disk or a segment roll.
+ * When the writer falls behind, frames are dropped from the transcript, never from the socket.
+ * <p>
+ * A record is {@code [int length][long previous][short id length][job id][frame]}, where {@code previous}
+ * is the position of the job's record before it. The index therefore keeps only each job's newest
+ * position and a transcript is read by walking the chain back. The length is written last, so recovery
+ * after a restart only sees complete records. Segments roll at {@code segment-bytes} or {@code segment-age-ms}
+ * and are deleted after {@code retention-ms} or, oldest first, once all of them hold more than
+ * {@code max-bytes}; a transcript whose first records went with them comes back truncated.
+ * <p>
+ * Transcripts hold everything a program printed, so the directory is created owner-only (700, segments
+ * 600) on POSIX file systems, and its default is under the user's home rather than the shared tmp dir.
+ */
+@Service
+public class TranscriptStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(TranscriptStore.class);
+
+    /** A job's frames in the order they were sent; {@code truncated} when its oldest ones have expired. */
+    public record Transcript(List<String> frames, boolean truncated) {
+    }
+
+    private static final String SUFFIX = ".transcript";
+    private static final int QUEUE_CAPACITY = 65_536;
+    // length, previous position, job id length
+    private static final int HEADER_BYTES = Integer.BYTES + Long.BYTES + Short.BYTES;
+    // a position is the segment id above the offset inside the segment
+    private static final int OFFSET_BITS = 40;
+    private static final long NO_RECORD = -1;
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(60);
+    private static final Set<PosixFilePermission> DIRECTORY_PERMISSIONS = PosixFilePermissions.fromString("rwx------");
+    private static final Set<PosixFilePermission> SEGMENT_PERMISSIONS = PosixFilePermissions.fromString("rw-------");
+
+    private static final class Segment {
+        private final long id;
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        private final long createdMillis;
+        // writer-only once the segment is active
+        private int written;
+        private volatile long lastWriteMillis;
+
+        Segment(long id, Path path, MappedByteBuffer buffer, long createdMillis) {
+            this.id = id;
+            this.path = path;
+            this.buffer = buffer;
+            this.createdMillis = createdMillis;
+            this.lastWriteMillis = createdMillis;
+        }
+    }
+
+    private record Pending(String jobId, WebSocketMessage<?> frame) {
+    }
+
+    private final boolean enabled;
+    private final Path dir;
+    private final int segmentBytes;
+    private final long segmentAgeMillis;
+    private final long retentionMillis;
+    private final long maxBytes;
+
+    // jobId -> position of the job's newest record
+    private final Map<String, Long> index = new ConcurrentHashMap<>();
+    // oldest first; readers look segments up here, the writer adds and removes them
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private final MpscQueue<Pending> queue = new MpscQueue<>(QUEUE_CAPACITY);
+    private final AtomicLong storedBytes = new AtomicLong();
+    private final Counter dropped;
+    private final Counter expired;
+    private final Thread writer;
+    private volatile boolean sleeping;
+    private volatile boolean running = true;
+    // writer-only
+    private Segment active;
+    private long nextSegmentId;
+    private long nextSweepNanos = System.nanoTime() + SWEEP_INTERVAL_NANOS;
+
+    public TranscriptStore(MeterRegistry meterRegistry,
+                           @Value("${app.jobs.transcripts.enabled:false}") boolean enabled,
+                           @Value("${app.jobs.transcripts.dir:${user.home}/.compiler/job-transcripts}") Path dir,
+                           @Value("${app.jobs.transcripts.segment-bytes:67108864}") int segmentBytes,
+                           @Value("${app.jobs.transcripts.segment-age-ms:3600000}") long segmentAgeMillis,
+                           @Value("${app.jobs.transcripts.retention-ms:86400000}") long retentionMillis,
+                           @Value("${app.jobs.transcripts.max-bytes:1073741824}") long maxBytes) {
+        this.enabled = enabled;
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.segmentAgeMillis = segmentAgeMillis;
+        this.retentionMillis = retentionMillis;
+        this.maxBytes = maxBytes;
+        this.dropped = Counter.builder("jobs.transcripts.dropped")
+                .description("Frames left out of transcripts: writer behind, or a frame larger than a segment")
+                .register(meterRegistry);
+        this.expired = Counter.builder("jobs.transcripts.segments.expired")
+                .description("Transcript segments deleted by age or size")
+                .register(meterRegistry);
+        Gauge.builder("jobs.transcripts.bytes", storedBytes, AtomicLong::get)
+                .description("Bytes of records in transcript segments on disk")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("jobs.transcripts.jobs", index, Map::size)
+                .description("Jobs with a transcript")
+                .register(meterRegistry);
+
+        if (!enabled) {
+            this.writer = null;
+            return;
+        }
+        try {
+            createPrivateDirectory(dir);
+            recover();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open transcripts in " + dir, e);
+        }
+        this.writer = new Thread(this::run, "transcript-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+        logger.info("Job transcripts in {}: {} jobs in {} segments recovered", dir, index.size(), segments.size());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Queues a frame sent to the job's client for its transcript; never blocks. */
+    public void append(String jobId, WebSocketMessage<?> frame) {
+        if (!enabled) return;
+        if (queue.offerAndCount(new Pending(jobId, frame)) == 0) {
+            dropped.increment();
+            return;
+        }
+        // pairs with the re-check in run(): either it sees the frame or we see it sleeping
+        if (sleeping) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    /** The job's transcript so far, or null when there is none. */
+    public Transcript read(String jobId) {
+        Long newest = enabled ? index.get(jobId) : null;
+        if (newest == null) return null;
+
+        ArrayDeque<String> frames = new ArrayDeque<>();
+        boolean truncated = false;
+        long position = newest;
+        while (position != NO_RECORD) {
+            // a segment expired under us stays mapped until the buffer is collected
+            Segment segment = segments.get(position >>> OFFSET_BITS);
+            if (segment == null) {
+                truncated = true;
+                break;
+            }
+            int offset = (int) (position & ((1L << OFFSET_BITS) - 1));
+            MappedByteBuffer buffer = segment.buffer;
+            int length = buffer.getInt(offset);
+            int idLength = buffer.getShort(offset + Integer.BYTES + Long.BYTES);
+            byte[] frame = new byte[length - (HEADER_BYTES - Integer.BYTES) - idLength];
+            buffer.get(offset + HEADER_BYTES + idLength, frame);
+            frames.addFirst(new String(frame, StandardCharsets.UTF_8));
+            position = buffer.getLong(offset + Integer.BYTES);
+        }
+        return new Transcript(List.copyOf(frames), truncated);
+    }
+
+    @PreDestroy
+    public void close() throws InterruptedException {
+        if (!enabled) return;
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    private void run() {
+        while (running || queue.size() > 0) {
+            Pending pending = queue.poll();
+            if (pending == null) {
+                sweep();
+                sleeping = true;
+                if (queue.size() == 0 && running) {
+                    LockSupport.parkNanos(this, SWEEP_INTERVAL_NANOS);
+                }
+                sleeping = false;
+                continue;
+            }
+            try {
+                write(pending.jobId(), pending.frame());
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Failed to append to the transcript of job {}: {}", pending.jobId(), e.getMessage());
+                dropped.increment();
+            }
+        }
+        if (active != null) {
+            active.buffer.force();
+        }
+    }
+
+    private void write(String jobId, WebSocketMessage<?> frame) throws IOException {
+        byte[] id = jobId.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer payload = payload(frame);
+        int length = HEADER_BYTES - Integer.BYTES + id.length + payload.remaining();
+        int recordBytes = Integer.BYTES + length;
+        // keep a zero length after the last record, which is where recovery stops
+        if (recordBytes + Integer.BYTES > segmentBytes) {
+            dropped.increment();
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        if (active == null || active.written + recordBytes + Integer.BYTES > segmentBytes
+                || now - active.createdMillis >= segmentAgeMillis) {
+            roll(now);
+        }
+
+        Segment segment = active;
+        int offset = segment.written;
+        Long previous = index.get(jobId);
+        MappedByteBuffer buffer = segment.buffer;
+        buffer.putLong(offset + Integer.BYTES, previous == null ? NO_RECORD : previous);
+        buffer.putShort(offset + Integer.BYTES + Long.BYTES, (short) id.length);
+        buffer.put(offset + HEADER_BYTES, id);
+        buffer.put(offset + HEADER_BYTES + id.length, payload, payload.position(), payload.remaining());
+        buffer.putInt(offset, length);
+        segment.written = offset + recordBytes;
+        segment.lastWriteMillis = now;
+        storedBytes.addAndGet(recordBytes);
+        // publishes the record to readers
+        index.put(jobId, segment.id << OFFSET_BITS | offset);
+    }
+
+    // the UTF-8 JSON a frame carries: a TextMessage built from a String encodes it on every asBytes() call,
+    // which happens once, here on the writer thread; a byte-path frame already is the bytes
+    private static ByteBuffer payload(WebSocketMessage<?> frame) {
+        if (frame instanceof TextMessage text) {
+            return ByteBuffer.wrap(text.asBytes());
+        }
+        // the whole body: sending may already have advanced the buffer's position
+        ByteBuffer bytes = ((BinaryMessage) frame).getPayload();
+        return ByteBuffer.wrap(bytes.array(), bytes.arrayOffset(), bytes.capacity());
+    }
+
+    // owner-only on POSIX: created that way, and tightened if it already existed
+    private static void createPrivateDirectory(Path dir) throws IOException {
+        if (!isPosix(dir)) {
+            Files.createDirectories(dir);
+            return;
+        }
+        Files.createDirectories(dir, PosixFilePermissions.asFileAttribute(DIRECTORY_PERMISSIONS));
+        Files.setPosixFilePermissions(dir, DIRECTORY_PERMISSIONS);
+    }
+
+    private static boolean isPosix(Path path) {
+        return path.getFileSystem().supportedFileAttributeViews().contains("posix");
+    }
+
+    private void roll(long now) throws IOException {
+        long id = nextSegmentId++;
+        Path path = dir.resolve(String.format("%020d%s", id, SUFFIX));
+        Set<OpenOption> options = Set.of(StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileAttribute<?>[] attributes = isPosix(path)
+                ? new FileAttribute<?>[] {PosixFilePermissions.asFileAttribute(SEGMENT_PERMISSIONS)}
+                : new FileAttribute<?>[0];
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, options, attributes)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        }
+        active = new Segment(id, path, buffer, now);
+        segments.put(id, active);
+        expire(now);
+    }
+
+    private void sweep() {
+        long nowNanos = System.nanoTime();
+        if (nowNanos - nextSweepNanos >= 0) {
+            nextSweepNanos = nowNanos + SWEEP_INTERVAL_NANOS;
+            expire(System.currentTimeMillis());
+        }
+    }
+
+    // oldest first: stop at the first segment that is young enough while the total fits
+    private void expire(long now) {
+        boolean removed = false;
+        for (Segment segment : segments.values()) {
+            if (segment == active
+                    || (now - segment.lastWriteMillis < retentionMillis && storedBytes.get() <= maxBytes)) {
+                break;
+            }
+            segments.remove(segment.id);
+            storedBytes.addAndGet(-segment.written);
+            try {
+                Files.deleteIfExists(segment.path);
+            } catch (IOException e) {
+                logger.warn("Failed to delete transcript segment {}: {}", segment.path, e.getMessage());
+            }
+            expired.increment();
+            removed = true;
+        }
+        if (removed) {
+            // jobs whose newest record expired have nothing left
+            long oldest = segments.isEmpty() ? Long.MAX_VALUE : segments.firstKey();
+            index.values().removeIf(position -> position >>> OFFSET_BITS < oldest);
+        }
+    }
+
+    // rebuild the index from the segments a previous process left; new records go to a new segment
+    private void recover() throws IOException {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(dir)) {
+            files = listing.filter(path -> path.getFileName().toString().endsWith(SUFFIX)).sorted().toList();
+        }
+        for (Path path : files) {
+            String name = path.getFileName().toString();
+            long id = Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+            MappedByteBuffer buffer;
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            Segment segment = new Segment(id, path, buffer, Files.getLastModifiedTime(path).toMillis());
+            int offset = 0;
+            while (offset + HEADER_BYTES <= buffer.capacity()) {
+                int length = buffer.getInt(offset);
+                if (length <= 0 || offset + Integer.BYTES + length > buffer.capacity()) break;
+                byte[] jobId = new byte[buffer.getShort(offset + Integer.BYTES + Long.BYTES)];
+                buffer.get(offset + HEADER_BYTES, jobId);
+                index.put(new String(jobId, StandardCharsets.UTF_8), id << OFFSET_BITS | offset);
+                offset += Integer.BYTES + length;
+            }
+            segment.written = offset;
+            storedBytes.addAndGet(offset);
+            segments.put(id, segment);
+            nextSegmentId = id + 1;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.compiler.websocket.web;
+
+import com.compiler.websocket.service.JobTokens;
+import com.compiler.websocket.service.TranscriptStore;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * A job's output after the fact: every output frame its client was sent, one JSON document per line.
+ * Only for the job's owner: the request must carry the token SESSION_CREATED sent, as a bearer token.
+ */
+@RestController
+public class TranscriptController {
+
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    private static final String BEARER = "Bearer ";
+
+    private final TranscriptStore transcriptStore;
+    private final JobTokens jobTokens;
+
+    public TranscriptController(TranscriptStore transcriptStore, JobTokens jobTokens) {
+        this.transcriptStore = transcriptStore;
+        this.jobTokens = jobTokens;
+    }
+
+    @GetMapping("/jobs/{job_id}/transcript")
+    public ResponseEntity<String> transcript(@PathVariable("job_id") String jobId,
+                                             @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
+        // checked before the lookup, so a caller without the token cannot tell which jobs exist
+        String token = authorization != null && authorization.startsWith(BEARER) ? authorization.substring(BEARER.length()) : null;
+        if (!jobTokens.verify(jobId, token)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .header(HttpHeaders.WWW_AUTHENTICATE, "Bearer")
+                    .build();
+        }
+
+        TranscriptStore.Transcript transcript = transcriptStore.read(jobId);
+        if (transcript == null) {
+            return ResponseEntity.notFound().build();
+        }
+        StringBuilder body = new StringBuilder();
+        for (String frame : transcript.frames()) {
+            body.append(frame).append('\n');
+        }
+        return ResponseEntity.ok()
+                .contentType(NDJSON)
+                // true when the first frames expired with their segment
+                .header("X-Transcript-Truncated", Boolean.toString(transcript.truncated()))
+                .body(body.toString());
+    }
+}
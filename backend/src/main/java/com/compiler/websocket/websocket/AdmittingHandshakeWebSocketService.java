@@ -0,0 +1,58 @@
+package com.compiler.websocket.websocket;
+
+import com.compiler.websocket.service.AdmissionControl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.reactive.socket.WebSocketHandler;
+import org.springframework.web.reactive.socket.server.RequestUpgradeStrategy;
+import org.springframework.web.reactive.socket.server.support.HandshakeWebSocketService;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reactive counterpart of {@link CompilerWebSocketHandshakeInterceptor}: admission control decides
+ * every handshake before the upgrade, with the same 429/503 answers.
+ */
+public class AdmittingHandshakeWebSocketService extends HandshakeWebSocketService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdmittingHandshakeWebSocketService.class);
+
+    private final AdmissionControl admissionControl;
+    private final boolean trustForwardedFor;
+
+    public AdmittingHandshakeWebSocketService(RequestUpgradeStrategy upgradeStrategy,
+                                              AdmissionControl admissionControl,
+                                              boolean trustForwardedFor) {
+        super(upgradeStrategy);
+        this.admissionControl = admissionControl;
+        this.trustForwardedFor = trustForwardedFor;
+    }
+
+    @Override
+    public Mono<Void> handleRequest(ServerWebExchange exchange, WebSocketHandler handler) {
+        ServerHttpRequest request = exchange.getRequest();
+        ServerHttpResponse response = exchange.getResponse();
+        String clientIp = CompilerWebSocketHandshakeInterceptor.clientIp(request.getHeaders(), request.getRemoteAddress(), trustForwardedFor);
+        switch (admissionControl.admit(clientIp)) {
+            case RATE_LIMITED -> {
+                logger.debug("Handshake from {} rate limited", clientIp);
+                response.setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+                response.getHeaders().set(HttpHeaders.RETRY_AFTER, Long.toString(admissionControl.retryAfterSeconds(clientIp)));
+                return response.setComplete();
+            }
+            case OVERLOADED -> {
+                logger.warn("Handshake from {} refused, node at capacity ({} sessions)", clientIp, admissionControl.sessions());
+                response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+                response.getHeaders().set(HttpHeaders.RETRY_AFTER, "5");
+                return response.setComplete();
+            }
+            default -> {
+                return super.handleRequest(exchange, handler);
+            }
+        }
+    }
+}
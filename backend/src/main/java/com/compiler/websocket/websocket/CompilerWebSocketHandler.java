@@ -1,18 +1,21 @@
 package com.compiler.websocket.websocket;
 
 import com.compiler.websocket.messaging.ChannelNaming;
+import com.compiler.websocket.messaging.JobChannelSubscriptions;
+import com.compiler.websocket.messaging.OutboundEnvelope;
 import com.compiler.websocket.messaging.RedisPublisher;
 import com.compiler.websocket.messaging.RedisSubscriber;
 import com.compiler.websocket.model.*;
+import com.compiler.websocket.service.AdmissionControl;
 import com.compiler.websocket.service.JobMessagingService;
-import com.compiler.websocket.service.SqsPublisher;
-import com.compiler.websocket.service.SqsPublisherCPP;
-import com.compiler.websocket.service.SqsPublisherPython;
+import com.compiler.websocket.service.JobOutputReplay;
+import com.compiler.websocket.service.JobTokens;
+import com.compiler.websocket.service.ResultCache;
+import com.compiler.websocket.service.SqsBatchPublisher;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.LoggerFactory;
 import org.slf4j.Logger;
-import org.springframework.data.redis.listener.ChannelTopic;
-import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.TextMessage;
@@ -27,37 +30,54 @@ public class CompilerWebSocketHandler extends TextWebSocketHandler {
 
     private static final Logger logger = LoggerFactory.getLogger(CompilerWebSocketHandler.class);
 
+    // per-session RUN_EVENT bucket; present only while the session holds an admission slot
+    private static final String RUN_LIMIT_ATTRIBUTE = "admission.runs";
+
     private final ObjectMapper objectMapper;
     private final JobMessagingService jobMessagingService;
-    private final SqsPublisher sqsPublisher;
-    private final SqsPublisherCPP sqsPublisherCPP;
-    private final SqsPublisherPython sqsPublisherPython;
+    private final SqsBatchPublisher sqsBatchPublisher;
     private final RedisSubscriber redisSubscriber;
     private final RedisPublisher redisPublisher;
-    private final RedisMessageListenerContainer redisMessageListenerContainer;
+    private final JobChannelSubscriptions jobChannelSubscriptions;
+    private final JobOutputReplay jobOutputReplay;
+    private final ResultCache resultCache;
+    private final AdmissionControl admissionControl;
+    private final JobTokens jobTokens;
 
     public CompilerWebSocketHandler(JobMessagingService jobMessagingService,
                                     ObjectMapper objectMapper,
                                     RedisSubscriber redisSubscriber,
-                                    RedisMessageListenerContainer redisMessageListenerContainer,
+                                    JobChannelSubscriptions jobChannelSubscriptions,
                                     RedisPublisher redisPublisher,
-                                    SqsPublisherCPP sqsPublisherCPP,
-                                    SqsPublisherPython sqsPublisherPython,
-                                    SqsPublisher sqsPublisher) {
+                                    SqsBatchPublisher sqsBatchPublisher,
+                                    JobOutputReplay jobOutputReplay,
+                                    ResultCache resultCache,
+                                    AdmissionControl admissionControl,
+                                    JobTokens jobTokens) {
         this.objectMapper = objectMapper;
         this.jobMessagingService = jobMessagingService;
-        this.sqsPublisher = sqsPublisher;
-        this.sqsPublisherCPP = sqsPublisherCPP;
-        this.sqsPublisherPython = sqsPublisherPython;
+        this.sqsBatchPublisher = sqsBatchPublisher;
         this.redisSubscriber = redisSubscriber;
         this.redisPublisher = redisPublisher;
-        this.redisMessageListenerContainer = redisMessageListenerContainer;
+        this.jobChannelSubscriptions = jobChannelSubscriptions;
+        this.jobOutputReplay = jobOutputReplay;
+        this.resultCache = resultCache;
+        this.admissionControl = admissionControl;
+        this.jobTokens = jobTokens;
     }
 
 
     // after websocket connection established, create a jobId for the session and store in memory
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+        // the handshake checked the session cap, but concurrent handshakes can overshoot it
+        if (!admissionControl.open()) {
+            logger.warn("Session {} refused, node at capacity", session.getId());
+            session.close(CloseStatus.SERVICE_OVERLOAD);
+            return;
+        }
+        session.getAttributes().put(RUN_LIMIT_ATTRIBUTE, admissionControl.newRunBucket());
+
         // 1) Generate jobId
         String job_id = UUID.randomUUID().toString();
 
@@ -68,10 +88,11 @@ public class CompilerWebSocketHandler extends TextWebSocketHandler {
 
         logger.info("New WebSocket session established sessionId: {}", session.getId());
 
-        // 3) Ack back to user with jobId
+        // 3) Ack back to user with jobId, and the token that proves ownership of it on resume
         sendToSession(session, OutboundMessage.builder()
                 .type("SESSION_CREATED")
                 .job_id(job_id)
+                .token(jobTokens.issue(job_id))
                 .content("Session created with session id: " + session.getId())
                 .build());
     }
@@ -92,6 +113,14 @@ public class CompilerWebSocketHandler extends TextWebSocketHandler {
 
         switch (inbound.getType()) {
             case "RUN_EVENT":
+                if (!admissionControl.tryRun((AdmissionControl.Bucket) session.getAttributes().get(RUN_LIMIT_ATTRIBUTE))) {
+                    sendToSession(session, OutboundMessage.builder()
+                            .type("ERROR")
+                            .job_id(job_id)
+                            .content("Too many runs, try again in a few seconds")
+                            .build());
+                    break;
+                }
                 RunEvent runEvent = objectMapper.treeToValue(inbound.getData(), RunEvent.class);
                 handleRunEvent(session, runEvent, job_id);
                 break;
@@ -101,6 +130,11 @@ public class CompilerWebSocketHandler extends TextWebSocketHandler {
                 handleInputEvent(session, inputEvent, job_id);
                 break;
 
+            case "RESUME_EVENT":
+                ResumeEvent resumeEvent = objectMapper.treeToValue(inbound.getData(), ResumeEvent.class);
+                handleResumeEvent(session, resumeEvent);
+                break;
+
             default:
                 logger.warn("Unknown event type: {}", inbound.getType());
                 sendToSession(session, OutboundMessage.builder()
@@ -112,63 +146,136 @@ public class CompilerWebSocketHandler extends TextWebSocketHandler {
     }
 
 
-    private void handleRunEvent(WebSocketSession session, RunEvent req, String job_id) {
-        try {
-            // TODO: publish to language specific queue
-            // Publish to SQS
-            SqsPayload sqsPayload = SqsPayload.builder()
+    private void handleRunEvent(WebSocketSession session, RunEvent req, String job_id) throws IOException {
+        // the language picks the queue, the output limits and a metric tag: check it before any of them
+        if (!sqsBatchPublisher.supports(req.getLanguage())) {
+            sendToSession(session, OutboundMessage.builder()
+                    .type("ERROR")
                     .job_id(job_id)
-                    .language(req.getLanguage())
-                    .file_name(req.getFile_name())
-                    .source_code(req.getSource_code())
-                    .build();
-
-            String messageId = "";
-            // TODO: replace with switch
-            if (req.getLanguage().equals("java")) {
-                messageId = sqsPublisher.sendMessage(sqsPayload);
-            } else if (req.getLanguage().equals("cpp")) {
-                messageId = sqsPublisherCPP.sendMessage(sqsPayload);
-            } else if (req.getLanguage().equals("py")) {
-                messageId = sqsPublisherPython.sendMessage(sqsPayload);
+                    .content("Unsupported language: " + req.getLanguage())
+                    .build());
+            return;
+        }
+
+        // from here on the job is bounded by its wall-time and no-output deadlines
+        jobMessagingService.jobStarted(job_id, req.getLanguage());
+
+        // Identical source already ran to completion without input: replay its output instead of running it
+        String cacheKey = resultCache.isEnabled() ? ResultCache.key(req) : null;
+        ResultCache.CachedResult cached = cacheKey == null ? null : resultCache.lookup(cacheKey);
+        if (cached != null) {
+            replayCachedResult(job_id, cached);
+            return;
+        }
+
+        SqsPayload sqsPayload = SqsPayload.builder()
+                .job_id(job_id)
+                .language(req.getLanguage())
+                .file_name(req.getFile_name())
+                .source_code(req.getSource_code())
+                .build();
+
+        if (cacheKey != null) {
+            resultCache.startRecording(job_id, cacheKey);
+        }
+
+        // Subscribe to Redis for this jobId before it can run (no-op when the node holds a pattern subscription)
+        jobChannelSubscriptions.subscribe(job_id, redisSubscriber);
+
+        // Publish to the language's SQS queue without blocking this thread; ack once the batch is accepted
+        sqsBatchPublisher.submit(sqsPayload).whenComplete((messageId, error) -> {
+            if (error == null) {
+                sendToJob(job_id, OutboundMessage.builder()
+                        .type("JOB_ENQUEUED")
+                        .job_id(job_id)
+                        .content("Job queued with messageId: " + messageId)
+                        .build());
+            } else {
+                logger.error("Error handling run event for job {}: {}", job_id, error.getMessage());
+                resultCache.discard(job_id);
+                sendToJob(job_id, OutboundMessage.builder()
+                        .type("ERROR")
+                        .job_id(job_id)
+                        .content("Failed to queue job: " + error.getMessage())
+                        .build());
             }
+        });
+    }
 
-            // Subscribe to Redis for this jobId
-            String channel = ChannelNaming.jobChannel(job_id);
-            redisMessageListenerContainer.addMessageListener(redisSubscriber, new ChannelTopic(channel));
-            logger.info("Subscribed to: {}", channel);
 
-            // Ack
-            sendToSession(session, OutboundMessage.builder()
-                    .type("JOB_ENQUEUED")
-                    .job_id(job_id)
-                    .content("Job queued with messageId: " + messageId)
-                    .build());
-        } catch (Exception exception) {
-            logger.error("Error handling run event: {}", exception.getMessage());
+    private void replayCachedResult(String job_id, ResultCache.CachedResult cached) {
+        sendToJob(job_id, OutboundMessage.builder()
+                .type("JOB_ENQUEUED")
+                .job_id(job_id)
+                .content("Job served from cache")
+                .build());
+        // ends with the recorded COMPLETION, which closes the session like a live run
+        for (String payload : ResultCache.payloadsFor(cached, job_id)) {
+            jobMessagingService.sendToJob(job_id, OutboundEnvelope.parse(objectMapper.getFactory(), payload));
         }
+        logger.info("Job {} served from cache (recorded as job {})", job_id, cached.job_id());
     }
 
 
     // TODO: complete
     private void handleInputEvent(WebSocketSession session, InputEvent req, String job_id) {
         try {
-            String channel = ChannelNaming.inputChannel(req.getJob_id());
-            RedisPublisherPayload redisPublisherPayload = RedisPublisherPayload.builder()
-                    .event_type("INPUT_EVENT")
-                    .content(req.getContent())
-                    .build();
-            redisPublisher.publish(channel, redisPublisherPayload);
-
-            // Ack back
+            // a program that reads input is not reproducible from its source alone; the session's
+            // job, not the job_id the client sent, or a run could read input and still be cached
+            resultCache.discard(job_id);
+            // a program waiting for input is quiet, not stuck; its echo should not queue behind noisy jobs
+            jobMessagingService.inputReceived(job_id);
+
+            // don't wait for redis on the websocket thread; ack (or report) once it is published.
+            // Always the session's own job: input cannot be steered to another job's program.
+            redisPublisher.publishInput(ChannelNaming.inputChannel(job_id), req.getContent())
+                    .whenComplete((receivers, error) -> sendToJob(job_id, OutboundMessage.builder()
+                            .type(error == null ? "INPUT_RECEIVED" : "ERROR")
+                            .job_id(job_id)
+                            .content(error == null ? "Input forwarded to job" : "Failed to forward input: " + error.getMessage())
+                            .build()));
+        } catch (Exception e) {
+            logger.error("Error: {}", e.getMessage());
+        }
+    }
+
+
+    // reconnect with a previous job_id: replay the output recorded since last_seq, then continue live
+    private void handleResumeEvent(WebSocketSession session, ResumeEvent req) throws IOException {
+        String job_id = req.getJob_id();
+        if (!jobOutputReplay.isEnabled()) {
             sendToSession(session, OutboundMessage.builder()
-                    .type("INPUT_RECEIVED")
+                    .type("ERROR")
                     .job_id(job_id)
-                    .content("Input forwarded to job")
+                    .content("Resume is not supported on this server")
                     .build());
-        } catch (Exception e) {
-            logger.error("Error: {}", e.getMessage());
+            return;
         }
+        // only the client that started the job may take it over
+        if (!jobTokens.verify(job_id, req.getToken())) {
+            logger.warn("Session {} refused resume of job {}: bad token", session.getId(), job_id);
+            sendToSession(session, OutboundMessage.builder()
+                    .type("ERROR")
+                    .job_id(job_id)
+                    .content("Cannot resume job: invalid token")
+                    .build());
+            return;
+        }
+        if (req.getLast_seq() != null && !OutboundEnvelope.isValidSeq(req.getLast_seq())) {
+            sendToSession(session, OutboundMessage.builder()
+                    .type("ERROR")
+                    .job_id(job_id)
+                    .content("Cannot resume job: last_seq is not a stream id")
+                    .build());
+            return;
+        }
+
+        jobOutputReplay.cancelClose(job_id);
+        jobChannelSubscriptions.subscribe(job_id, redisSubscriber);
+        jobMessagingService.resumeJob(job_id, session, req.getLast_seq(),
+                () -> jobOutputReplay.replay(job_id, req.getLast_seq()));
+
+        logger.info("Session {} resumed job {} after seq {}", session.getId(), job_id, req.getLast_seq());
     }
 
 
@@ -176,37 +283,70 @@ public class CompilerWebSocketHandler extends TextWebSocketHandler {
     // If session is closed before successful execution then stop code execution
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        if (session.getAttributes().remove(RUN_LIMIT_ATTRIBUTE) == null) {
+            // refused in afterConnectionEstablished: no job, no slot
+            return;
+        }
+        admissionControl.release();
+
         try {
             // Get jobId
             String job_id = jobMessagingService.jobIdCorrespondingToSession(session);
+            resultCache.discard(job_id);
 
-            String channel = ChannelNaming.inputChannel(job_id);
-            RedisPublisherPayload redisPublisherPayload = RedisPublisherPayload.builder()
-                    .event_type("SESSION_CLOSED_EVENT")
-                    .content("User close the session before completion")
-                    .build();
-            redisPublisher.publishSessionCloseEvent(channel, redisPublisherPayload);
+            // With resumable output, a dropped connection keeps the program running for a grace period
+            if (jobOutputReplay.isEnabled() && !CloseStatus.NORMAL.equalsCode(status)) {
+                jobOutputReplay.scheduleClose(job_id, () -> publishSessionClosed(job_id));
+            } else {
+                publishSessionClosed(job_id);
+            }
 
-            // Ack back
-            sendToSession(session, OutboundMessage.builder()
-                    .type("SESSION_CLOSED")
-                    .job_id(job_id)
-                    .content("Input forwarded to job")
-                    .build());
+            // Ack back, when the close came from our side and the socket can still carry it
+            if (session.isOpen()) {
+                sendToSession(session, OutboundMessage.builder()
+                        .type("SESSION_CLOSED")
+                        .job_id(job_id)
+                        .content("Input forwarded to job")
+                        .build());
+            }
 
             logger.info("Session {} closed with status {}", session.getId(), status);
-            jobMessagingService.unregisterSession(session);
         } catch (Exception e) {
-            logger.error("Session closed");
+            logger.error("Session closed", e);
+        } finally {
+            // must run even if the close handling above failed, or the job's state stays registered
+            jobMessagingService.unregisterSession(session);
         }
     }
 
 
+    private void publishSessionClosed(String job_id) {
+        String channel = ChannelNaming.inputChannel(job_id);
+        RedisPublisherPayload redisPublisherPayload = RedisPublisherPayload.builder()
+                .event_type("SESSION_CLOSED_EVENT")
+                .content("User close the session before completion")
+                .build();
+        redisPublisher.publishSessionCloseEvent(channel, redisPublisherPayload);
+    }
+
+
+    // goes through the job's queue, so it is ordered with program output and safe from any thread;
+    // CONTROL keeps the ack out of the output accounting (budget, overflow policy, transcript)
+    private void sendToJob(String job_id, OutboundMessage msg) {
+        try {
+            jobMessagingService.sendToJob(job_id,
+                    OutboundEnvelope.of(OutboundType.CONTROL, objectMapper.writeValueAsString(msg)));
+        } catch (JsonProcessingException e) {
+            logger.error("Failed to encode {} for job {}: {}", msg.getType(), job_id, e.getMessage());
+        }
+    }
+
     private void sendToSession(WebSocketSession session, OutboundMessage msg) throws IOException {
         try {
             session.sendMessage(new TextMessage(objectMapper.writeValueAsString(msg)));
-        } catch (IOException e) {
+        } catch (IOException | IllegalStateException e) {
             // If send fails, cleanup and break. Remaining messages are dropped.
+            // Tomcat throws IllegalStateException when the peer closed the socket under us.
             logger.error("Failed to send to session for job {}: {}", msg.getJob_id(), e.getMessage());
         }
     }
@@ -1,21 +1,56 @@
 package com.compiler.websocket.websocket;
 
+import com.compiler.websocket.service.AdmissionControl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.server.ServerHttpRequest;
 import org.springframework.http.server.ServerHttpResponse;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.WebSocketHandler;
 import org.springframework.web.socket.server.HandshakeInterceptor;
 
+import java.net.InetSocketAddress;
 import java.util.Map;
 
 @Component
 public class CompilerWebSocketHandshakeInterceptor implements HandshakeInterceptor {
 
+    private static final Logger logger = LoggerFactory.getLogger(CompilerWebSocketHandshakeInterceptor.class);
+
+    private final AdmissionControl admissionControl;
+    // behind a load balancer the peer is the balancer; it appends the real client to X-Forwarded-For
+    private final boolean trustForwardedFor;
+
+    public CompilerWebSocketHandshakeInterceptor(AdmissionControl admissionControl,
+                                                 @Value("${app.ws.admission.trust-forwarded-for:false}") boolean trustForwardedFor) {
+        this.admissionControl = admissionControl;
+        this.trustForwardedFor = trustForwardedFor;
+    }
+
     // TODO: check auth, api key etc, verify request
-    // TODO: rate limiting, unnecessary access
     @Override
     public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response, WebSocketHandler wsHandler, Map<String, Object> attributes) throws Exception {
-        return true;
+        String clientIp = clientIp(request);
+        switch (admissionControl.admit(clientIp)) {
+            case RATE_LIMITED -> {
+                logger.debug("Handshake from {} rate limited", clientIp);
+                response.setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+                response.getHeaders().set(HttpHeaders.RETRY_AFTER, Long.toString(admissionControl.retryAfterSeconds(clientIp)));
+                return false;
+            }
+            case OVERLOADED -> {
+                logger.warn("Handshake from {} refused, node at capacity ({} sessions)", clientIp, admissionControl.sessions());
+                response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+                response.getHeaders().set(HttpHeaders.RETRY_AFTER, "5");
+                return false;
+            }
+            default -> {
+                return true;
+            }
+        }
     }
 
     @Override
@@ -23,4 +58,20 @@ public class CompilerWebSocketHandshakeInterceptor implements HandshakeIntercept
         // Optional logging
     }
 
+    String clientIp(ServerHttpRequest request) {
+        return clientIp(request.getHeaders(), request.getRemoteAddress(), trustForwardedFor);
+    }
+
+    /** The address admission control keys a handshake by; shared with the reactive stack. */
+    static String clientIp(HttpHeaders headers, InetSocketAddress remote, boolean trustForwardedFor) {
+        if (trustForwardedFor) {
+            String forwarded = headers.getFirst("X-Forwarded-For");
+            if (forwarded != null && !forwarded.isBlank()) {
+                // the last hop is the one the balancer saw; earlier entries are client-supplied
+                return forwarded.substring(forwarded.lastIndexOf(',') + 1).trim();
+            }
+        }
+        return remote == null || remote.getAddress() == null ? "unknown" : remote.getAddress().getHostAddress();
+    }
+
 }
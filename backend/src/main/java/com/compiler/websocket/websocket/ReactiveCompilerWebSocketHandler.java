@@ -0,0 +1,106 @@
+package com.compiler.websocket.websocket;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.socket.CloseStatus;
+import org.springframework.web.reactive.socket.WebSocketHandler;
+import org.springframework.web.reactive.socket.WebSocketSession;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * The websocket protocol on WebFlux/Reactor Netty ("reactive" profile).
+ * <p>
+ * Every event goes to the same {@link CompilerWebSocketHandler} as on Tomcat, through a
+ * {@link ReactiveWebSocketSessionAdapter}, so both stacks speak the same protocol and can be
+ * load-tested against each other. Frames are decoded on the Netty thread and handled in order on
+ * boundedElastic, since the handler may wait for a slow socket while sending its acks.
+ * <p>
+ * Outbound, Netty only asks for frames while the channel is writable; the adapter turns that
+ * demand into permits for the job's drainer, so a slow client slows its own drainer, then its job
+ * queue, then (through OutputFlowControl) the runner and its Redis publishing.
+ */
+@Component
+@Profile("reactive")
+public class ReactiveCompilerWebSocketHandler implements WebSocketHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveCompilerWebSocketHandler.class);
+
+    private final CompilerWebSocketHandler handler;
+    private final int sendBufferFrames;
+    private final long sendTimeLimitMillis;
+
+    public ReactiveCompilerWebSocketHandler(CompilerWebSocketHandler handler,
+                                            @Value("${app.ws.reactive.send-buffer-frames:64}") int sendBufferFrames,
+                                            @Value("${app.ws.reactive.send-time-limit-ms:15000}") long sendTimeLimitMillis) {
+        this.handler = handler;
+        this.sendBufferFrames = sendBufferFrames;
+        this.sendTimeLimitMillis = sendTimeLimitMillis;
+    }
+
+    @Override
+    public Mono<Void> handle(WebSocketSession session) {
+        ReactiveWebSocketSessionAdapter adapter = new ReactiveWebSocketSessionAdapter(session, sendBufferFrames, sendTimeLimitMillis);
+
+        Mono<Void> inbound = Mono.fromRunnable(() -> established(adapter))
+                .subscribeOn(Schedulers.boundedElastic())
+                .thenMany(session.receive().map(ReactiveWebSocketSessionAdapter::toServletMessage))
+                .publishOn(Schedulers.boundedElastic())
+                .doOnNext(message -> {
+                    try {
+                        handler.handleMessage(adapter, message);
+                    } catch (Exception e) {
+                        // what ExceptionWebSocketHandlerDecorator does on the servlet stack
+                        logger.error("Closing session {} after a handler error", adapter.getId(), e);
+                        adapter.close(org.springframework.web.socket.CloseStatus.SERVER_ERROR);
+                    }
+                })
+                .then(session.closeStatus())
+                .onErrorResume(e -> {
+                    logger.debug("Session {} failed: {}", adapter.getId(), e.getMessage());
+                    return Mono.empty();
+                })
+                .defaultIfEmpty(CloseStatus.NO_CLOSE_FRAME)
+                .publishOn(Schedulers.boundedElastic())
+                .doOnNext(status -> closed(adapter, status))
+                .doFinally(signal -> {
+                    if (signal == SignalType.CANCEL) {
+                        closed(adapter, CloseStatus.GOING_AWAY);
+                    }
+                })
+                .then();
+
+        // the close frame goes after everything queued before close(), like the servlet stack's flush
+        Mono<Void> outbound = session.send(adapter.outbound())
+                .then(Mono.defer(() -> {
+                    org.springframework.web.socket.CloseStatus status = adapter.pendingClose();
+                    return status == null ? Mono.<Void>empty() : session.close(new CloseStatus(status.getCode(), status.getReason()));
+                }))
+                .onErrorResume(e -> {
+                    logger.debug("Sending to session {} failed: {}", adapter.getId(), e.getMessage());
+                    adapter.disconnected();
+                    return Mono.empty();
+                });
+
+        return Mono.when(inbound, outbound);
+    }
+
+    private void established(ReactiveWebSocketSessionAdapter adapter) {
+        try {
+            handler.afterConnectionEstablished(adapter);
+        } catch (Exception e) {
+            logger.error("Closing session {} after a handler error", adapter.getId(), e);
+            adapter.close(org.springframework.web.socket.CloseStatus.SERVER_ERROR);
+        }
+    }
+
+    private void closed(ReactiveWebSocketSessionAdapter adapter, CloseStatus status) {
+        if (adapter.disconnected()) {
+            handler.afterConnectionClosed(adapter, new org.springframework.web.socket.CloseStatus(status.getCode(), status.getReason()));
+        }
+    }
+}
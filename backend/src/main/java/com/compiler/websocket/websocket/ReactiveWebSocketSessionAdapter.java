@@ -0,0 +1,232 @@
+package com.compiler.websocket.websocket;
+
+import com.compiler.websocket.service.JobMessagingService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.PingMessage;
+import org.springframework.web.socket.PongMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.security.Principal;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A Reactor Netty websocket session behind the servlet {@link WebSocketSession} API, so
+ * CompilerWebSocketHandler and JobMessagingService run unchanged on the reactive stack.
+ * <p>
+ * {@link #sendMessage} is blocking, as on Tomcat, but bounded by the socket rather than by a buffer:
+ * it takes one of {@code bufferFrames} permits and a permit only comes back when Netty pulls the
+ * frame, which it does while the channel is writable. A client that stops reading therefore stalls
+ * the job's drainer, the job's queue fills and OutputFlowControl pauses the runner, instead of frames
+ * piling up here. A send still waiting after {@code sendTimeLimitMillis} fails like a dead socket.
+ */
+final class ReactiveWebSocketSessionAdapter implements WebSocketSession {
+
+    private final org.springframework.web.reactive.socket.WebSocketSession session;
+    private final Sinks.Many<org.springframework.web.reactive.socket.WebSocketMessage> outbound =
+            Sinks.many().unicast().onBackpressureBuffer();
+    private final Semaphore sendPermits;
+    private final long sendTimeLimitMillis;
+    private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+    private final AtomicBoolean disconnected = new AtomicBoolean();
+    // set once we start closing; sent as the close frame after the queued frames
+    private volatile CloseStatus closeStatus;
+    private int textMessageSizeLimit;
+    private int binaryMessageSizeLimit;
+
+    ReactiveWebSocketSessionAdapter(org.springframework.web.reactive.socket.WebSocketSession session,
+                                    int bufferFrames, long sendTimeLimitMillis) {
+        this.session = session;
+        this.sendPermits = new Semaphore(bufferFrames);
+        this.sendTimeLimitMillis = sendTimeLimitMillis;
+        this.attributes.putAll(session.getAttributes());
+        this.attributes.put(JobMessagingService.CONCURRENT_SENDS_ATTRIBUTE, Boolean.TRUE);
+    }
+
+    /** Frames for {@code session.send}; completes after {@link #close} so queued frames go out first. */
+    Flux<org.springframework.web.reactive.socket.WebSocketMessage> outbound() {
+        return outbound.asFlux().doOnNext(message -> sendPermits.release());
+    }
+
+    /** The status to close the socket with once {@link #outbound} is flushed, null if the peer went first. */
+    CloseStatus pendingClose() {
+        return disconnected.get() ? null : closeStatus;
+    }
+
+    /** The connection is gone: fail pending and future sends. True only the first time. */
+    boolean disconnected() {
+        if (!disconnected.compareAndSet(false, true)) {
+            return false;
+        }
+        synchronized (this) {
+            if (closeStatus == null) {
+                closeStatus = CloseStatus.NO_CLOSE_FRAME;
+            }
+            outbound.tryEmitComplete();
+        }
+        // wake senders waiting for permits; they find the session closed
+        sendPermits.release(Integer.MAX_VALUE / 2);
+        return true;
+    }
+
+    /** Servlet view of a received frame, as CompilerWebSocketHandler gets it on Tomcat. */
+    static WebSocketMessage<?> toServletMessage(org.springframework.web.reactive.socket.WebSocketMessage message) {
+        return switch (message.getType()) {
+            case TEXT -> new TextMessage(message.getPayloadAsText());
+            case BINARY -> new BinaryMessage(bytes(message));
+            case PING -> new PingMessage(ByteBuffer.wrap(bytes(message)));
+            case PONG -> new PongMessage(ByteBuffer.wrap(bytes(message)));
+        };
+    }
+
+    private static byte[] bytes(org.springframework.web.reactive.socket.WebSocketMessage message) {
+        byte[] bytes = new byte[message.getPayload().readableByteCount()];
+        message.getPayload().read(bytes);
+        return bytes;
+    }
+
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) throws IOException {
+        if (!isOpen()) {
+            throw new IOException("Session " + getId() + " is closed");
+        }
+        try {
+            if (!sendPermits.tryAcquire(sendTimeLimitMillis, TimeUnit.MILLISECONDS)) {
+                throw new IOException("Session " + getId() + " did not read for " + sendTimeLimitMillis + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted sending to session " + getId());
+        }
+        // one emitter at a time, and never after the sink completed
+        synchronized (this) {
+            if (closeStatus != null || outbound.tryEmitNext(toReactiveMessage(message)).isFailure()) {
+                sendPermits.release();
+                throw new IOException("Session " + getId() + " is closed");
+            }
+        }
+    }
+
+    // text frames keep the bytes TextMessage already holds; the servlet API could only send them from a String
+    private org.springframework.web.reactive.socket.WebSocketMessage toReactiveMessage(WebSocketMessage<?> message) {
+        org.springframework.web.reactive.socket.WebSocketMessage.Type type = switch (message) {
+            case TextMessage text -> org.springframework.web.reactive.socket.WebSocketMessage.Type.TEXT;
+            case BinaryMessage binary -> org.springframework.web.reactive.socket.WebSocketMessage.Type.BINARY;
+            case PingMessage ping -> org.springframework.web.reactive.socket.WebSocketMessage.Type.PING;
+            case PongMessage pong -> org.springframework.web.reactive.socket.WebSocketMessage.Type.PONG;
+            default -> throw new IllegalArgumentException("Unsupported message " + message.getClass().getName());
+        };
+        ByteBuffer payload = message instanceof TextMessage text
+                ? ByteBuffer.wrap(text.asBytes())
+                : ((ByteBuffer) message.getPayload()).duplicate();
+        return new org.springframework.web.reactive.socket.WebSocketMessage(type, session.bufferFactory().wrap(payload));
+    }
+
+    @Override
+    public boolean isOpen() {
+        return closeStatus == null && session.isOpen();
+    }
+
+    @Override
+    public void close() {
+        close(CloseStatus.NORMAL);
+    }
+
+    @Override
+    public void close(CloseStatus status) {
+        synchronized (this) {
+            if (closeStatus != null) {
+                return;
+            }
+            closeStatus = status;
+            outbound.tryEmitComplete();
+        }
+    }
+
+    @Override
+    public String getId() {
+        return session.getId();
+    }
+
+    @Override
+    public URI getUri() {
+        return session.getHandshakeInfo().getUri();
+    }
+
+    @Override
+    public HttpHeaders getHandshakeHeaders() {
+        return session.getHandshakeInfo().getHeaders();
+    }
+
+    @Override
+    public Map<String, Object> getAttributes() {
+        return attributes;
+    }
+
+    @Override
+    public Principal getPrincipal() {
+        return null;
+    }
+
+    @Override
+    public InetSocketAddress getLocalAddress() {
+        return null;
+    }
+
+    @Override
+    public InetSocketAddress getRemoteAddress() {
+        return session.getHandshakeInfo().getRemoteAddress();
+    }
+
+    @Override
+    public String getAcceptedProtocol() {
+        return session.getHandshakeInfo().getSubProtocol();
+    }
+
+    // the frame limit is set on the server (ReactiveWebSocketConfig); these only remember the value
+    @Override
+    public void setTextMessageSizeLimit(int messageSizeLimit) {
+        this.textMessageSizeLimit = messageSizeLimit;
+    }
+
+    @Override
+    public int getTextMessageSizeLimit() {
+        return textMessageSizeLimit;
+    }
+
+    @Override
+    public void setBinaryMessageSizeLimit(int messageSizeLimit) {
+        this.binaryMessageSizeLimit = messageSizeLimit;
+    }
+
+    @Override
+    public int getBinaryMessageSizeLimit() {
+        return binaryMessageSizeLimit;
+    }
+
+    @Override
+    public List<WebSocketExtension> getExtensions() {
+        return List.of();
+    }
+
+    @Override
+    public String toString() {
+        return "ReactiveWebSocketSessionAdapter[id=" + getId() + ", uri=" + getUri() + "]";
+    }
+}
@@ -0,0 +1,69 @@
+package com.compiler.websocket.benchmark;
+
+import ch.qos.logback.classic.Level;
+import com.compiler.websocket.messaging.JobChannelSubscriptions;
+import com.compiler.websocket.service.*;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.StandardEnvironment;
+
+/**
+ * Wiring shared by the in-memory benchmarks: the dispatch path exactly as Spring builds it,
+ * minus Redis and sockets.
+ */
+final class BenchmarkSupport {
+
+    private BenchmarkSupport() {
+    }
+
+    /** Without a logback config the default is DEBUG to the console, which would dominate every score. */
+    static void quietLogging() {
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+    }
+
+    /** Pattern mode makes per-job subscribe/unsubscribe a no-op, so no listener container is needed. */
+    static JobChannelSubscriptions subscriptions() {
+        return new JobChannelSubscriptions(null, JobChannelSubscriptions.Mode.PATTERN);
+    }
+
+    /** Disabled, so every RUN_EVENT takes the submission path and nothing is recorded. */
+    static ResultCache disabledResultCache(ObjectMapper objectMapper, MeterRegistry registry) {
+        return new ResultCache(null, objectMapper, registry, false, false, 0, 0, 0, 0);
+    }
+
+    // limits far above anything a benchmark reaches, so only the bookkeeping is measured
+    static AdmissionControl unlimitedAdmission(MeterRegistry registry) {
+        return new AdmissionControl(registry, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE,
+                1_000_000, Integer.MAX_VALUE, 1_000_000, 60_000);
+    }
+
+    static MemoryGovernor memoryGovernor(MeterRegistry registry) {
+        return new MemoryGovernor(registry, 1L << 30, 1L << 24, 1L << 16, 1 << 24,
+                MemoryGovernor.OverflowPolicy.DROP_NEWEST, 0);
+    }
+
+    static JobMessagingService jobMessagingService(ObjectMapper objectMapper, MeterRegistry registry,
+                                                   DispatchMode dispatchMode, long coalesceWindowMillis) {
+        return jobMessagingService(objectMapper, registry, dispatchMode, coalesceWindowMillis,
+                new TranscriptStore(registry, false, null, 0, 0, 0, 0));
+    }
+
+    static JobMessagingService jobMessagingService(ObjectMapper objectMapper, MeterRegistry registry,
+                                                   DispatchMode dispatchMode, long coalesceWindowMillis,
+                                                   TranscriptStore transcriptStore) {
+        MemoryGovernor governor = memoryGovernor(registry);
+        // flow control disabled: nothing to publish to
+        OutputFlowControl flowControl = new OutputFlowControl(null, governor, false, 0.75, 0.25);
+        return new JobMessagingService(subscriptions(),
+                new OutputCoalescer(objectMapper, registry, coalesceWindowMillis, 16384),
+                governor, flowControl, new JobMetrics(registry), timersDisabled(registry),
+                new OutputBudget(objectMapper, registry, new StandardEnvironment()),
+                new DrainFairness(registry, 16384, 4, 0.25, 2000), transcriptStore, objectMapper, dispatchMode, 0);
+    }
+
+    static JobDeadlines timersDisabled(MeterRegistry registry) {
+        return new JobDeadlines(registry, 100, 512, 0, 0, 0);
+    }
+}
@@ -0,0 +1,124 @@
+package com.compiler.websocket.benchmark;
+
+import com.compiler.websocket.messaging.RedisSubscriber;
+import com.compiler.websocket.model.OutboundMessage;
+import com.compiler.websocket.service.DispatchMode;
+import com.compiler.websocket.service.JobMessagingService;
+import com.compiler.websocket.service.JobMetrics;
+import com.compiler.websocket.service.TranscriptStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.Message;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * End-to-end output path without a network: RedisSubscriber.onMessage -> sendToJob ->
+ * tryDispatch -> drainQueue -> a stub session.
+ * <p>
+ * Each invocation publishes {@value #BATCH} runner messages round-robin over {@code jobs}
+ * and waits until every chunk has been sent, so the score is delivered messages per second.
+ * {@code jobs=1} is one chatty program, {@code jobs=1024} many programs printing a few lines each.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@OperationsPerInvocation(DispatchBenchmark.BATCH)
+public class DispatchBenchmark {
+
+    // stays below the per-job queue capacity even when a single job gets the whole batch
+    static final int BATCH = 4096;
+
+    @Param({"1", "1024"})
+    public int jobs;
+
+    @Param({"PLATFORM", "VIRTUAL", "EVENT_LOOP"})
+    public DispatchMode dispatchMode;
+
+    @Param({"0", "5"})
+    public long coalesceWindowMillis;
+
+    // -p transcripts=false,true to see what appending every frame to a transcript costs
+    @Param({"false"})
+    public boolean transcripts;
+
+    private RedisSubscriber subscriber;
+    private Message[] messages;
+    private DistributionSummary chunksSent;
+    private Gauge activeDrains;
+    private long expectedChunks;
+    private TranscriptStore transcriptStore;
+    private Path transcriptDir;
+
+    @Setup
+    public void setup() throws Exception {
+        BenchmarkSupport.quietLogging();
+        ObjectMapper objectMapper = new ObjectMapper();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        JobMetrics jobMetrics = new JobMetrics(registry);
+        transcriptDir = Files.createTempDirectory("transcripts");
+        transcriptStore = new TranscriptStore(registry, transcripts, transcriptDir, 64 << 20, 3_600_000, 3_600_000, 1L << 30);
+        JobMessagingService service = BenchmarkSupport.jobMessagingService(objectMapper, registry,
+                dispatchMode, coalesceWindowMillis, transcriptStore);
+        subscriber = new RedisSubscriber(service, BenchmarkSupport.subscriptions(), objectMapper, jobMetrics,
+                BenchmarkSupport.disabledResultCache(objectMapper, registry), false);
+
+        messages = new Message[jobs];
+        for (int i = 0; i < jobs; i++) {
+            String jobId = "job-" + i;
+            service.registerJob(jobId, new StubWebSocketSession("session-" + i));
+            String payload = objectMapper.writeValueAsString(OutboundMessage.builder()
+                    .job_id(jobId)
+                    .type("STDOUT")
+                    .content("line of program output\n")
+                    .build());
+            messages[i] = new DefaultMessage(("job:" + jobId).getBytes(StandardCharsets.UTF_8),
+                    payload.getBytes(StandardCharsets.UTF_8));
+        }
+
+        chunksSent = registry.get("jobs.output.chunks.per.frame").summary();
+        activeDrains = registry.get("jobs.dispatcher.drains.active").gauge();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        transcriptStore.close();
+        try (Stream<Path> files = Files.list(transcriptDir)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(transcriptDir);
+    }
+
+    @Benchmark
+    public void publishAndDrain() {
+        for (int i = 0; i < BATCH; i++) {
+            subscriber.onMessage(messages[i % jobs], null);
+        }
+        expectedChunks += BATCH;
+
+        // every chunk has been taken into a frame and the last drain has finished sending
+        while (chunksSent.totalAmount() < expectedChunks || activeDrains.value() > 0) {
+            Thread.onSpinWait();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(DispatchBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,142 @@
+package com.compiler.websocket.benchmark;
+
+import com.compiler.websocket.messaging.RedisPublisher;
+import com.compiler.websocket.messaging.RedisSubscriber;
+import com.compiler.websocket.model.InboundMessage;
+import com.compiler.websocket.model.InputEvent;
+import com.compiler.websocket.model.RunEvent;
+import com.compiler.websocket.service.*;
+import com.compiler.websocket.websocket.CompilerWebSocketHandler;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.web.socket.TextMessage;
+import reactor.core.publisher.Mono;
+import software.amazon.awssdk.services.sqs.SqsAsyncClient;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchResponse;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchResultEntry;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CompilerWebSocketHandler.handleTextMessage for RUN_EVENT and INPUT_EVENT: inbound decode,
+ * SQS/Redis payload encode and the ack, with SQS and Redis replaced by no-op clients
+ * (the SQS batcher runs without a window, so every RUN_EVENT completes inline).
+ * {@code sourceChars} is the size of the submitted program.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HandlerJsonBenchmark {
+
+    @Param({"1024", "65536"})
+    public int sourceChars;
+
+    private CompilerWebSocketHandler handler;
+    private StubWebSocketSession session;
+    private TextMessage runEvent;
+    private TextMessage inputEvent;
+
+    @Setup
+    public void setup() throws Exception {
+        BenchmarkSupport.quietLogging();
+        ObjectMapper objectMapper = new ObjectMapper();
+        MeterRegistry registry = new SimpleMeterRegistry();
+        JobMetrics jobMetrics = new JobMetrics(registry);
+        JobMessagingService service = BenchmarkSupport.jobMessagingService(objectMapper, registry,
+                DispatchMode.PLATFORM, 0);
+        ResultCache resultCache = BenchmarkSupport.disabledResultCache(objectMapper, registry);
+        RedisSubscriber subscriber = new RedisSubscriber(service, BenchmarkSupport.subscriptions(), objectMapper,
+                jobMetrics, resultCache, false);
+        RedisPublisher redisPublisher = new RedisPublisher(new NoopRedisTemplate(), objectMapper, registry);
+
+        handler = new CompilerWebSocketHandler(service, objectMapper, subscriber, BenchmarkSupport.subscriptions(),
+                redisPublisher,
+                // no batching window: each RUN_EVENT is its own batch
+                new SqsBatchPublisher("java-queue", "cpp-queue", "py-queue", new NoopSqsAsyncClient(),
+                        objectMapper, jobMetrics, 0, 262144, 0),
+                new JobOutputReplay(null, objectMapper, JobOutputReplay.Transport.PUBSUB, 0),
+                resultCache,
+                BenchmarkSupport.unlimitedAdmission(registry),
+                new JobTokens("benchmark"));
+
+        session = new StubWebSocketSession("session");
+        handler.afterConnectionEstablished(session);
+
+        String source = "class Main { public static void main(String[] a) { System.out.println(1); } }\n";
+        runEvent = new TextMessage(objectMapper.writeValueAsString(InboundMessage.builder()
+                .type("RUN_EVENT")
+                .data(objectMapper.valueToTree(RunEvent.builder()
+                        .language("java")
+                        .file_name("Main.java")
+                        .source_code(source.repeat(sourceChars / source.length() + 1).substring(0, sourceChars))
+                        .build()))
+                .build()));
+        inputEvent = new TextMessage(objectMapper.writeValueAsString(InboundMessage.builder()
+                .type("INPUT_EVENT")
+                .data(objectMapper.valueToTree(InputEvent.builder()
+                        .job_id("job")
+                        .content("42\n")
+                        .build()))
+                .build()));
+    }
+
+    @Benchmark
+    public long runEvent() throws Exception {
+        handler.handleMessage(session, runEvent);
+        return session.frames();
+    }
+
+    @Benchmark
+    public long inputEvent() throws Exception {
+        handler.handleMessage(session, inputEvent);
+        return session.frames();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(HandlerJsonBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    private static final class NoopRedisTemplate extends ReactiveStringRedisTemplate {
+        NoopRedisTemplate() {
+            // never started, nothing connects
+            super(new LettuceConnectionFactory());
+        }
+
+        @Override
+        public Mono<Long> convertAndSend(String channel, String message) {
+            return Mono.just(0L);
+        }
+    }
+
+    private static final class NoopSqsAsyncClient implements SqsAsyncClient {
+        @Override
+        public CompletableFuture<SendMessageBatchResponse> sendMessageBatch(SendMessageBatchRequest request) {
+            return CompletableFuture.completedFuture(SendMessageBatchResponse.builder()
+                    .successful(request.entries().stream()
+                            .map(entry -> SendMessageBatchResultEntry.builder().id(entry.id()).messageId("bench").build())
+                            .toList())
+                    .build());
+        }
+
+        @Override
+        public String serviceName() {
+            return SERVICE_NAME;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.compiler.websocket.benchmark;
+
+import com.compiler.websocket.messaging.OutboundEnvelope;
+import com.compiler.websocket.model.OutboundMessage;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-message cost of deciding whether an outbound payload is terminal.
+ * <p>
+ * {@code fullParse} is what drainQueue used to do on every message, {@code envelope} is the
+ * one-time classification done in RedisSubscriber and {@code drainDecision} is what is left
+ * on the dispatcher thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OutboundEnvelopeBenchmark {
+
+    @Param({"16", "1024"})
+    public int contentLength;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final JsonFactory jsonFactory = objectMapper.getFactory();
+
+    private String payload;
+    private OutboundEnvelope envelope;
+
+    @Setup
+    public void setup() throws Exception {
+        payload = objectMapper.writeValueAsString(OutboundMessage.builder()
+                .job_id("5f0c1a57-8f4e-4bd4-9d70-1b3c3f4b0d2a")
+                .type("STDOUT")
+                .content("x".repeat(contentLength - 1) + "\n")
+                .build());
+        envelope = OutboundEnvelope.parse(jsonFactory, payload);
+    }
+
+    @Benchmark
+    public boolean fullParse() throws Exception {
+        OutboundMessage msg = objectMapper.readValue(payload, OutboundMessage.class);
+        return msg.getType().equals("COMPLETION") || msg.getType().equals("TERMINATION");
+    }
+
+    @Benchmark
+    public OutboundEnvelope envelope() {
+        return OutboundEnvelope.parse(jsonFactory, payload);
+    }
+
+    @Benchmark
+    public boolean drainDecision() {
+        return envelope.type().isTerminal();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(OutboundEnvelopeBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,109 @@
+package com.compiler.websocket.benchmark;
+
+import com.compiler.websocket.messaging.RedisSubscriber;
+import com.compiler.websocket.model.OutboundMessage;
+import com.compiler.websocket.service.DispatchMode;
+import com.compiler.websocket.service.JobMessagingService;
+import com.compiler.websocket.service.JobMetrics;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One runner output chunk from the Redis listener to the bytes a container would write,
+ * with the String path ({@code bytePath=false}) against the byte path.
+ * <p>
+ * The session encodes text frames into a reused buffer the way Tomcat's endpoint does, and
+ * takes binary frames as they are. Run with {@code -prof gc}: {@code gc.alloc.rate.norm}
+ * is bytes allocated per chunk across the listener and the drain thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RedisIngressBenchmark {
+
+    @Param({"false", "true"})
+    public boolean bytePath;
+
+    @Param({"4096"})
+    public int contentLength;
+
+    private RedisSubscriber subscriber;
+    private EncodingSession session;
+    private Message message;
+    private long expectedFrames;
+
+    @Setup
+    public void setup() throws Exception {
+        BenchmarkSupport.quietLogging();
+        ObjectMapper objectMapper = new ObjectMapper();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        // no coalescing window: every chunk is sent on its own, as soon as it is queued
+        JobMessagingService service = BenchmarkSupport.jobMessagingService(objectMapper, registry,
+                DispatchMode.PLATFORM, 0);
+        subscriber = new RedisSubscriber(service, BenchmarkSupport.subscriptions(), objectMapper,
+                new JobMetrics(registry), BenchmarkSupport.disabledResultCache(objectMapper, registry), bytePath);
+
+        String jobId = "5f0c1a57-8f4e-4bd4-9d70-1b3c3f4b0d2a";
+        session = new EncodingSession("session-0");
+        service.registerJob(jobId, session);
+        String payload = objectMapper.writeValueAsString(OutboundMessage.builder()
+                .job_id(jobId)
+                .type("STDOUT")
+                .content("x".repeat(contentLength - 1) + "\n")
+                .build());
+        message = new DefaultMessage(("job:" + jobId).getBytes(StandardCharsets.UTF_8),
+                payload.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public void onMessage() {
+        subscriber.onMessage(message, null);
+        expectedFrames++;
+        while (session.frames() < expectedFrames) {
+            Thread.onSpinWait();
+        }
+    }
+
+    static final class EncodingSession extends StubWebSocketSession {
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+        private final ByteBuffer out = ByteBuffer.allocate(64 * 1024);
+        private long bytes;
+
+        EncodingSession(String id) {
+            super(id);
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) {
+            if (message instanceof TextMessage text) {
+                out.clear();
+                encoder.reset().encode(CharBuffer.wrap(text.getPayload()), out, true);
+                bytes += out.position();
+            } else {
+                bytes += message.getPayloadLength();
+            }
+            super.sendMessage(message);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(RedisIngressBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,53 @@
+package com.compiler.websocket.benchmark;
+
+import com.compiler.websocket.service.DispatchMode;
+import com.compiler.websocket.service.JobMessagingService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one connection lifecycle in JobMessagingService: registerJob on connect,
+ * unregisterSession on close, with {@code residentJobs} other jobs already registered.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RegistrationBenchmark {
+
+    @Param({"0", "10000"})
+    public int residentJobs;
+
+    private JobMessagingService service;
+    private long next;
+
+    @Setup
+    public void setup() {
+        BenchmarkSupport.quietLogging();
+        service = BenchmarkSupport.jobMessagingService(new ObjectMapper(), new SimpleMeterRegistry(),
+                DispatchMode.PLATFORM, 0);
+        for (int i = 0; i < residentJobs; i++) {
+            service.registerJob("resident-" + i, new StubWebSocketSession("resident-session-" + i));
+        }
+    }
+
+    @Benchmark
+    public void registerAndUnregister() {
+        long n = next++;
+        StubWebSocketSession session = new StubWebSocketSession("session-" + n);
+        service.registerJob("job-" + n, session);
+        service.unregisterSession(session);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(RegistrationBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,328 @@
+package com.compiler.websocket.loadtest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Just enough of Redis pub/sub over RESP2 for the app's Lettuce connections: PING, SUBSCRIBE,
+ * PSUBSCRIBE, their UNSUBSCRIBE counterparts and PUBLISH. HELLO is refused so clients fall back
+ * to RESP2; anything else gets an error.
+ * <p>
+ * Simulated runners live in the same process and skip the socket: they publish with
+ * {@link #publish(String, String)} and receive their input channel through {@link #subscribeLocal}.
+ */
+final class FakeRedisServer implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(FakeRedisServer.class);
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    private final ServerSocket serverSocket;
+    private final Map<String, Set<Connection>> channels = new ConcurrentHashMap<>();
+    private final Map<String, Set<Connection>> patterns = new ConcurrentHashMap<>();
+    private final Map<String, Consumer<String>> local = new ConcurrentHashMap<>();
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+    private final AtomicLong published = new AtomicLong();
+
+    FakeRedisServer() throws IOException {
+        this.serverSocket = new ServerSocket(0, 128, InetAddress.getLoopbackAddress());
+        Thread.ofVirtual().name("fake-redis-accept").start(this::acceptLoop);
+    }
+
+    int port() {
+        return serverSocket.getLocalPort();
+    }
+
+    long published() {
+        return published.get();
+    }
+
+    void subscribeLocal(String channel, Consumer<String> listener) {
+        local.put(channel, listener);
+    }
+
+    void unsubscribeLocal(String channel) {
+        local.remove(channel);
+    }
+
+    /** PUBLISH from inside the process; returns the number of receivers like the real command. */
+    long publish(String channel, String message) {
+        return publish(channel, message.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private long publish(String channel, byte[] message) {
+        published.incrementAndGet();
+        long receivers = 0;
+        Consumer<String> listener = local.get(channel);
+        if (listener != null) {
+            listener.accept(new String(message, StandardCharsets.UTF_8));
+            receivers++;
+        }
+        byte[] channelBytes = channel.getBytes(StandardCharsets.UTF_8);
+        for (Connection connection : channels.getOrDefault(channel, Set.of())) {
+            connection.push(List.of("message".getBytes(StandardCharsets.UTF_8), channelBytes, message));
+            receivers++;
+        }
+        for (Map.Entry<String, Set<Connection>> entry : patterns.entrySet()) {
+            if (!matches(entry.getKey(), channel)) continue;
+            byte[] pattern = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            for (Connection connection : entry.getValue()) {
+                connection.push(List.of("pmessage".getBytes(StandardCharsets.UTF_8), pattern, channelBytes, message));
+                receivers++;
+            }
+        }
+        return receivers;
+    }
+
+    // Redis glob with * and ?, which is all the app subscribes with
+    static boolean matches(String pattern, String channel) {
+        int p = 0, c = 0, star = -1, mark = 0;
+        while (c < channel.length()) {
+            if (p < pattern.length() && (pattern.charAt(p) == '?' || pattern.charAt(p) == channel.charAt(c))) {
+                p++;
+                c++;
+            } else if (p < pattern.length() && pattern.charAt(p) == '*') {
+                star = p++;
+                mark = c;
+            } else if (star >= 0) {
+                p = star + 1;
+                c = ++mark;
+            } else {
+                return false;
+            }
+        }
+        while (p < pattern.length() && pattern.charAt(p) == '*') p++;
+        return p == pattern.length();
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Connection connection = new Connection(serverSocket.accept());
+                connections.add(connection);
+                Thread.ofVirtual().name("fake-redis-conn").start(connection::serve);
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    logger.warn("Fake redis accept failed: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        for (Connection connection : connections) {
+            connection.close();
+        }
+    }
+
+    private final class Connection {
+        private final Socket socket;
+        private final BufferedInputStream in;
+        private final BufferedOutputStream out;
+        private final Set<String> subscribedChannels = new CopyOnWriteArraySet<>();
+        private final Set<String> subscribedPatterns = new CopyOnWriteArraySet<>();
+
+        Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            socket.setTcpNoDelay(true);
+            this.in = new BufferedInputStream(socket.getInputStream(), 64 * 1024);
+            this.out = new BufferedOutputStream(socket.getOutputStream(), 64 * 1024);
+        }
+
+        void serve() {
+            try {
+                List<byte[]> command;
+                while ((command = readCommand()) != null) {
+                    if (!command.isEmpty()) {
+                        handle(command);
+                    }
+                }
+            } catch (IOException e) {
+                logger.debug("Fake redis connection closed: {}", e.getMessage());
+            } finally {
+                close();
+            }
+        }
+
+        private void handle(List<byte[]> command) throws IOException {
+            String name = new String(command.get(0), StandardCharsets.US_ASCII).toUpperCase(Locale.ROOT);
+            List<String> args = new ArrayList<>(command.size() - 1);
+            for (int i = 1; i < command.size(); i++) {
+                args.add(new String(command.get(i), StandardCharsets.UTF_8));
+            }
+            
+
+            if ("PUBLISH".equals(name) && args.size() == 2) {
+                // deliver before taking this connection's lock: it may be one of the receivers
+                long receivers = publish(args.get(0), command.get(2));
+                synchronized (out) {
+                    out.write((":" + receivers + "\r\n").getBytes(StandardCharsets.US_ASCII));
+                    out.flush();
+                }
+                return;
+            }
+
+            synchronized (out) {
+                switch (name) {
+                    case "PING" -> {
+                        if (subscriptions() > 0) {
+                            writeArray(List.of(bytes("pong"), bytes(args.isEmpty() ? "" : args.get(0))));
+                        } else {
+                            out.write("+PONG\r\n".getBytes(StandardCharsets.US_ASCII));
+                        }
+                    }
+                    case "CLIENT", "SELECT", "AUTH", "READONLY" -> out.write("+OK\r\n".getBytes(StandardCharsets.US_ASCII));
+                    case "SUBSCRIBE" -> subscribe(args, channels, subscribedChannels, "subscribe");
+                    case "PSUBSCRIBE" -> subscribe(args, patterns, subscribedPatterns, "psubscribe");
+                    case "UNSUBSCRIBE" -> unsubscribe(args, channels, subscribedChannels, "unsubscribe");
+                    case "PUNSUBSCRIBE" -> unsubscribe(args, patterns, subscribedPatterns, "punsubscribe");
+                    case "QUIT" -> {
+                        out.write("+OK\r\n".getBytes(StandardCharsets.US_ASCII));
+                        out.flush();
+                        close();
+                        return;
+                    }
+                    // HELLO included: Lettuce then falls back to RESP2
+                    default -> out.write(("-ERR unknown command '" + name + "'\r\n").getBytes(StandardCharsets.UTF_8));
+                }
+                out.flush();
+            }
+        }
+
+        private void subscribe(List<String> names, Map<String, Set<Connection>> registry, Set<String> own, String kind)
+                throws IOException {
+            for (String channel : names) {
+                registry.computeIfAbsent(channel, k -> ConcurrentHashMap.newKeySet()).add(this);
+                own.add(channel);
+                writeSubscriptionReply(kind, channel);
+            }
+        }
+
+        private void unsubscribe(List<String> names, Map<String, Set<Connection>> registry, Set<String> own, String kind)
+                throws IOException {
+            List<String> targets = names.isEmpty() ? new ArrayList<>(own) : names;
+            if (targets.isEmpty()) {
+                writeSubscriptionReply(kind, null);
+                return;
+            }
+            for (String channel : targets) {
+                Set<Connection> subscribers = registry.get(channel);
+                if (subscribers != null) {
+                    subscribers.remove(this);
+                    if (subscribers.isEmpty()) {
+                        registry.remove(channel, subscribers);
+                    }
+                }
+                own.remove(channel);
+                writeSubscriptionReply(kind, channel);
+            }
+        }
+
+        private int subscriptions() {
+            return subscribedChannels.size() + subscribedPatterns.size();
+        }
+
+        private void writeSubscriptionReply(String kind, String channel) throws IOException {
+            out.write("*3\r\n".getBytes(StandardCharsets.US_ASCII));
+            writeBulk(bytes(kind));
+            writeBulk(channel == null ? null : bytes(channel));
+            out.write((":" + subscriptions() + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        }
+
+        void push(List<byte[]> message) {
+            try {
+                synchronized (out) {
+                    writeArray(message);
+                    out.flush();
+                }
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        private void writeArray(List<byte[]> items) throws IOException {
+            out.write(("*" + items.size() + "\r\n").getBytes(StandardCharsets.US_ASCII));
+            for (byte[] item : items) {
+                writeBulk(item);
+            }
+        }
+
+        private void writeBulk(byte[] value) throws IOException {
+            if (value == null) {
+                out.write("$-1\r\n".getBytes(StandardCharsets.US_ASCII));
+                return;
+            }
+            out.write(("$" + value.length + "\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.write(value);
+            out.write(CRLF);
+        }
+
+        // one multi-bulk command, or null at end of stream
+        private List<byte[]> readCommand() throws IOException {
+            int first = in.read();
+            if (first == -1) return null;
+            if (first != '*') {
+                // inline command, as typed in redis-cli; only used by hand
+                String line = (char) first + readLine();
+                List<byte[]> words = new ArrayList<>();
+                for (String word : line.trim().split("\\s+")) {
+                    if (!word.isEmpty()) words.add(bytes(word));
+                }
+                return words;
+            }
+            int count = Integer.parseInt(readLine());
+            List<byte[]> parts = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                if (in.read() != '$') throw new IOException("Protocol error: expected bulk string");
+                int length = Integer.parseInt(readLine());
+                parts.add(in.readNBytes(length));
+                if (in.read() != '\r' || in.read() != '\n') throw new IOException("Protocol error: missing CRLF");
+            }
+            return parts;
+        }
+
+        private String readLine() throws IOException {
+            StringBuilder line = new StringBuilder();
+            int b;
+            while ((b = in.read()) != '\r') {
+                if (b == -1) throw new EOFException();
+                line.append((char) b);
+            }
+            in.read();
+            return line.toString();
+        }
+
+        void close() {
+            for (String channel : subscribedChannels) {
+                Set<Connection> subscribers = channels.get(channel);
+                if (subscribers != null) subscribers.remove(this);
+            }
+            for (String pattern : subscribedPatterns) {
+                Set<Connection> subscribers = patterns.get(pattern);
+                if (subscribers != null) subscribers.remove(this);
+            }
+            connections.remove(this);
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // already gone
+            }
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
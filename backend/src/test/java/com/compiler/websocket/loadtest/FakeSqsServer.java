@@ -0,0 +1,115 @@
+package com.compiler.websocket.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * SQS endpoint for {@code aws.sqs.endpoint}: accepts SendMessage and SendMessageBatch in the
+ * AWS JSON protocol the SDK speaks and hands every message body to the simulated runners
+ * instead of queueing it. MD5OfMessageBody is real, the SDK checks it.
+ */
+final class FakeSqsServer implements AutoCloseable {
+
+    private static final String JSON = "application/x-amz-json-1.0";
+
+    private final HttpServer server;
+    private final ObjectMapper objectMapper;
+    private final Consumer<String> messages;
+    private final AtomicLong received = new AtomicLong();
+
+    FakeSqsServer(ObjectMapper objectMapper, Consumer<String> messages) throws IOException {
+        this.objectMapper = objectMapper;
+        this.messages = messages;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 128);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    String endpoint() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    String queueUrl(String name) {
+        return endpoint() + "/000000000000/" + name;
+    }
+
+    long received() {
+        return received.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String target = exchange.getRequestHeaders().getFirst("X-Amz-Target");
+            JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+
+            ObjectNode response = objectMapper.createObjectNode();
+            if ("AmazonSQS.SendMessageBatch".equals(target)) {
+                ArrayNode successful = response.putArray("Successful");
+                response.putArray("Failed");
+                for (JsonNode entry : request.path("Entries")) {
+                    String body = entry.path("MessageBody").asText();
+                    successful.addObject()
+                            .put("Id", entry.path("Id").asText())
+                            .put("MessageId", accept(body))
+                            .put("MD5OfMessageBody", md5(body));
+                }
+            } else if ("AmazonSQS.SendMessage".equals(target)) {
+                String body = request.path("MessageBody").asText();
+                response.put("MessageId", accept(body)).put("MD5OfMessageBody", md5(body));
+            } else {
+                response.put("__type", "com.amazonaws.sqs#UnsupportedOperation")
+                        .put("message", "Not supported by the fake: " + target);
+                reply(exchange, 400, response);
+                return;
+            }
+            reply(exchange, 200, response);
+        }
+    }
+
+    private String accept(String body) {
+        received.incrementAndGet();
+        messages.accept(body);
+        return UUID.randomUUID().toString();
+    }
+
+    private void reply(HttpExchange exchange, int status, JsonNode body) throws IOException {
+        byte[] bytes = objectMapper.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", JSON);
+        exchange.getResponseHeaders().set("x-amzn-RequestId", UUID.randomUUID().toString());
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static String md5(String body) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("MD5").digest(body.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
@@ -0,0 +1,200 @@
+package com.compiler.websocket.loadtest;
+
+import com.compiler.websocket.loadtest.SimulatedRunner.Scenario;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * One simulated browser tab: opens a session, sends RUN_EVENT, answers prompts with INPUT_EVENT
+ * and waits for COMPLETION/TERMINATION, then starts over on a new session until the deadline.
+ */
+final class LoadClient implements Runnable {
+
+    private static final long RUN_TIMEOUT_SECONDS = 60;
+
+    private final HttpClient httpClient;
+    private final URI uri;
+    private final ObjectMapper objectMapper;
+    private final LoadStats stats;
+    private final ScenarioMix mix;
+    private final long deadlineNanos;
+
+    LoadClient(HttpClient httpClient, URI uri, ObjectMapper objectMapper, LoadStats stats, ScenarioMix mix,
+               long deadlineNanos) {
+        this.httpClient = httpClient;
+        this.uri = uri;
+        this.objectMapper = objectMapper;
+        this.stats = stats;
+        this.mix = mix;
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    @Override
+    public void run() {
+        while (System.nanoTime() < deadlineNanos) {
+            runOnce(mix.pick(ThreadLocalRandom.current()));
+        }
+    }
+
+    private void runOnce(Scenario scenario) {
+        Run run = new Run(scenario);
+        WebSocket webSocket;
+        try {
+            webSocket = httpClient.newWebSocketBuilder()
+                    .connectTimeout(Duration.ofSeconds(10))
+                    .buildAsync(uri, run)
+                    .get(10, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            stats.connectFailed();
+            sleepQuietly();
+            return;
+        }
+
+        try {
+            run.done.get(RUN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            stats.runFailed(scenario, "timeout");
+        } catch (Exception e) {
+            stats.runFailed(scenario, "error");
+        } finally {
+            webSocket.abort();
+        }
+    }
+
+    private static void sleepQuietly() {
+        try {
+            Thread.sleep(100);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private final class Run implements WebSocket.Listener {
+        private final Scenario scenario;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private final StringBuilder text = new StringBuilder();
+        private ByteBuffer binary = ByteBuffer.allocate(64 * 1024);
+        // the JDK client allows one outstanding send at a time
+        private CompletableFuture<WebSocket> sends = CompletableFuture.completedFuture(null);
+        private String jobId;
+        private long runSentNanos;
+        private boolean firstOutputSeen;
+
+        Run(Scenario scenario) {
+            this.scenario = scenario;
+        }
+
+        @Override
+        public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+            text.append(data);
+            if (last) {
+                String frame = text.toString();
+                text.setLength(0);
+                // chars stand in for bytes on text frames, output is mostly ASCII
+                onFrame(webSocket, frame, frame.length());
+            }
+            webSocket.request(1);
+            return null;
+        }
+
+        @Override
+        public CompletionStage<?> onBinary(WebSocket webSocket, ByteBuffer data, boolean last) {
+            if (binary.remaining() < data.remaining()) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(binary.capacity() * 2, binary.position() + data.remaining()));
+                binary = larger.put(binary.flip());
+            }
+            binary.put(data);
+            if (last) {
+                binary.flip();
+                int length = binary.remaining();
+                String frame = StandardCharsets.UTF_8.decode(binary).toString();
+                binary.clear();
+                onFrame(webSocket, frame, length);
+            }
+            webSocket.request(1);
+            return null;
+        }
+
+        @Override
+        public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+            if (!done.isDone()) {
+                stats.runFailed(scenario, "closed " + statusCode);
+                done.complete(null);
+            }
+            return null;
+        }
+
+        @Override
+        public void onError(WebSocket webSocket, Throwable error) {
+            done.completeExceptionally(error);
+        }
+
+        private void onFrame(WebSocket webSocket, String frame, int bytes) {
+            stats.frame(bytes);
+            JsonNode message;
+            try {
+                message = objectMapper.readTree(frame);
+            } catch (Exception e) {
+                stats.runFailed(scenario, "bad frame");
+                done.complete(null);
+                return;
+            }
+
+            String type = message.path("type").asText();
+            switch (type) {
+                case "SESSION_CREATED" -> {
+                    jobId = message.path("job_id").asText();
+                    runSentNanos = System.nanoTime();
+                    stats.runStarted();
+                    send(webSocket, "RUN_EVENT", objectMapper.createObjectNode()
+                            .put("file_name", "Main")
+                            .put("language", "java")
+                            // unique source: no result cache hits
+                            .put("source_code", scenario.marker() + "\n// " + jobId + "\nclass Main {}\n"));
+                }
+                case "STDOUT", "STDERR" -> {
+                    if (!firstOutputSeen) {
+                        firstOutputSeen = true;
+                        stats.firstOutput(System.nanoTime() - runSentNanos);
+                    }
+                    if (scenario == Scenario.INTERACTIVE && message.path("content").asText().endsWith("Enter a number: ")) {
+                        send(webSocket, "INPUT_EVENT", objectMapper.createObjectNode()
+                                .put("job_id", jobId)
+                                .put("content", ThreadLocalRandom.current().nextInt(1000) + "\n"));
+                    }
+                }
+                case "COMPLETION", "TERMINATION" -> {
+                    stats.runEnded(scenario, type, System.nanoTime() - runSentNanos);
+                    done.complete(null);
+                }
+                case "ERROR" -> {
+                    stats.runFailed(scenario, "error frame");
+                    done.complete(null);
+                }
+                default -> {
+                    // JOB_ENQUEUED, INPUT_RECEIVED
+                }
+            }
+        }
+
+        private void send(WebSocket webSocket, String type, ObjectNode data) {
+            ObjectNode event = objectMapper.createObjectNode().put("type", type);
+            event.set("data", data);
+            String json = event.toString();
+            sends = sends.thenCompose(previous -> webSocket.sendText(json, true));
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.compiler.websocket.loadtest;
+
+import com.compiler.websocket.WebsocketApplication;
+import com.compiler.websocket.loadtest.SimulatedRunner.Scenario;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load test of the whole backend on one machine: the Spring Boot app runs unchanged in this JVM
+ * against {@link FakeRedisServer} and {@link FakeSqsServer}, {@link SimulatedRunner} plays the
+ * runners and {@code clients} {@link LoadClient}s drive RUN_EVENT/INPUT_EVENT traffic over real
+ * websockets for {@code duration} seconds.
+ * <p>
+ * {@code mvn -Ploadtest test -Dload.args="clients=500 duration=60 mix=bursty:50,interactive:50"}
+ * <p>
+ * Arguments are {@code key=value}: clients, duration (seconds), mix (see {@link ScenarioMix}),
+ * loop-ms (how long an infinite loop runs before the runner terminates it) and report (JSON file).
+ * Anything starting with {@code --} goes to the app, e.g. {@code --app.jobs.dispatch.mode=virtual}.
+ * <p>
+ * Heap figures cover the app, the fakes and the clients together; compare runs, not absolutes.
+ */
+public final class LoadHarness {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        List<String> appArgs = new ArrayList<>(defaultAppArgs());
+        for (String arg : args) {
+            if (arg.startsWith("--")) {
+                appArgs.add(arg);
+            } else if (arg.contains("=")) {
+                options.put(arg.substring(0, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        int clients = Integer.parseInt(options.getOrDefault("clients", "100"));
+        long durationSeconds = Long.parseLong(options.getOrDefault("duration", "30"));
+        ScenarioMix mix = ScenarioMix.parse(options.getOrDefault("mix", "bursty:60,infinite-loop:10,interactive:30"));
+        long loopMillis = Long.parseLong(options.getOrDefault("loop-ms", "2000"));
+        String reportPath = options.getOrDefault("report", "target/load-report.json");
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+        try (FakeRedisServer redis = new FakeRedisServer()) {
+            SimulatedRunner runner = new SimulatedRunner(redis, objectMapper, loopMillis);
+            try (FakeSqsServer sqs = new FakeSqsServer(objectMapper, runner::submit)) {
+                appArgs.add("--spring.data.redis.port=" + redis.port());
+                appArgs.add("--aws.sqs.endpoint=" + sqs.endpoint());
+                appArgs.add("--aws.sqs.queue-url=" + sqs.queueUrl("java"));
+                appArgs.add("--aws.sqs.cpp-queue-url=" + sqs.queueUrl("cpp"));
+                appArgs.add("--aws.sqs.python-queue-url=" + sqs.queueUrl("python"));
+
+                ConfigurableApplicationContext app = SpringApplication.run(WebsocketApplication.class,
+                        appArgs.toArray(String[]::new));
+                try {
+                    int port = ((WebServerApplicationContext) app).getWebServer().getPort();
+                    MeterRegistry registry = app.getBean(MeterRegistry.class);
+
+                    System.gc();
+                    long heapBefore = memory.getHeapMemoryUsage().getUsed();
+                    AtomicLong heapPeak = new AtomicLong(heapBefore);
+                    ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+                    sampler.scheduleAtFixedRate(() -> heapPeak.accumulateAndGet(
+                            memory.getHeapMemoryUsage().getUsed(), Math::max), 0, 100, TimeUnit.MILLISECONDS);
+
+                    LoadStats stats = new LoadStats();
+                    System.out.printf("Load test: %d clients for %d s against ws://127.0.0.1:%d/ws, mix %s%n",
+                            clients, durationSeconds, port, mix.weights());
+                    long start = System.nanoTime();
+                    long deadline = start + TimeUnit.SECONDS.toNanos(durationSeconds);
+                    HttpClient httpClient = HttpClient.newHttpClient();
+                    try (ExecutorService clientThreads = Executors.newVirtualThreadPerTaskExecutor()) {
+                        for (int i = 0; i < clients; i++) {
+                            clientThreads.execute(new LoadClient(httpClient, URI.create("ws://127.0.0.1:" + port + "/ws"),
+                                    objectMapper, stats, mix, deadline));
+                        }
+                    }
+                    double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+                    sampler.shutdownNow();
+
+                    System.gc();
+                    long heapAfter = memory.getHeapMemoryUsage().getUsed();
+
+                    Map<String, Object> report = report(stats, registry, runner, redis, sqs, elapsedSeconds,
+                            heapBefore, heapPeak.get(), heapAfter);
+                    print(report);
+                    File file = new File(reportPath);
+                    if (file.getParentFile() != null) file.getParentFile().mkdirs();
+                    objectMapper.enable(SerializationFeature.INDENT_OUTPUT).writeValue(file, report);
+                    System.out.println("Report written to " + file.getAbsolutePath());
+
+                    if (stats.completed() == 0) {
+                        System.exit(1);
+                    }
+                } finally {
+                    app.close();
+                }
+            }
+        }
+        System.exit(0);
+    }
+
+    // the fakes' addresses are added by main; everything else a local run needs
+    private static List<String> defaultAppArgs() {
+        return List.of(
+                "--server.port=0",
+                "--spring.data.redis.host=127.0.0.1",
+                "--spring.data.redis.ssl.enabled=false",
+                "--aws.region=us-east-1",
+                "--aws.access.key=fake",
+                "--aws.secret.key=fake",
+                // every client comes from 127.0.0.1: per-IP limits would measure the limiter
+                "--app.ws.admission.handshakes-per-minute=100000000",
+                "--app.ws.admission.handshake-burst=1000000",
+                "--app.ws.admission.runs-per-minute=100000000",
+                "--app.ws.admission.run-burst=1000000",
+                "--logging.level.root=WARN",
+                "--logging.level.com.compiler=WARN");
+    }
+
+    private static Map<String, Object> report(LoadStats stats, MeterRegistry registry, SimulatedRunner runner,
+                                              FakeRedisServer redis, FakeSqsServer sqs, double elapsedSeconds,
+                                              long heapBefore, long heapPeak, long heapAfter) {
+        Map<String, Object> report = new LinkedHashMap<>();
+
+        Map<String, Object> throughput = new LinkedHashMap<>();
+        throughput.put("seconds", round(elapsedSeconds));
+        throughput.put("runs_started", stats.started());
+        throughput.put("runs_completed", stats.completed());
+        throughput.put("runs_per_second", round(stats.completed() / elapsedSeconds));
+        throughput.put("frames_per_second", round(stats.frames() / elapsedSeconds));
+        throughput.put("mb_per_second", round(stats.bytes() / elapsedSeconds / (1 << 20)));
+        throughput.put("jobs_submitted_to_sqs", sqs.received());
+        throughput.put("redis_publishes", redis.published());
+        report.put("throughput", throughput);
+
+        Map<String, Object> latency = new LinkedHashMap<>();
+        latency.put("time_to_first_output", percentiles(stats.firstOutput()));
+        for (Map.Entry<Scenario, Histogram> entry : stats.completion().entrySet()) {
+            if (entry.getValue().getTotalCount() > 0) {
+                latency.put("completion_" + entry.getKey().name().toLowerCase(Locale.ROOT), percentiles(entry.getValue()));
+            }
+        }
+        report.put("latency_ms", latency);
+
+        Map<String, Object> heap = new LinkedHashMap<>();
+        heap.put("before_mb", round(heapBefore / 1048576.0));
+        heap.put("peak_mb", round(heapPeak / 1048576.0));
+        heap.put("after_gc_mb", round(heapAfter / 1048576.0));
+        heap.put("growth_mb", round((heapAfter - heapBefore) / 1048576.0));
+        report.put("heap", heap);
+
+        Map<String, Object> drops = new LinkedHashMap<>();
+        for (Counter counter : registry.find("jobs.output.dropped").counters()) {
+            drops.put("output_" + counter.getId().getTag("reason"), (long) counter.count());
+        }
+        drops.put("output_elided_bytes", (long) registry.find("jobs.output.elided.bytes").counters().stream()
+                .mapToDouble(Counter::count).sum());
+        drops.put("send_failures", (long) registry.find("jobs.output.send.failures").counters().stream()
+                .mapToDouble(Counter::count).sum());
+        drops.put("handshakes_rejected", (long) registry.find("ws.admission.rejected").counters().stream()
+                .mapToDouble(Counter::count).sum());
+        drops.put("connect_failures", stats.connectFailures());
+        drops.put("runs_failed", stats.failed());
+        report.put("drops", drops);
+
+        report.put("runs_ended", stats.ended());
+        report.put("runners_still_running", runner.running());
+        return report;
+    }
+
+    private static Map<String, Object> percentiles(Histogram histogram) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("count", histogram.getTotalCount());
+        values.put("p50", round(histogram.getValueAtPercentile(50) / 1000.0));
+        values.put("p99", round(histogram.getValueAtPercentile(99) / 1000.0));
+        values.put("p999", round(histogram.getValueAtPercentile(99.9) / 1000.0));
+        values.put("max", round(histogram.getMaxValue() / 1000.0));
+        return values;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void print(Map<String, Object> report) {
+        for (Map.Entry<String, Object> section : report.entrySet()) {
+            if (section.getValue() instanceof Map<?, ?> values) {
+                System.out.println(section.getKey());
+                for (Map.Entry<String, Object> value : ((Map<String, Object>) values).entrySet()) {
+                    System.out.printf("  %-24s %s%n", value.getKey(), value.getValue());
+                }
+            } else {
+                System.out.printf("%-26s %s%n", section.getKey(), section.getValue());
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.compiler.websocket.loadtest;
+
+import com.compiler.websocket.loadtest.SimulatedRunner.Scenario;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * What the clients saw. Latencies go to HdrHistogram recorders in microseconds, so p999 keeps
+ * three significant digits at any run count; counters are LongAdders since every client writes them.
+ */
+final class LoadStats {
+
+    private final Recorder firstOutput = new Recorder(3);
+    private final Map<Scenario, Recorder> completion = new EnumMap<>(Scenario.class);
+    private final Map<String, LongAdder> ended = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> failed = new ConcurrentHashMap<>();
+    private final LongAdder started = new LongAdder();
+    private final LongAdder connectFailures = new LongAdder();
+    private final LongAdder frames = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+
+    LoadStats() {
+        for (Scenario scenario : Scenario.values()) {
+            completion.put(scenario, new Recorder(3));
+        }
+    }
+
+    void runStarted() {
+        started.increment();
+    }
+
+    void connectFailed() {
+        connectFailures.increment();
+    }
+
+    void frame(int size) {
+        frames.increment();
+        bytes.add(size);
+    }
+
+    void firstOutput(long nanos) {
+        firstOutput.recordValue(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    void runEnded(Scenario scenario, String type, long nanos) {
+        completion.get(scenario).recordValue(TimeUnit.NANOSECONDS.toMicros(nanos));
+        ended.computeIfAbsent(scenario.name() + " " + type, k -> new LongAdder()).increment();
+    }
+
+    void runFailed(Scenario scenario, String reason) {
+        failed.computeIfAbsent(scenario.name() + " " + reason, k -> new LongAdder()).increment();
+    }
+
+    long started() {
+        return started.sum();
+    }
+
+    long connectFailures() {
+        return connectFailures.sum();
+    }
+
+    long frames() {
+        return frames.sum();
+    }
+
+    long bytes() {
+        return bytes.sum();
+    }
+
+    Map<String, Long> ended() {
+        return sums(ended);
+    }
+
+    Map<String, Long> failed() {
+        return sums(failed);
+    }
+
+    long completed() {
+        return ended().values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    Histogram firstOutput() {
+        return firstOutput.getIntervalHistogram();
+    }
+
+    Map<Scenario, Histogram> completion() {
+        Map<Scenario, Histogram> histograms = new EnumMap<>(Scenario.class);
+        completion.forEach((scenario, recorder) -> histograms.put(scenario, recorder.getIntervalHistogram()));
+        return histograms;
+    }
+
+    private static Map<String, Long> sums(Map<String, LongAdder> adders) {
+        Map<String, Long> sums = new TreeMap<>();
+        adders.forEach((key, adder) -> sums.put(key, adder.sum()));
+        return sums;
+    }
+}
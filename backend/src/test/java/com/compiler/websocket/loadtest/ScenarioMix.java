@@ -0,0 +1,41 @@
+package com.compiler.websocket.loadtest;
+
+import com.compiler.websocket.loadtest.SimulatedRunner.Scenario;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Weighted choice of scenario per run, parsed from {@code mix=bursty:60,infinite-loop:10,interactive:30}.
+ */
+record ScenarioMix(Map<Scenario, Integer> weights, int total) {
+
+    static ScenarioMix parse(String spec) {
+        Map<Scenario, Integer> weights = new EnumMap<>(Scenario.class);
+        int total = 0;
+        for (String part : spec.split(",")) {
+            String[] nameAndWeight = part.trim().split(":");
+            Scenario scenario = Scenario.valueOf(nameAndWeight[0].toUpperCase(Locale.ROOT).replace('-', '_'));
+            int weight = nameAndWeight.length > 1 ? Integer.parseInt(nameAndWeight[1]) : 1;
+            if (weight > 0) {
+                weights.put(scenario, weight);
+                total += weight;
+            }
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("Empty scenario mix: " + spec);
+        }
+        return new ScenarioMix(weights, total);
+    }
+
+    Scenario pick(Random random) {
+        int ticket = random.nextInt(total);
+        for (Map.Entry<Scenario, Integer> entry : weights.entrySet()) {
+            ticket -= entry.getValue();
+            if (ticket < 0) return entry.getKey();
+        }
+        throw new IllegalStateException("unreachable");
+    }
+}
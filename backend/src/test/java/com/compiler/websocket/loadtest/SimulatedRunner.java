@@ -0,0 +1,203 @@
+package com.compiler.websocket.loadtest;
+
+import com.compiler.websocket.messaging.ChannelNaming;
+import com.compiler.websocket.model.RedisPublisherPayload;
+import com.compiler.websocket.model.SqsPayload;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stands in for the language runners: takes jobs from the fake SQS, publishes output on
+ * {@code job:<id>} the way the runners format it and reads {@code input:<id>}.
+ * <p>
+ * The source code picks the behaviour with a {@code // load:<scenario>} line, see {@link Scenario}.
+ * OUTPUT_PAUSE_EVENT/OUTPUT_RESUME_EVENT are honoured like a real runner stops reading the pty,
+ * and SESSION_CLOSED_EVENT kills the job.
+ */
+final class SimulatedRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(SimulatedRunner.class);
+
+    enum Scenario {
+        /** Bursts of lines with short pauses in between, then exit 0. */
+        BURSTY,
+        /** Prints as fast as the pty allows until the runner's time limit terminates it. */
+        INFINITE_LOOP,
+        /** Prompts, waits for a line of input and echoes it, a few times over. */
+        INTERACTIVE;
+
+        static Scenario of(String source) {
+            int at = source.indexOf("// load:");
+            if (at < 0) return BURSTY;
+            String name = source.substring(at + "// load:".length()).split("\\s", 2)[0];
+            return valueOf(name.toUpperCase(Locale.ROOT).replace('-', '_'));
+        }
+
+        String marker() {
+            return "// load:" + name().toLowerCase(Locale.ROOT).replace('_', '-');
+        }
+    }
+
+    private final FakeRedisServer redis;
+    private final ObjectMapper objectMapper;
+    private final long loopMillis;
+    private final AtomicInteger running = new AtomicInteger();
+
+    SimulatedRunner(FakeRedisServer redis, ObjectMapper objectMapper, long loopMillis) {
+        this.redis = redis;
+        this.objectMapper = objectMapper;
+        this.loopMillis = loopMillis;
+    }
+
+    int running() {
+        return running.get();
+    }
+
+    /** An SQS message body: an SqsPayload as SqsBatchPublisher serialises it. */
+    void submit(String body) {
+        SqsPayload payload;
+        try {
+            payload = objectMapper.readValue(body, SqsPayload.class);
+        } catch (JsonProcessingException e) {
+            logger.warn("Simulated runner got an unreadable job: {}", e.getMessage());
+            return;
+        }
+        Thread.ofVirtual().name("runner-" + payload.getJob_id()).start(() -> run(payload));
+    }
+
+    private void run(SqsPayload payload) {
+        Job job = new Job(payload.getJob_id());
+        String inputChannel = ChannelNaming.inputChannel(job.id);
+        redis.subscribeLocal(inputChannel, job::onEvent);
+        running.incrementAndGet();
+        long start = System.nanoTime();
+        try {
+            switch (Scenario.of(payload.getSource_code())) {
+                case BURSTY -> bursty(job);
+                case INFINITE_LOOP -> infiniteLoop(job, start);
+                case INTERACTIVE -> interactive(job);
+            }
+            if (!job.killed && !job.terminated) {
+                end(job, "COMPLETION", 0, null, start);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            redis.unsubscribeLocal(inputChannel);
+            running.decrementAndGet();
+        }
+    }
+
+    private void bursty(Job job) throws InterruptedException {
+        String padding = "x".repeat(48);
+        for (int burst = 0; burst < 20 && !job.killed; burst++) {
+            for (int line = 0; line < 50 && !job.killed; line++) {
+                output(job, "STDOUT", "burst " + burst + " line " + line + " " + padding + "\r\n");
+            }
+            Thread.sleep(20);
+        }
+    }
+
+    private void infiniteLoop(Job job, long start) throws InterruptedException {
+        StringBuilder chunk = new StringBuilder(4096);
+        long iteration = 0;
+        while (!job.killed && System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(loopMillis)) {
+            chunk.setLength(0);
+            while (chunk.length() < 4000) {
+                chunk.append("iteration ").append(iteration++).append("\r\n");
+            }
+            output(job, "STDOUT", chunk.toString());
+            // about what a pty read loop delivers: one 4 KB read per millisecond
+            Thread.sleep(1);
+        }
+        if (!job.killed) {
+            end(job, "TERMINATION", 137, "Time limit exceeded", start);
+        }
+    }
+
+    private void interactive(Job job) throws InterruptedException {
+        for (int round = 0; round < 3 && !job.killed; round++) {
+            output(job, "STDOUT", "Enter a number: ");
+            String line = job.input.poll(30, TimeUnit.SECONDS);
+            if (line == null || job.killed) return;
+            output(job, "STDOUT", line.trim() + "\r\nYou entered " + line.trim() + "\r\n");
+        }
+    }
+
+    private void output(Job job, String type, String content) throws InterruptedException {
+        job.awaitResumed();
+        Map<String, Object> message = new LinkedHashMap<>();
+        message.put("job_id", job.id);
+        message.put("type", type);
+        message.put("content", content);
+        publish(job, message);
+    }
+
+    private void end(Job job, String type, int exitCode, String reason, long start) {
+        Map<String, Object> content = new LinkedHashMap<>();
+        content.put("exitCode", exitCode);
+        if (reason != null) content.put("reason", reason);
+        content.put("metrics", Map.of("executionTime", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+        Map<String, Object> message = new LinkedHashMap<>();
+        message.put("job_id", job.id);
+        message.put("type", type);
+        message.put("content", content);
+        job.terminated = true;
+        publish(job, message);
+    }
+
+    private void publish(Job job, Map<String, Object> message) {
+        try {
+            redis.publish(ChannelNaming.jobChannel(job.id), objectMapper.writeValueAsString(message));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private final class Job {
+        final String id;
+        final BlockingQueue<String> input = new LinkedBlockingQueue<>();
+        volatile boolean paused;
+        volatile boolean killed;
+        volatile boolean terminated;
+
+        Job(String id) {
+            this.id = id;
+        }
+
+        void onEvent(String message) {
+            try {
+                RedisPublisherPayload event = objectMapper.readValue(message, RedisPublisherPayload.class);
+                switch (event.getEvent_type()) {
+                    case "INPUT_EVENT" -> input.add(event.getContent());
+                    case "OUTPUT_PAUSE_EVENT" -> paused = true;
+                    case "OUTPUT_RESUME_EVENT" -> paused = false;
+                    case "SESSION_CLOSED_EVENT" -> {
+                        killed = true;
+                        input.add("");
+                    }
+                    default -> logger.debug("Simulated runner ignores {}", event.getEvent_type());
+                }
+            } catch (JsonProcessingException e) {
+                logger.warn("Simulated runner got an unreadable event: {}", e.getMessage());
+            }
+        }
+
+        // a paused runner simply stops reading the program's output
+        void awaitResumed() throws InterruptedException {
+            while (paused && !killed) {
+                Thread.sleep(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.compiler.websocket.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cold start of the packaged backend in each launch mode: time from process start until
+ * {@code /health} answers 200, and the process's RSS at that moment. The app runs against
+ * {@link FakeRedisServer} and {@link FakeSqsServer}, so nothing else has to be up.
+ * <p>
+ * {@code mvn -Pfast-start,startup verify [-Dstartup.args="runs=10 modes=jar,aot-cds"]}
+ * <p>
+ * Modes: {@code jar} (the fat jar as built), {@code cds} (extracted jar with the CDS archive),
+ * {@code aot-cds} (the same plus Spring AOT) and {@code native} (the native image, after
+ * {@code -Pnative native:compile}). Modes whose artifacts are missing are skipped.
+ * Other arguments: runs (per mode), dir and name (build directory and final name), report (JSON file).
+ */
+public final class StartupBenchmark {
+
+    private static final Duration READY_TIMEOUT = Duration.ofSeconds(60);
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.contains("=")) {
+                options.put(arg.substring(0, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        int runs = Integer.parseInt(options.getOrDefault("runs", "5"));
+        List<String> modes = List.of(options.getOrDefault("modes", "jar,cds,aot-cds,native").split(","));
+        Path dir = Path.of(options.getOrDefault("dir", "target"));
+        String name = options.getOrDefault("name", "cloudcompiler_live-backend-websocket");
+        String reportPath = options.getOrDefault("report", dir.resolve("startup-report.json").toString());
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+        Map<String, Object> report = new LinkedHashMap<>();
+
+        try (FakeRedisServer redis = new FakeRedisServer();
+             FakeSqsServer sqs = new FakeSqsServer(objectMapper, body -> { })) {
+            for (String mode : modes) {
+                List<String> command = command(mode, dir, name);
+                if (command == null) {
+                    System.out.printf("%-8s skipped, not built%n", mode);
+                    continue;
+                }
+                long[] readyMillis = new long[runs];
+                long[] rssKb = new long[runs];
+                for (int run = 0; run < runs; run++) {
+                    int port = freePort();
+                    List<String> full = new ArrayList<>(command);
+                    full.addAll(appArgs(port, redis, sqs));
+                    long[] sample = start(full, port, httpClient, dir.resolve("startup-" + mode + ".log"));
+                    readyMillis[run] = sample[0];
+                    rssKb[run] = sample[1];
+                }
+                Map<String, Object> result = new LinkedHashMap<>();
+                result.put("runs", runs);
+                result.put("ready_ms_median", median(readyMillis));
+                result.put("ready_ms_min", Arrays.stream(readyMillis).min().orElse(0));
+                result.put("rss_mb_median", round(median(rssKb) / 1024.0));
+                report.put(mode, result);
+                System.out.printf("%-8s ready p50 %5d ms, min %5d ms, rss p50 %6.1f MB%n", mode,
+                        median(readyMillis), result.get("ready_ms_min"), median(rssKb) / 1024.0);
+            }
+        }
+
+        File file = new File(reportPath);
+        if (file.getParentFile() != null) file.getParentFile().mkdirs();
+        objectMapper.enable(SerializationFeature.INDENT_OUTPUT).writeValue(file, report);
+        System.out.println("Report written to " + file.getAbsolutePath());
+        System.exit(report.isEmpty() ? 1 : 0);
+    }
+
+    // how to launch each mode from the build directory, null when its artifacts are missing
+    private static List<String> command(String mode, Path dir, String name) {
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        Path jar = dir.resolve(name + ".jar");
+        Path extracted = dir.resolve("fast-start").resolve(name + ".jar");
+        Path archive = dir.resolve("fast-start").resolve("app.jsa");
+        return switch (mode) {
+            case "jar" -> Files.exists(jar) ? List.of(java, "-jar", jar.toString()) : null;
+            case "cds" -> Files.exists(archive)
+                    ? List.of(java, "-XX:SharedArchiveFile=" + archive, "-Xlog:cds=off", "-jar", extracted.toString())
+                    : null;
+            case "aot-cds" -> Files.exists(archive)
+                    ? List.of(java, "-XX:SharedArchiveFile=" + archive, "-Xlog:cds=off", "-Dspring.aot.enabled=true",
+                            "-jar", extracted.toString())
+                    : null;
+            case "native" -> Files.isExecutable(dir.resolve(name)) ? List.of(dir.resolve(name).toString()) : null;
+            default -> throw new IllegalArgumentException("Unknown mode " + mode);
+        };
+    }
+
+    private static List<String> appArgs(int port, FakeRedisServer redis, FakeSqsServer sqs) {
+        return List.of(
+                "--server.port=" + port,
+                "--spring.data.redis.host=127.0.0.1",
+                "--spring.data.redis.port=" + redis.port(),
+                "--spring.data.redis.ssl.enabled=false",
+                "--aws.region=us-east-1",
+                "--aws.access.key=fake",
+                "--aws.secret.key=fake",
+                "--aws.sqs.endpoint=" + sqs.endpoint(),
+                "--aws.sqs.queue-url=" + sqs.queueUrl("java"),
+                "--aws.sqs.cpp-queue-url=" + sqs.queueUrl("cpp"),
+                "--aws.sqs.python-queue-url=" + sqs.queueUrl("python"),
+                "--logging.level.root=WARN");
+    }
+
+    /** Starts the app, waits for /health and stops it again; returns {ready ms, RSS kB}. */
+    private static long[] start(List<String> command, int port, HttpClient httpClient, Path log) throws Exception {
+        HttpRequest health = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + "/health"))
+                .timeout(Duration.ofSeconds(1))
+                .build();
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(log.toFile())
+                .start();
+        try {
+            long deadline = start + READY_TIMEOUT.toNanos();
+            while (System.nanoTime() < deadline) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException("Exited with " + process.exitValue() + " before ready, see " + log);
+                }
+                try {
+                    if (httpClient.send(health, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                        long readyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                        return new long[] {readyMillis, rssKb(process.pid())};
+                    }
+                } catch (ConnectException e) {
+                    // not listening yet
+                }
+                Thread.sleep(5);
+            }
+            throw new IllegalStateException("Not ready after " + READY_TIMEOUT + ", see " + log);
+        } finally {
+            process.destroy();
+            if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        }
+    }
+
+    // VmRSS from procfs on Linux, ps elsewhere
+    private static long rssKb(long pid) throws IOException, InterruptedException {
+        Path status = Path.of("/proc", Long.toString(pid), "status");
+        if (Files.exists(status)) {
+            for (String line : Files.readAllLines(status)) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("\\D", ""));
+                }
+            }
+        }
+        Process ps = new ProcessBuilder("ps", "-o", "rss=", "-p", Long.toString(pid)).start();
+        String rss = new String(ps.getInputStream().readAllBytes()).trim();
+        ps.waitFor();
+        return rss.isEmpty() ? 0 : Long.parseLong(rss);
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+}
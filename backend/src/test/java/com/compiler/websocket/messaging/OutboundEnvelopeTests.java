@@ -0,0 +1,89 @@
+package com.compiler.websocket.messaging;
+
+import com.compiler.websocket.model.OutboundType;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OutboundEnvelopeTests {
+
+	private final JsonFactory jsonFactory = new ObjectMapper().getFactory();
+
+	@Test
+	void bytesAreClassifiedLikeTheStringAndForwardedAsABinaryFrame() {
+		String payload = "{\"seq\":\"5-1\",\"job_id\":\"j1\",\"type\":\"STDOUT\",\"content\":\"héllo → wörld\\n\"}";
+		byte[] body = payload.getBytes(StandardCharsets.UTF_8);
+
+		OutboundEnvelope fromBytes = OutboundEnvelope.parse(jsonFactory, body);
+		OutboundEnvelope fromString = OutboundEnvelope.parse(jsonFactory, payload);
+
+		assertThat(fromBytes.type()).isEqualTo(fromString.type()).isEqualTo(OutboundType.STDOUT);
+		assertThat(fromBytes.content()).isEqualTo(fromString.content()).isEqualTo("héllo → wörld\n");
+		assertThat(fromBytes.seq()).isEqualTo("5-1");
+		assertThat(fromBytes.frame()).isInstanceOf(BinaryMessage.class);
+		assertThat(fromBytes.payload()).isEqualTo(payload);
+		assertThat(fromBytes.sizeBytes()).isEqualTo(body.length);
+	}
+
+	@Test
+	void sizeAndPayloadDoNotDependOnTheBufferHavingBeenSent() {
+		byte[] body = "{\"job_id\":\"j1\",\"type\":\"COMPLETION\",\"content\":{\"exitCode\":0}}".getBytes(StandardCharsets.UTF_8);
+		OutboundEnvelope envelope = OutboundEnvelope.parse(jsonFactory, body);
+
+		BinaryMessage frame = (BinaryMessage) envelope.frame();
+		frame.getPayload().position(body.length);
+
+		assertThat(envelope.type()).isEqualTo(OutboundType.COMPLETION);
+		assertThat(envelope.sizeBytes()).isEqualTo(body.length);
+		assertThat(envelope.payload()).isEqualTo(new String(body, StandardCharsets.UTF_8));
+	}
+
+	@Test
+	void invalidUtf8TakesTheStringPath() {
+		byte[] body = "{\"job_id\":\"j1\",\"type\":\"STDOUT\",\"content\":\"?\"}".getBytes(StandardCharsets.UTF_8);
+		body[body.length - 3] = (byte) 0xC3;
+
+		OutboundEnvelope envelope = OutboundEnvelope.parse(jsonFactory, body);
+
+		assertThat(envelope.frame()).isInstanceOf(TextMessage.class);
+		assertThat(envelope.type()).isEqualTo(OutboundType.STDOUT);
+		assertThat(envelope.content()).isEqualTo("�");
+	}
+
+	@Test
+	void malformedBytesAreForwardedAsUnknown() {
+		byte[] body = "{\"type\":\"STDOUT\",".getBytes(StandardCharsets.UTF_8);
+
+		OutboundEnvelope envelope = OutboundEnvelope.parse(jsonFactory, body);
+
+		assertThat(envelope.type()).isEqualTo(OutboundType.UNKNOWN);
+		assertThat(envelope.isMergeable()).isFalse();
+		assertThat(envelope.frame()).isInstanceOf(BinaryMessage.class);
+	}
+
+	@Test
+	void seqOrderingIsTotalOverMalformedIds() {
+		assertThat(OutboundEnvelope.isAfter("5-2", "5-1")).isTrue();
+		assertThat(OutboundEnvelope.isAfter("5-1", "5-1")).isFalse();
+		assertThat(OutboundEnvelope.isAfter("4-9", "5-0")).isFalse();
+		assertThat(OutboundEnvelope.isAfter("5-0", null)).isTrue();
+
+		assertThat(OutboundEnvelope.isAfter("5-1", "42")).isTrue();
+		assertThat(OutboundEnvelope.isAfter("garbage", "5-1")).isTrue();
+		assertThat(OutboundEnvelope.isAfter("5-1", "-")).isTrue();
+		assertThat(OutboundEnvelope.isAfter("5-1", "99999999999999999999-0")).isTrue();
+
+		assertThat(OutboundEnvelope.isValidSeq("1700000000000-0")).isTrue();
+		assertThat(OutboundEnvelope.isValidSeq("42")).isFalse();
+		assertThat(OutboundEnvelope.isValidSeq("5-")).isFalse();
+		assertThat(OutboundEnvelope.isValidSeq("-5")).isFalse();
+		assertThat(OutboundEnvelope.isValidSeq("5-+1")).isFalse();
+		assertThat(OutboundEnvelope.isValidSeq(null)).isFalse();
+	}
+}
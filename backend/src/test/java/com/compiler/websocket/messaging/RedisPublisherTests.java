@@ -0,0 +1,98 @@
+package com.compiler.websocket.messaging;
+
+import com.compiler.websocket.model.RedisPublisherPayload;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RedisPublisherTests {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+	private final ManualRedis redis = new ManualRedis();
+	private final RedisPublisher publisher = new RedisPublisher(redis, objectMapper, registry);
+
+	@Test
+	void inputArrivingWhileAPublishIsInFlightIsMergedIntoTheNextOne() throws Exception {
+		CompletableFuture<Long> first = publisher.publishInput("input:j1", "a");
+		CompletableFuture<Long> second = publisher.publishInput("input:j1", "b");
+		CompletableFuture<Long> third = publisher.publishInput("input:j1", "c");
+		assertThat(redis.sent).hasSize(1);
+
+		redis.replies.get(0).complete(1L);
+		assertThat(first.get(1, TimeUnit.SECONDS)).isEqualTo(1L);
+		assertThat(redis.sent).hasSize(2);
+		assertThat(objectMapper.readTree(redis.sent.get(1)).get("content").asText()).isEqualTo("bc");
+		assertThat(second).isSameAs(third).isNotDone();
+
+		redis.replies.get(1).complete(1L);
+		assertThat(third.get(1, TimeUnit.SECONDS)).isEqualTo(1L);
+
+		// nothing in flight any more: the next keystroke goes straight out
+		publisher.publishInput("input:j1", "d");
+		assertThat(redis.sent).hasSize(3);
+	}
+
+	@Test
+	void channelIsForgottenOnceNothingIsLeftToSend() {
+		for (int i = 0; i < 100; i++) {
+			publisher.publishInput("input:job-" + i, "x");
+			redis.replies.get(i).complete(1L);
+		}
+
+		assertThat(publisher.pendingChannels()).isZero();
+	}
+
+	@Test
+	void inputWaitingWhenTheSessionClosesIsDropped() throws Exception {
+		publisher.publishInput("input:j3", "a");
+		CompletableFuture<Long> merged = publisher.publishInput("input:j3", "b");
+
+		publisher.publishSessionCloseEvent("input:j3", RedisPublisherPayload.builder().event_type("SESSION_CLOSED_EVENT").build());
+		assertThat(merged).isCancelled();
+		redis.replies.get(0).complete(1L);
+
+		// the in-flight INPUT_EVENT and SESSION_CLOSED, nothing after it
+		assertThat(redis.sent).hasSize(2);
+		assertThat(objectMapper.readTree(redis.sent.get(1)).get("event_type").asText()).isEqualTo("SESSION_CLOSED_EVENT");
+		assertThat(publisher.pendingChannels()).isZero();
+	}
+
+	@Test
+	void failuresAreReportedToTheCallerAndCounted() {
+		CompletableFuture<Long> input = publisher.publishInput("input:j2", "x");
+		redis.replies.get(0).completeExceptionally(new IllegalStateException("connection lost"));
+
+		assertThatThrownBy(() -> input.get(1, TimeUnit.SECONDS)).hasMessageContaining("connection lost");
+		assertThat(registry.get("redis.publish.failures").tag("event", "INPUT_EVENT").counter().count()).isEqualTo(1);
+	}
+
+	private static final class ManualRedis extends ReactiveStringRedisTemplate {
+		final List<String> sent = new ArrayList<>();
+		final List<CompletableFuture<Long>> replies = new ArrayList<>();
+
+		ManualRedis() {
+			super(new LettuceConnectionFactory());
+		}
+
+		@Override
+		public Mono<Long> convertAndSend(String channel, String message) {
+			CompletableFuture<Long> reply = new CompletableFuture<>();
+			return Mono.fromRunnable(() -> {
+				sent.add(message);
+				replies.add(reply);
+			}).then(Mono.fromFuture(reply));
+		}
+	}
+}
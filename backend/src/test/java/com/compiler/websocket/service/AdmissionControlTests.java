@@ -0,0 +1,57 @@
+package com.compiler.websocket.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static com.compiler.websocket.service.AdmissionControl.Decision.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdmissionControlTests {
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	// 2 sessions, 3 tracked clients, 1 handshake/min with a burst of 2, 1 run/min with a burst of 1
+	private final AdmissionControl admission = new AdmissionControl(registry, 2, 3, 1, 2, 1, 1, 60_000);
+
+	@Test
+	void limitsHandshakesPerClientAndSessionsPerNode() {
+		assertThat(admission.admit("10.0.0.1")).isEqualTo(ADMITTED);
+		assertThat(admission.admit("10.0.0.1")).isEqualTo(ADMITTED);
+		assertThat(admission.admit("10.0.0.1")).isEqualTo(RATE_LIMITED);
+		assertThat(admission.retryAfterSeconds("10.0.0.1")).isBetween(1L, 60L);
+
+		assertThat(admission.open()).isTrue();
+		assertThat(admission.open()).isTrue();
+		assertThat(admission.open()).isFalse();
+		assertThat(admission.admit("10.0.0.2")).isEqualTo(OVERLOADED);
+
+		admission.release();
+		assertThat(admission.admit("10.0.0.3")).isEqualTo(ADMITTED);
+
+		assertThat(registry.get("ws.admission.rejected").tag("reason", "rate_limited").counter().count()).isEqualTo(1);
+		assertThat(registry.get("ws.admission.rejected").tag("reason", "session_cap").counter().count()).isEqualTo(2);
+	}
+
+	@Test
+	void clientTableIsBoundedAndIdleClientsAreSwept() throws Exception {
+		AdmissionControl fast = new AdmissionControl(registry, 100, 2, 60_000, 1, 1, 1, 60_000);
+		assertThat(fast.admit("a")).isEqualTo(ADMITTED);
+		assertThat(fast.admit("b")).isEqualTo(ADMITTED);
+		assertThat(fast.admit("c")).isEqualTo(OVERLOADED);
+
+		// one token per millisecond: both buckets are full again
+		Thread.sleep(5);
+		fast.sweep();
+		assertThat(fast.trackedClients()).isZero();
+		assertThat(fast.admit("c")).isEqualTo(ADMITTED);
+	}
+
+	@Test
+	void limitsRunsPerSession() {
+		AdmissionControl.Bucket runs = admission.newRunBucket();
+		assertThat(admission.tryRun(runs)).isTrue();
+		assertThat(admission.tryRun(runs)).isFalse();
+		assertThat(admission.tryRun(admission.newRunBucket())).isTrue();
+		assertThat(registry.get("ws.admission.runs.rejected").counter().count()).isEqualTo(1);
+	}
+}
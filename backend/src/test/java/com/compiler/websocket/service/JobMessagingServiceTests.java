@@ -0,0 +1,344 @@
+package com.compiler.websocket.service;
+
+import com.compiler.websocket.messaging.JobChannelSubscriptions;
+import com.compiler.websocket.messaging.OutboundEnvelope;
+import com.compiler.websocket.model.OutboundType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+class JobMessagingServiceTests {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	private final TranscriptStore transcriptStore = mock(TranscriptStore.class);
+
+	private JobMessagingService service(DispatchMode mode) {
+		return service(mode, new JobDeadlines(registry, 10, 64, 0, 0, 0));
+	}
+
+	private JobMessagingService service(DispatchMode mode, JobDeadlines deadlines) {
+		return service(mode, deadlines, new DrainFairness(registry, 16384, 4, 0.25, 2000));
+	}
+
+	private JobMessagingService service(DispatchMode mode, JobDeadlines deadlines, DrainFairness fairness) {
+		MemoryGovernor governor = new MemoryGovernor(registry, 1 << 20, 1 << 16, 1 << 12, 1 << 20,
+				MemoryGovernor.OverflowPolicy.DROP_NEWEST, 0);
+		return service(mode, deadlines, fairness, governor, mock(OutputFlowControl.class));
+	}
+
+	private JobMessagingService service(DispatchMode mode, JobDeadlines deadlines, DrainFairness fairness,
+			MemoryGovernor governor, OutputFlowControl flowControl) {
+		OutputCoalescer coalescer = new OutputCoalescer(objectMapper, registry, 0, 16384);
+		return new JobMessagingService(mock(JobChannelSubscriptions.class), coalescer, governor,
+				flowControl, new JobMetrics(registry), deadlines,
+				new OutputBudget(objectMapper, registry, new StandardEnvironment()), fairness, transcriptStore, objectMapper, mode, 4);
+	}
+
+	private OutboundEnvelope stdout(String content) {
+		return OutboundEnvelope.parse(objectMapper.getFactory(),
+				"{\"job_id\":\"j\",\"type\":\"STDOUT\",\"content\":\"" + content + "\"}");
+	}
+
+	private OutboundEnvelope stderr(String content) {
+		return OutboundEnvelope.parse(objectMapper.getFactory(),
+				"{\"job_id\":\"j\",\"type\":\"STDERR\",\"content\":\"" + content + "\"}");
+	}
+
+	private WebSocketSession session(String id, CountDownLatch onSend, CountDownLatch release) throws Exception {
+		WebSocketSession session = mock(WebSocketSession.class);
+		when(session.getId()).thenReturn(id);
+		when(session.isOpen()).thenReturn(true);
+		doAnswer(invocation -> {
+			onSend.countDown();
+			release.await();
+			return null;
+		}).when(session).sendMessage(any(WebSocketMessage.class));
+		return session;
+	}
+
+	@Test
+	void stalledClientsDoNotDelayOtherJobsInVirtualMode() throws Exception {
+		JobMessagingService service = service(DispatchMode.VIRTUAL);
+		CountDownLatch stalledSends = new CountDownLatch(16);
+		CountDownLatch never = new CountDownLatch(1);
+		for (int i = 0; i < 16; i++) {
+			service.registerJob("slow-" + i, session("s" + i, stalledSends, never));
+			service.sendToJob("slow-" + i, stdout("x"));
+		}
+		assertThat(stalledSends.await(5, TimeUnit.SECONDS)).isTrue();
+
+		CountDownLatch fastSend = new CountDownLatch(1);
+		service.registerJob("fast", session("f", fastSend, new CountDownLatch(0)));
+		service.sendToJob("fast", stdout("y"));
+
+		assertThat(fastSend.await(1, TimeUnit.SECONDS)).isTrue();
+		never.countDown();
+	}
+
+	@Test
+	void noisyJobsTakeTurnsWithQuietOnes() throws Exception {
+		// about four frames per turn
+		JobMessagingService service = service(DispatchMode.PLATFORM, new JobDeadlines(registry, 10, 64, 0, 0, 0),
+				new DrainFairness(registry, 256, 4, 0.25, 2000));
+		// the platform pool runs two drains at a time: two slow clients of busy programs would hold both
+		CountDownLatch noisySends = new CountDownLatch(2);
+		AtomicInteger[] noisySent = {new AtomicInteger(), new AtomicInteger()};
+		for (int i = 0; i < 2; i++) {
+			AtomicInteger sent = noisySent[i];
+			WebSocketSession session = mock(WebSocketSession.class);
+			when(session.getId()).thenReturn("noisy-" + i);
+			when(session.isOpen()).thenReturn(true);
+			doAnswer(invocation -> {
+				noisySends.countDown();
+				Thread.sleep(10);
+				sent.incrementAndGet();
+				return null;
+			}).when(session).sendMessage(any(WebSocketMessage.class));
+			service.registerJob("noisy-" + i, session);
+			// alternating types are never merged: one frame per chunk, 200 frames = 2 s of sending
+			for (int line = 0; line < 200; line++) {
+				service.sendToJob("noisy-" + i, line % 2 == 0 ? stdout("x") : stderr("x"));
+			}
+		}
+		assertThat(noisySends.await(5, TimeUnit.SECONDS)).isTrue();
+
+		// ordering, not timing: what each noisy client had received when the quiet one got its line
+		int[] noisySentAtQuietSend = new int[2];
+		CountDownLatch quietSend = new CountDownLatch(1);
+		WebSocketSession quiet = mock(WebSocketSession.class);
+		when(quiet.getId()).thenReturn("q");
+		when(quiet.isOpen()).thenReturn(true);
+		doAnswer(invocation -> {
+			noisySentAtQuietSend[0] = noisySent[0].get();
+			noisySentAtQuietSend[1] = noisySent[1].get();
+			quietSend.countDown();
+			return null;
+		}).when(quiet).sendMessage(any(WebSocketMessage.class));
+		service.registerJob("quiet", quiet);
+		service.sendToJob("quiet", stdout("y"));
+
+		assertThat(quietSend.await(10, TimeUnit.SECONDS)).isTrue();
+		// without turns the quiet job would only run once a noisy job had sent all of its 200 frames
+		assertThat(noisySentAtQuietSend[0]).isLessThan(200);
+		assertThat(noisySentAtQuietSend[1]).isLessThan(200);
+		assertThat(registry.get("jobs.dispatcher.yields").counter().count()).isPositive();
+	}
+
+	@Test
+	void eventLoopsKeepEachJobsOutputInOrderAndSpreadJobs() throws Exception {
+		JobMessagingService service = service(DispatchMode.EVENT_LOOP);
+		int jobs = 16;
+		StringBuilder expected = new StringBuilder();
+		List<StringBuffer> received = new ArrayList<>();
+		for (int j = 0; j < jobs; j++) {
+			// chunks queued back to back may be coalesced: compare the content stream, not frames
+			StringBuffer content = new StringBuffer();
+			received.add(content);
+			WebSocketSession session = mock(WebSocketSession.class);
+			when(session.getId()).thenReturn("s" + j);
+			when(session.isOpen()).thenReturn(true);
+			doAnswer(invocation -> {
+				String payload = ((TextMessage) invocation.getArgument(0)).getPayload();
+				content.append(objectMapper.readTree(payload).path("content").asText());
+				return null;
+			}).when(session).sendMessage(any(WebSocketMessage.class));
+			service.registerJob("job-" + j, session);
+		}
+
+		for (int i = 0; i < 200; i++) {
+			expected.append(i).append(',');
+			for (int j = 0; j < jobs; j++) {
+				service.sendToJob("job-" + j, stdout(i + ","));
+			}
+		}
+
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (received.stream().anyMatch(content -> content.length() < expected.length()) && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+		for (StringBuffer content : received) {
+			assertThat(content.toString()).isEqualTo(expected.toString());
+		}
+		for (int loop = 0; loop < 4; loop++) {
+			assertThat(registry.get("jobs.dispatcher.loop.jobs").tag("loop", String.valueOf(loop)).gauge().value())
+					.isBetween(1.0, 7.0);
+		}
+	}
+
+	@Test
+	void idleSessionsAreClosedAndSilentRunsTerminated() throws Exception {
+		// 50 ms idle-before-run, no wall limit, 1 s without output
+		JobMessagingService service = service(DispatchMode.PLATFORM, new JobDeadlines(registry, 10, 64, 50, 0, 1000));
+
+		WebSocketSession idle = session("idle", new CountDownLatch(1), new CountDownLatch(0));
+		service.registerJob("idle-job", idle);
+		verify(idle, timeout(5000)).close(argThat(status -> "Idle timeout".equals(status.getReason())));
+
+		CountDownLatch terminated = new CountDownLatch(1);
+		WebSocketSession running = session("running", terminated, new CountDownLatch(0));
+		// a quote in the id must come out escaped in the TERMINATION the node writes itself
+		String runningJob = "running-\"job";
+		service.registerJob(runningJob, running);
+		service.jobStarted(runningJob, "java");
+		// output every 50 ms keeps the run alive for 1.5 s, past its first deadline; only a stall of
+		// nearly the whole deadline between two touches could end it early
+		for (int i = 0; i < 30; i++) {
+			Thread.sleep(50);
+			service.touch(runningJob);
+		}
+		assertThat(terminated.getCount()).isEqualTo(1);
+
+		assertThat(terminated.await(10, TimeUnit.SECONDS)).isTrue();
+		ArgumentCaptor<TextMessage> sent = ArgumentCaptor.forClass(TextMessage.class);
+		verify(running).sendMessage(sent.capture());
+		JsonNode termination = objectMapper.readTree(sent.getValue().getPayload());
+		assertThat(termination.get("type").asText()).isEqualTo("TERMINATION");
+		assertThat(termination.get("job_id").asText()).isEqualTo(runningJob);
+		assertThat(termination.at("/content/reason").asText()).startsWith("Runner stopped responding");
+		assertThat(termination.at("/content/exitCode").asInt()).isEqualTo(2);
+		assertThat(registry.get("jobs.timers.expired").tag("kind", "no_output").counter().count()).isEqualTo(1);
+	}
+
+	@Test
+	void serverAcksSkipTheOverflowPolicyAndTheTranscript() throws Exception {
+		// room for about two chunks: DROP_NEWEST discards output once the stuck client lets the queue fill
+		MemoryGovernor governor = new MemoryGovernor(registry, 1 << 20, 100, 100, 1 << 20,
+				MemoryGovernor.OverflowPolicy.DROP_NEWEST, 0);
+		JobMessagingService service = service(DispatchMode.PLATFORM, new JobDeadlines(registry, 10, 64, 0, 0, 0),
+				new DrainFairness(registry, 16384, 4, 0.25, 2000), governor, mock(OutputFlowControl.class));
+
+		CountDownLatch firstSend = new CountDownLatch(1);
+		CountDownLatch releaseClient = new CountDownLatch(1);
+		List<String> received = new CopyOnWriteArrayList<>();
+		WebSocketSession session = mock(WebSocketSession.class);
+		when(session.getId()).thenReturn("s");
+		when(session.isOpen()).thenReturn(true);
+		doAnswer(invocation -> {
+			firstSend.countDown();
+			releaseClient.await();
+			received.add(objectMapper.readTree(((TextMessage) invocation.getArgument(0)).getPayload()).path("type").asText());
+			return null;
+		}).when(session).sendMessage(any(WebSocketMessage.class));
+		service.registerJob("j", session);
+
+		service.sendToJob("j", stdout("first"));
+		assertThat(firstSend.await(5, TimeUnit.SECONDS)).isTrue();
+		for (int i = 0; i < 20; i++) {
+			service.sendToJob("j", stdout("chunk-" + i));
+		}
+		service.sendToJob("j", OutboundEnvelope.of(OutboundType.CONTROL,
+				"{\"type\":\"INPUT_RECEIVED\",\"content\":\"Input forwarded to job\",\"job_id\":\"j\"}"));
+		assertThat(registry.get("jobs.output.dropped").tag("reason", "budget").counter().count()).isPositive();
+
+		releaseClient.countDown();
+		verify(session, timeout(5000).atLeast(2)).sendMessage(any(WebSocketMessage.class));
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (!received.contains("INPUT_RECEIVED") && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+		assertThat(received).contains("INPUT_RECEIVED");
+
+		ArgumentCaptor<WebSocketMessage<?>> appended = ArgumentCaptor.forClass(WebSocketMessage.class);
+		verify(transcriptStore, atLeastOnce()).append(eq("j"), appended.capture());
+		assertThat(appended.getAllValues()).noneMatch(frame -> frame.getPayload().toString().contains("INPUT_RECEIVED"));
+	}
+
+	@Test
+	void pausePolicyHoldsOutputWithoutBlockingTheProducer() throws Exception {
+		// room for about two chunks in the queue, plenty in the hold
+		MemoryGovernor governor = new MemoryGovernor(registry, 1 << 20, 100, 100, 1 << 20,
+				MemoryGovernor.OverflowPolicy.PAUSE, 1 << 16);
+		OutputFlowControl flowControl = mock(OutputFlowControl.class);
+		JobMessagingService service = service(DispatchMode.PLATFORM, new JobDeadlines(registry, 10, 64, 0, 0, 0),
+				new DrainFairness(registry, 16384, 4, 0.25, 2000), governor, flowControl);
+
+		CountDownLatch firstSend = new CountDownLatch(1);
+		CountDownLatch releaseClient = new CountDownLatch(1);
+		StringBuffer received = new StringBuffer();
+		WebSocketSession session = mock(WebSocketSession.class);
+		when(session.getId()).thenReturn("s");
+		when(session.isOpen()).thenReturn(true);
+		doAnswer(invocation -> {
+			firstSend.countDown();
+			releaseClient.await();
+			String payload = ((TextMessage) invocation.getArgument(0)).getPayload();
+			received.append(objectMapper.readTree(payload).path("content").asText());
+			return null;
+		}).when(session).sendMessage(any(WebSocketMessage.class));
+		service.registerJob("j", session);
+
+		service.sendToJob("j", stdout("0,"));
+		assertThat(firstSend.await(5, TimeUnit.SECONDS)).isTrue();
+		// the client is stuck in its first send: every call below must return without waiting for it
+		StringBuilder expected = new StringBuilder("0,");
+		for (int i = 1; i < 50; i++) {
+			expected.append(i).append(',');
+			service.sendToJob("j", i % 2 == 0 ? stdout(i + ",") : stderr(i + ","));
+		}
+		assertThat(releaseClient.getCount()).isEqualTo(1);
+		verify(flowControl, atLeastOnce()).pause(eq("j"), any());
+		assertThat(governor.nodeBytes()).isPositive();
+
+		releaseClient.countDown();
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (received.length() < expected.length() && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+		assertThat(received.toString()).isEqualTo(expected.toString());
+		assertThat(registry.find("jobs.output.dropped").counters())
+				.allSatisfy(counter -> assertThat(counter.count()).isZero());
+	}
+
+	@Test
+	void transcriptGetsOnlyFramesTheClientWasSent() throws Exception {
+		JobMessagingService service = service(DispatchMode.PLATFORM);
+		WebSocketSession session = mock(WebSocketSession.class);
+		when(session.getId()).thenReturn("s");
+		when(session.isOpen()).thenReturn(true);
+		doNothing().doThrow(new IOException("broken pipe")).when(session).sendMessage(any(WebSocketMessage.class));
+		service.registerJob("j", session);
+
+		service.sendToJob("j", stdout("sent"));
+		verify(session, timeout(5000)).sendMessage(any(WebSocketMessage.class));
+		service.sendToJob("j", stderr("lost"));
+		verify(session, timeout(5000).times(2)).sendMessage(any(WebSocketMessage.class));
+		verify(session, timeout(5000)).close(any());
+
+		ArgumentCaptor<WebSocketMessage<?>> appended = ArgumentCaptor.forClass(WebSocketMessage.class);
+		verify(transcriptStore).append(eq("j"), appended.capture());
+		assertThat(((TextMessage) appended.getValue()).getPayload()).contains("sent");
+	}
+
+	@Test
+	void outputForUnknownJobIsCountedAsDropped() {
+		JobMessagingService service = service(DispatchMode.PLATFORM);
+
+		service.sendToJob("missing", stdout("x"));
+
+		assertThat(registry.get("jobs.output.dropped").tag("reason", "unregistered").counter().count())
+				.isEqualTo(1.0);
+		assertThat(registry.get("jobs.active").gauge().value()).isZero();
+	}
+}
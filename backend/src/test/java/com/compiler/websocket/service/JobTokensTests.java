@@ -0,0 +1,30 @@
+package com.compiler.websocket.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JobTokensTests {
+
+	private final JobTokens tokens = new JobTokens("shared-secret");
+
+	@Test
+	void tokenIsBoundToItsJobAndSharedByNodesWithTheSameSecret() {
+		String token = tokens.issue("job-1");
+
+		assertThat(tokens.verify("job-1", token)).isTrue();
+		assertThat(new JobTokens("shared-secret").verify("job-1", token)).isTrue();
+
+		assertThat(tokens.verify("job-2", token)).isFalse();
+		assertThat(new JobTokens("other-secret").verify("job-1", token)).isFalse();
+		assertThat(new JobTokens("").verify("job-1", token)).isFalse();
+	}
+
+	@Test
+	void missingOrMalformedTokensAreRejected() {
+		assertThat(tokens.verify("job-1", null)).isFalse();
+		assertThat(tokens.verify("job-1", "")).isFalse();
+		assertThat(tokens.verify("job-1", "not base64!")).isFalse();
+		assertThat(tokens.verify(null, tokens.issue("job-1"))).isFalse();
+	}
+}
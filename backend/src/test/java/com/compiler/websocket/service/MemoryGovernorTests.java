@@ -0,0 +1,65 @@
+package com.compiler.websocket.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MemoryGovernorTests {
+
+	private final MemoryGovernor governor = new MemoryGovernor(new SimpleMeterRegistry(),
+			1000, 400, 100, 1024, MemoryGovernor.OverflowPolicy.DROP_NEWEST, 0);
+
+	@Test
+	void allowanceShrinksWithNodePressure() {
+		MemoryGovernor.JobBudget a = new MemoryGovernor.JobBudget();
+		MemoryGovernor.JobBudget b = new MemoryGovernor.JobBudget();
+		assertThat(governor.jobAllowance()).isEqualTo(400);
+
+		assertThat(governor.tryAcquire(a, 400)).isTrue();
+		assertThat(governor.tryAcquire(a, 1)).isFalse();
+		assertThat(governor.jobAllowance()).isEqualTo(240);
+
+		assertThat(governor.tryAcquire(b, 240)).isTrue();
+		assertThat(governor.jobAllowance()).isEqualTo(144);
+		assertThat(governor.tryAcquire(b, 1)).isFalse();
+
+		governor.forceAcquire(b, 500);
+		assertThat(governor.jobAllowance()).isEqualTo(100);
+		assertThat(governor.nodeBytes()).isEqualTo(1140);
+	}
+
+	@Test
+	void heldOutputIsBoundedAndQueuedOnlyWhenTheAllowanceHasRoom() {
+		MemoryGovernor pausing = new MemoryGovernor(new SimpleMeterRegistry(),
+				1000, 100, 100, 1024, MemoryGovernor.OverflowPolicy.PAUSE, 150);
+		MemoryGovernor.JobBudget budget = new MemoryGovernor.JobBudget();
+
+		assertThat(pausing.tryAcquire(budget, 100)).isTrue();
+		assertThat(pausing.tryHold(budget, 100)).isTrue();
+		assertThat(pausing.tryHold(budget, 100)).isFalse();
+		pausing.forceHold(budget, 10);
+		assertThat(budget.bytes()).isEqualTo(210);
+		assertThat(budget.heldBytes()).isEqualTo(110);
+
+		assertThat(pausing.promote(budget, 100, false)).isFalse();
+		pausing.release(budget, 100);
+		assertThat(pausing.promote(budget, 100, false)).isTrue();
+		assertThat(pausing.promote(budget, 10, false)).isFalse();
+		assertThat(pausing.promote(budget, 10, true)).isTrue();
+		assertThat(budget.heldBytes()).isZero();
+		assertThat(pausing.nodeBytes()).isEqualTo(110);
+	}
+
+	@Test
+	void closedBudgetIgnoresLateReleases() {
+		MemoryGovernor.JobBudget budget = new MemoryGovernor.JobBudget();
+		governor.forceAcquire(budget, 300);
+		governor.close(budget);
+		governor.release(budget, 300);
+		governor.forceAcquire(budget, 50);
+
+		assertThat(governor.nodeBytes()).isZero();
+		assertThat(budget.bytes()).isZero();
+	}
+}
@@ -0,0 +1,74 @@
+package com.compiler.websocket.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MpscQueueTests {
+
+	@Test
+	void isFifoAndRejectsOffersPastCapacity() {
+		MpscQueue<Integer> queue = new MpscQueue<>(3);
+		assertThat(queue.poll()).isNull();
+		assertThat(queue.offerAndCount(1)).isEqualTo(1);
+		assertThat(queue.offerAndCount(2)).isEqualTo(2);
+		assertThat(queue.offerAndCount(3)).isEqualTo(3);
+		assertThat(queue.offerAndCount(4)).isZero();
+		assertThat(queue.size()).isEqualTo(3);
+
+		assertThat(queue.peek()).isEqualTo(1);
+		assertThat(queue.poll()).isEqualTo(1);
+		assertThat(queue.offerAndCount(4)).isEqualTo(3);
+		assertThat(queue.poll()).isEqualTo(2);
+		assertThat(queue.poll()).isEqualTo(3);
+		assertThat(queue.poll()).isEqualTo(4);
+		assertThat(queue.poll()).isNull();
+		assertThat(queue.size()).isZero();
+	}
+
+	@Test
+	void concurrentProducersLoseNothingAndKeepTheirOwnOrder() throws Exception {
+		int producers = 4;
+		int perProducer = 100_000;
+		MpscQueue<long[]> queue = new MpscQueue<>(Integer.MAX_VALUE);
+		CountDownLatch start = new CountDownLatch(1);
+		try (ExecutorService pool = Executors.newFixedThreadPool(producers)) {
+			for (int p = 0; p < producers; p++) {
+				long producer = p;
+				pool.execute(() -> {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						return;
+					}
+					for (long i = 0; i < perProducer; i++) {
+						queue.offerAndCount(new long[] {producer, i});
+					}
+				});
+			}
+			start.countDown();
+
+			long[] nextExpected = new long[producers];
+			int received = 0;
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+			while (received < producers * perProducer && System.nanoTime() < deadline) {
+				long[] element = queue.poll();
+				if (element == null) {
+					Thread.onSpinWait();
+					continue;
+				}
+				assertThat(element[1]).isEqualTo(nextExpected[(int) element[0]]++);
+				received++;
+			}
+			assertThat(received).isEqualTo(producers * perProducer);
+			assertThat(queue.poll()).isNull();
+			assertThat(queue.size()).isZero();
+		}
+	}
+}
@@ -0,0 +1,96 @@
+package com.compiler.websocket.service;
+
+import com.compiler.websocket.messaging.OutboundEnvelope;
+import com.compiler.websocket.model.OutboundType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OutputBudgetTests {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	private OutboundEnvelope stdout(String content) {
+		return OutboundEnvelope.parse(objectMapper.getFactory(),
+				"{\"job_id\":\"j\",\"type\":\"STDOUT\",\"content\":\"" + content + "\"}");
+	}
+
+	@Test
+	void keepsTheHeadAndTheTailAndElidesTheMiddle() throws Exception {
+		OutputBudget budget = new OutputBudget(objectMapper, registry, new MockEnvironment()
+				.withProperty("app.jobs.output.budget.head-bytes", "8")
+				.withProperty("app.jobs.output.budget.tail-bytes", "8"));
+		OutputBudget.JobOutput output = budget.newJob("java");
+
+		assertThat(output.admit(stdout("head"))).isTrue();
+		assertThat(output.admit(stdout("1234"))).isTrue();
+		for (int i = 0; i < 5; i++) {
+			assertThat(output.admit(stdout("mid" + i))).isFalse();
+		}
+		assertThat(output.admit(stdout("tail"))).isFalse();
+		// not output: never held back
+		assertThat(output.admit(OutboundEnvelope.of(OutboundType.UNKNOWN, "{\"type\":\"ERROR\"}"))).isTrue();
+
+		List<OutboundEnvelope> end = output.finish("j");
+		assertThat(end).hasSize(3);
+		JsonNode marker = objectMapper.readTree(end.get(0).payload());
+		assertThat(marker.get("job_id").asText()).isEqualTo("j");
+		assertThat(marker.get("type").asText()).isEqualTo("STDERR");
+		assertThat(marker.get("content").asText()).isEqualTo("\r\n... output truncated (16 bytes elided) ...\r\n");
+		assertThat(end.subList(1, 3)).extracting(OutboundEnvelope::content).containsExactly("mid4", "tail");
+		assertThat(registry.get("jobs.output.elided.bytes").tag("language", "java").counter().count()).isEqualTo(16);
+		assertThat(registry.get("jobs.output.truncated").counter().count()).isEqualTo(1);
+	}
+
+	@Test
+	void resumeOnTheSameNodeContinuesTheBudgetInsteadOfGrantingANewHead() {
+		MockEnvironment environment = new MockEnvironment()
+				.withProperty("app.jobs.output.budget.head-bytes", "8")
+				.withProperty("app.jobs.output.transport", "stream");
+		OutputBudget budget = new OutputBudget(objectMapper, registry, environment);
+		OutputBudget.JobOutput output = budget.newJob("java");
+		assertThat(output.admit(stdout("12345678"))).isTrue();
+
+		budget.detach("j", output);
+		OutputBudget.JobOutput resumed = budget.resume("j");
+		assertThat(resumed).isSameAs(output);
+		assertThat(resumed.admit(stdout("more"))).isFalse();
+
+		// nothing detached (another node started it, or the grace period is over): a fresh default budget
+		assertThat(budget.resume("j").admit(stdout("more"))).isTrue();
+
+		// a finished run is not kept, and pub/sub output is never resumed
+		resumed.finish("j");
+		budget.detach("j", resumed);
+		assertThat(budget.resume("j")).isNotSameAs(resumed);
+		OutputBudget pubsub = new OutputBudget(objectMapper, registry, new MockEnvironment());
+		OutputBudget.JobOutput live = pubsub.newJob("java");
+		pubsub.detach("j", live);
+		assertThat(pubsub.resume("j")).isNotSameAs(live);
+	}
+
+	@Test
+	void languageLimitsFallBackToTheDefaults() {
+		OutputBudget budget = new OutputBudget(objectMapper, registry, new MockEnvironment()
+				.withProperty("app.jobs.output.budget.tail-lines", "50")
+				.withProperty("app.jobs.output.budget.py.head-lines", "200")
+				.withProperty("app.jobs.output.budget.cpp.head-bytes", "0"));
+
+		assertThat(budget.limits("py")).isEqualTo(new OutputBudget.Limits(1_048_576, 200, 65_536, 50));
+		assertThat(budget.limits("java")).isEqualTo(new OutputBudget.Limits(1_048_576, 10_000, 65_536, 50));
+		assertThat(budget.newJob("cpp")).isNull();
+	}
+
+	@Test
+	void utf8LengthCountsEncodedBytes() {
+		assertThat(OutputBudget.utf8Length("aé→😀")).isEqualTo(1 + 2 + 3 + 4);
+	}
+}
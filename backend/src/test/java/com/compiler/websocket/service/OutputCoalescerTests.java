@@ -0,0 +1,54 @@
+package com.compiler.websocket.service;
+
+import com.compiler.websocket.messaging.OutboundEnvelope;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OutputCoalescerTests {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final OutputCoalescer coalescer = new OutputCoalescer(objectMapper, new SimpleMeterRegistry(), 5, 10);
+
+	private OutboundEnvelope envelope(String type, String content) {
+		String payload = "{\"job_id\":\"j1\",\"type\":\"" + type + "\",\"content\":\"" + content + "\"}";
+		return OutboundEnvelope.parse(objectMapper.getFactory(), payload);
+	}
+
+	@Test
+	void mergesAdjacentChunksOfSameTypeUpToLimit() throws Exception {
+		MpscQueue<OutboundEnvelope> queue = new MpscQueue<>(10);
+		queue.offerAndCount(envelope("STDOUT", "bbb"));
+		queue.offerAndCount(envelope("STDOUT", "cccc"));
+		queue.offerAndCount(envelope("STDOUT", "dd"));
+
+		OutboundEnvelope frame = coalescer.nextFrame("j1", envelope("STDOUT", "aaa"), queue, consumed -> { });
+
+		JsonNode json = objectMapper.readTree(frame.payload());
+		assertThat(json.get("type").asText()).isEqualTo("STDOUT");
+		assertThat(json.get("content").asText()).isEqualTo("aaabbbcccc");
+		assertThat(json.get("job_id").asText()).isEqualTo("j1");
+		assertThat(queue.size()).isEqualTo(1);
+	}
+
+	@Test
+	void stopsAtTypeChangeAndKeepsTerminalFrameUntouched() {
+		OutboundEnvelope completion = OutboundEnvelope.parse(objectMapper.getFactory(),
+				"{\"job_id\":\"j1\",\"type\":\"COMPLETION\",\"content\":{\"exitCode\":0}}");
+		MpscQueue<OutboundEnvelope> queue = new MpscQueue<>(10);
+		queue.offerAndCount(envelope("STDERR", "err"));
+		queue.offerAndCount(completion);
+
+		OutboundEnvelope first = envelope("STDOUT", "out");
+		assertThat(coalescer.nextFrame("j1", first, queue, consumed -> { })).isSameAs(first);
+
+		OutboundEnvelope stderr = queue.poll();
+		assertThat(coalescer.nextFrame("j1", stderr, queue, consumed -> { })).isSameAs(stderr);
+		assertThat(coalescer.nextFrame("j1", queue.poll(), queue, consumed -> { })).isSameAs(completion);
+		assertThat(completion.type().isTerminal()).isTrue();
+		assertThat(completion.isMergeable()).isFalse();
+	}
+}
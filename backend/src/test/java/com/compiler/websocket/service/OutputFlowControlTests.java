@@ -0,0 +1,44 @@
+package com.compiler.websocket.service;
+
+import com.compiler.websocket.messaging.RedisPublisher;
+import com.compiler.websocket.model.RedisPublisherPayload;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class OutputFlowControlTests {
+
+	private final RedisPublisher redisPublisher = mock(RedisPublisher.class);
+	private final MemoryGovernor governor = new MemoryGovernor(new SimpleMeterRegistry(),
+			1 << 30, 1000, 1000, 1024, MemoryGovernor.OverflowPolicy.DROP_NEWEST, 0);
+	private final OutputFlowControl flowControl = new OutputFlowControl(redisPublisher, governor, true, 0.75, 0.25);
+
+	@Test
+	void pausesOnceAboveHighAndResumesOnceBelowLow() {
+		MemoryGovernor.JobBudget budget = new MemoryGovernor.JobBudget();
+
+		governor.forceAcquire(budget, 700);
+		flowControl.afterAcquire("j1", budget);
+		verifyNoInteractions(redisPublisher);
+
+		governor.forceAcquire(budget, 100);
+		flowControl.afterAcquire("j1", budget);
+		governor.forceAcquire(budget, 100);
+		flowControl.afterAcquire("j1", budget);
+
+		governor.release(budget, 500);
+		flowControl.afterRelease("j1", budget);
+		governor.release(budget, 200);
+		flowControl.afterRelease("j1", budget);
+		governor.release(budget, 100);
+		flowControl.afterRelease("j1", budget);
+
+		ArgumentCaptor<RedisPublisherPayload> events = ArgumentCaptor.forClass(RedisPublisherPayload.class);
+		verify(redisPublisher, times(2)).publishFlowControlEvent(eq("input:j1"), events.capture());
+		assertThat(events.getAllValues()).extracting(RedisPublisherPayload::getEvent_type)
+				.containsExactly("OUTPUT_PAUSE_EVENT", "OUTPUT_RESUME_EVENT");
+	}
+}
@@ -0,0 +1,118 @@
+package com.compiler.websocket.service;
+
+import com.compiler.websocket.messaging.OutboundEnvelope;
+import com.compiler.websocket.model.RunEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Value;
+
+import java.io.InputStream;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ResultCacheTests {
+
+	private static final String JOB = "0b5e9a6c-1f43-4a7e-9d1e-7a2f3c4d5e6f";
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+	private final ResultCache cache = new ResultCache(null, objectMapper, registry, true, false, 2, 1024, 1 << 20, 3600);
+
+	private final String key = ResultCache.key(RunEvent.builder()
+			.language("py").file_name("main.py").source_code("print('hi')").build());
+
+	private OutboundEnvelope message(String json) {
+		return OutboundEnvelope.parse(objectMapper.getFactory(), json);
+	}
+
+	private void run(String jobId, String key) {
+		run(cache, jobId, key, 0);
+	}
+
+	private void run(ResultCache cache, String jobId, String key, int exitCode) {
+		cache.startRecording(jobId, key);
+		cache.record(jobId, message("{\"job_id\":\"" + jobId + "\",\"type\":\"STDOUT\",\"content\":\"hi\\n\"}"));
+		cache.record(jobId, message("{\"job_id\":\"" + jobId + "\",\"type\":\"COMPLETION\",\"content\":{\"exitCode\":"
+				+ exitCode + ",\"metrics\":{\"executionTime\":120}}}"));
+	}
+
+	@Test
+	void completedRunIsReplayedForAnotherJob() {
+		assertThat(cache.lookup(key)).isNull();
+		run(JOB, key);
+
+		ResultCache.CachedResult cached = cache.lookup(key);
+
+		assertThat(cached).isNotNull();
+		assertThat(ResultCache.payloadsFor(cached, "new-job"))
+				.containsExactly("{\"job_id\":\"new-job\",\"type\":\"STDOUT\",\"content\":\"hi\\n\"}",
+						"{\"job_id\":\"new-job\",\"type\":\"COMPLETION\",\"content\":{\"exitCode\":0,\"metrics\":{\"executionTime\":120}}}");
+		assertThat(registry.get("jobs.result.cache.hit.ratio").gauge().value()).isEqualTo(0.5);
+		assertThat(registry.get("jobs.result.cache.saved.runtime").functionCounter().count()).isEqualTo(120);
+	}
+
+	@Test
+	void runsThatReadInputOrWereKilledAreNotCached() {
+		cache.startRecording(JOB, key);
+		cache.record(JOB, message("{\"job_id\":\"" + JOB + "\",\"type\":\"STDOUT\",\"content\":\"name?\"}"));
+		cache.discard(JOB);
+		cache.record(JOB, message("{\"job_id\":\"" + JOB + "\",\"type\":\"COMPLETION\",\"content\":{}}"));
+		assertThat(cache.lookup(key)).isNull();
+
+		cache.startRecording(JOB, key);
+		cache.record(JOB, message("{\"job_id\":\"" + JOB + "\",\"type\":\"TERMINATION\",\"content\":{}}"));
+		assertThat(cache.lookup(key)).isNull();
+	}
+
+	@Test
+	void disabledByDefault() throws Exception {
+		Value enabled = ResultCache.class.getConstructors()[0].getParameters()[3].getAnnotation(Value.class);
+		assertThat(enabled.value()).isEqualTo("${app.jobs.result-cache.enabled:false}");
+
+		Properties properties = new Properties();
+		try (InputStream in = getClass().getResourceAsStream("/application.properties")) {
+			properties.load(in);
+		}
+		assertThat(properties.getProperty("app.jobs.result-cache.enabled")).isEqualTo("false");
+	}
+
+	@Test
+	void onlyRunsThatExitedZeroAreStored() {
+		run(cache, "job-a", "a", 1);
+		run(cache, "job-b", "b", 0);
+
+		assertThat(cache.lookup("a")).isNull();
+		assertThat(cache.lookup("b")).isNotNull();
+		assertThat(registry.get("jobs.result.cache.stored").counter().count()).isEqualTo(1);
+	}
+
+	@Test
+	void totalBytesAreBoundedByEvictingTheLeastRecentlyUsed() {
+		// each run records about 150 bytes: room for two of them, whatever max-entries allows
+		ResultCache bounded = new ResultCache(null, objectMapper, registry, true, false, 100, 1024, 350, 3600);
+		run(bounded, "job-a", "a", 0);
+		run(bounded, "job-b", "b", 0);
+		bounded.lookup("a");
+		run(bounded, "job-c", "c", 0);
+
+		assertThat(bounded.lookup("b")).isNull();
+		assertThat(bounded.lookup("a")).isNotNull();
+		assertThat(bounded.lookup("c")).isNotNull();
+		assertThat(registry.get("jobs.result.cache.bytes").gauge().value()).isLessThanOrEqualTo(350);
+	}
+
+	@Test
+	void leastRecentlyUsedEntryIsEvicted() {
+		run("job-a", "a");
+		run("job-b", "b");
+		cache.lookup("a");
+		run("job-c", "c");
+
+		assertThat(cache.lookup("b")).isNull();
+		assertThat(cache.lookup("a")).isNotNull();
+		assertThat(cache.lookup("c")).isNotNull();
+		assertThat(registry.get("jobs.result.cache.evictions").counter().count()).isEqualTo(1);
+	}
+}
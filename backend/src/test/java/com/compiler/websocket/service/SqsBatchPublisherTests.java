@@ -0,0 +1,99 @@
+package com.compiler.websocket.service;
+
+import com.compiler.websocket.model.SqsPayload;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.sqs.SqsAsyncClient;
+import software.amazon.awssdk.services.sqs.model.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SqsBatchPublisherTests {
+
+	private final FakeSqs sqs = new FakeSqs();
+
+	private SqsBatchPublisher publisher(long windowMillis) {
+		return new SqsBatchPublisher("java-queue", "cpp-queue", "py-queue", sqs, new ObjectMapper(),
+				new JobMetrics(new SimpleMeterRegistry()), windowMillis, 262144, 2);
+	}
+
+	private SqsPayload payload(String jobId, String language) {
+		return SqsPayload.builder().job_id(jobId).language(language).file_name("Main").source_code("code").build();
+	}
+
+	@Test
+	void packsUpToTenEntriesPerBatchAndFlushesTheRestAfterTheWindow() throws Exception {
+		SqsBatchPublisher publisher = publisher(50);
+		List<CompletableFuture<String>> results = new ArrayList<>();
+		for (int i = 0; i < 25; i++) {
+			results.add(publisher.submit(payload("job-" + i, "java")));
+		}
+		assertThat(sqs.requests).extracting(r -> r.entries().size()).containsExactly(10, 10);
+
+		CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).get(1, TimeUnit.SECONDS);
+		assertThat(sqs.requests).extracting(r -> r.entries().size()).containsExactly(10, 10, 5);
+		assertThat(sqs.requests).allMatch(r -> r.queueUrl().equals("java-queue"));
+		assertThat(results.get(24).get()).isEqualTo("msg-job-24");
+	}
+
+	@Test
+	void retriesServerFailuresAndFailsRejectedEntriesIndividually() throws Exception {
+		SqsBatchPublisher publisher = publisher(0);
+		sqs.failOnce.put("job-flaky", false);
+		sqs.failOnce.put("job-bad", true);
+
+		CompletableFuture<String> flaky = publisher.submit(payload("job-flaky", "cpp"));
+		CompletableFuture<String> bad = publisher.submit(payload("job-bad", "cpp"));
+
+		assertThat(flaky.get(1, TimeUnit.SECONDS)).isEqualTo("msg-job-flaky");
+		assertThatThrownBy(() -> bad.get(1, TimeUnit.SECONDS))
+				.isInstanceOf(ExecutionException.class)
+				.hasMessageContaining("InvalidMessageContents");
+		assertThat(publisher.submit(payload("job-x", "rust"))).isCompletedExceptionally();
+	}
+
+	/** Accepts every entry except those listed in {@code failOnce}, which fail the first time (value = sender fault). */
+	private static final class FakeSqs implements SqsAsyncClient {
+		final List<SendMessageBatchRequest> requests = new CopyOnWriteArrayList<>();
+		final Map<String, Boolean> failOnce = new ConcurrentHashMap<>();
+
+		@Override
+		public CompletableFuture<SendMessageBatchResponse> sendMessageBatch(SendMessageBatchRequest request) {
+			requests.add(request);
+			List<SendMessageBatchResultEntry> successful = new ArrayList<>();
+			List<BatchResultErrorEntry> failed = new ArrayList<>();
+			for (SendMessageBatchRequestEntry entry : request.entries()) {
+				String jobId = entry.messageBody().replaceAll(".*\"job_id\":\"([^\"]+)\".*", "$1");
+				Boolean senderFault = failOnce.remove(jobId);
+				if (senderFault == null) {
+					successful.add(SendMessageBatchResultEntry.builder().id(entry.id()).messageId("msg-" + jobId).build());
+				} else {
+					failed.add(BatchResultErrorEntry.builder().id(entry.id()).senderFault(senderFault)
+							.code(senderFault ? "InvalidMessageContents" : "InternalError").message("fake").build());
+				}
+			}
+			return CompletableFuture.completedFuture(
+					SendMessageBatchResponse.builder().successful(successful).failed(failed).build());
+		}
+
+		@Override
+		public String serviceName() {
+			return SERVICE_NAME;
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
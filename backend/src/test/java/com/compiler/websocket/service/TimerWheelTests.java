@@ -0,0 +1,52 @@
+package com.compiler.websocket.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TimerWheelTests {
+
+	@Test
+	void firesAfterDelayIncludingDeadlinesBeyondOneRevolution() throws Exception {
+		// 8 slots of 5 ms: a 100 ms deadline needs two extra revolutions
+		TimerWheel wheel = new TimerWheel("test-wheel", 5, 8);
+		CountDownLatch fired = new CountDownLatch(2);
+		long start = System.nanoTime();
+		long[] firedAfter = new long[2];
+		wheel.schedule(() -> { firedAfter[0] = System.nanoTime() - start; fired.countDown(); }, 10, TimeUnit.MILLISECONDS);
+		wheel.schedule(() -> { firedAfter[1] = System.nanoTime() - start; fired.countDown(); }, 100, TimeUnit.MILLISECONDS);
+
+		assertThat(fired.await(1, TimeUnit.SECONDS)).isTrue();
+		assertThat(TimeUnit.NANOSECONDS.toMillis(firedAfter[0])).isGreaterThanOrEqualTo(10);
+		assertThat(TimeUnit.NANOSECONDS.toMillis(firedAfter[1])).isGreaterThanOrEqualTo(100);
+		assertThat(wheel.pending()).isZero();
+	}
+
+	@Test
+	void cancelledTimeoutsNeverFire() throws Exception {
+		TimerWheel wheel = new TimerWheel("test-wheel", 5, 64);
+		AtomicInteger fired = new AtomicInteger();
+		List<TimerWheel.Timeout> timeouts = new ArrayList<>();
+		for (int i = 0; i < 100_000; i++) {
+			timeouts.add(wheel.schedule(fired::incrementAndGet, 1000 + i % 50, TimeUnit.MILLISECONDS));
+		}
+		for (int i = 0; i < timeouts.size(); i += 2) {
+			assertThat(timeouts.get(i).cancel()).isTrue();
+		}
+		assertThat(wheel.pending()).isEqualTo(50_000);
+
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (fired.get() < 50_000 && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+		assertThat(fired.get()).isEqualTo(50_000);
+		assertThat(timeouts.get(0).cancel()).isFalse();
+		assertThat(timeouts.get(1).isExpired()).isTrue();
+	}
+}
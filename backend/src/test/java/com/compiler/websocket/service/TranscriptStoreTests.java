@@ -0,0 +1,91 @@
+package com.compiler.websocket.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class TranscriptStoreTests {
+
+	@TempDir
+	Path dir;
+
+	private TranscriptStore store(int segmentBytes, long maxBytes) {
+		return new TranscriptStore(new SimpleMeterRegistry(), true, dir, segmentBytes, 3_600_000, 3_600_000, maxBytes);
+	}
+
+	private static void await(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+			Thread.sleep(5);
+		}
+		assertThat(condition.getAsBoolean()).isTrue();
+	}
+
+	@Test
+	void keepsEachJobsFramesInOrderAcrossSegmentsAndRestarts() throws Exception {
+		TranscriptStore store = store(256, 1L << 20);
+		for (int i = 0; i < 20; i++) {
+			store.append("a", new TextMessage("{\"n\":" + i + "}"));
+			store.append("b", new BinaryMessage(("{\"m\":" + i + "}").getBytes(StandardCharsets.UTF_8)));
+		}
+		await(() -> store.read("a") != null && store.read("a").frames().size() == 20
+				&& store.read("b") != null && store.read("b").frames().size() == 20);
+
+		assertThat(store.read("a").frames()).startsWith("{\"n\":0}", "{\"n\":1}").endsWith("{\"n\":19}");
+		assertThat(store.read("b").frames()).startsWith("{\"m\":0}").endsWith("{\"m\":19}");
+		assertThat(store.read("a").truncated()).isFalse();
+		assertThat(store.read("missing")).isNull();
+		store.close();
+
+		// a new process finds the same transcripts in the segments
+		TranscriptStore reopened = store(256, 1L << 20);
+		assertThat(reopened.read("a")).isEqualTo(new TranscriptStore.Transcript(store.read("a").frames(), false));
+		assertThat(reopened.read("b").frames()).hasSize(20);
+		reopened.close();
+	}
+
+	@Test
+	void directoryAndSegmentsAreOwnerOnly() throws Exception {
+		assumeTrue(dir.getFileSystem().supportedFileAttributeViews().contains("posix"));
+		Path transcripts = dir.resolve("nested").resolve("transcripts");
+		TranscriptStore store = new TranscriptStore(new SimpleMeterRegistry(), true, transcripts, 256,
+				3_600_000, 3_600_000, 1L << 20);
+		store.append("a", new TextMessage("{\"n\":0}"));
+		await(() -> store.read("a") != null);
+		store.close();
+
+		assertThat(Files.getPosixFilePermissions(transcripts)).isEqualTo(PosixFilePermissions.fromString("rwx------"));
+		try (Stream<Path> segments = Files.list(transcripts)) {
+			assertThat(segments.toList()).isNotEmpty().allSatisfy(segment -> assertThat(Files.getPosixFilePermissions(segment))
+					.isEqualTo(PosixFilePermissions.fromString("rw-------")));
+		}
+	}
+
+	@Test
+	void expiresTheOldestSegmentsOverMaxBytes() throws Exception {
+		TranscriptStore store = store(256, 1024);
+		for (int i = 0; i < 100; i++) {
+			store.append("long", new TextMessage("{\"n\":" + i + "}"));
+		}
+		store.append("late", new TextMessage("{\"late\":true}"));
+		await(() -> store.read("late") != null);
+
+		TranscriptStore.Transcript transcript = store.read("long");
+		assertThat(transcript.truncated()).isTrue();
+		assertThat(transcript.frames()).isNotEmpty().hasSizeLessThan(100).endsWith("{\"n\":99}");
+		store.close();
+	}
+}
@@ -0,0 +1,35 @@
+package com.compiler.websocket.web;
+
+import com.compiler.websocket.service.JobTokens;
+import com.compiler.websocket.service.TranscriptStore;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class TranscriptControllerTests {
+
+	private final TranscriptStore transcriptStore = mock(TranscriptStore.class);
+	private final JobTokens jobTokens = new JobTokens("test-secret");
+	private final TranscriptController controller = new TranscriptController(transcriptStore, jobTokens);
+
+	@Test
+	void transcriptIsOnlyServedWithTheJobsToken() {
+		when(transcriptStore.read("job-1")).thenReturn(new TranscriptStore.Transcript(List.of("{\"n\":1}"), false));
+
+		assertThat(controller.transcript("job-1", null).getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+		assertThat(controller.transcript("job-1", "Bearer " + jobTokens.issue("job-2")).getStatusCode())
+				.isEqualTo(HttpStatus.UNAUTHORIZED);
+		assertThat(controller.transcript("job-1", jobTokens.issue("job-1")).getStatusCode())
+				.isEqualTo(HttpStatus.UNAUTHORIZED);
+		verifyNoInteractions(transcriptStore);
+
+		ResponseEntity<String> owner = controller.transcript("job-1", "Bearer " + jobTokens.issue("job-1"));
+		assertThat(owner.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(owner.getBody()).isEqualTo("{\"n\":1}\n");
+	}
+}
@@ -0,0 +1,123 @@
+package com.compiler.websocket.websocket;
+
+import com.compiler.websocket.messaging.ChannelNaming;
+import com.compiler.websocket.messaging.JobChannelSubscriptions;
+import com.compiler.websocket.messaging.RedisPublisher;
+import com.compiler.websocket.messaging.RedisSubscriber;
+import com.compiler.websocket.service.AdmissionControl;
+import com.compiler.websocket.service.JobMessagingService;
+import com.compiler.websocket.service.JobOutputReplay;
+import com.compiler.websocket.service.JobTokens;
+import com.compiler.websocket.service.ResultCache;
+import com.compiler.websocket.service.SqsBatchPublisher;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class CompilerWebSocketHandlerTests {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final JobMessagingService jobMessagingService = mock(JobMessagingService.class);
+	private final JobOutputReplay jobOutputReplay = mock(JobOutputReplay.class);
+	private final JobTokens jobTokens = new JobTokens("test-secret");
+	private final RedisPublisher redisPublisher = mock(RedisPublisher.class);
+	private final ResultCache resultCache = mock(ResultCache.class);
+	private final SqsBatchPublisher sqsBatchPublisher = mock(SqsBatchPublisher.class);
+	private final AdmissionControl admissionControl = mock(AdmissionControl.class);
+	private final WebSocketSession session = mock(WebSocketSession.class);
+
+	private final CompilerWebSocketHandler handler = new CompilerWebSocketHandler(jobMessagingService, objectMapper,
+			mock(RedisSubscriber.class), mock(JobChannelSubscriptions.class), redisPublisher,
+			sqsBatchPublisher, jobOutputReplay, resultCache, admissionControl,
+			jobTokens);
+
+	@BeforeEach
+	void setUp() {
+		when(jobOutputReplay.isEnabled()).thenReturn(true);
+		when(session.getId()).thenReturn("s2");
+	}
+
+	private JsonNode resume(String jobId, String token, String lastSeq) throws Exception {
+		String data = objectMapper.createObjectNode()
+				.put("job_id", jobId)
+				.put("token", token)
+				.put("last_seq", lastSeq)
+				.toString();
+		handler.handleTextMessage(session, new TextMessage("{\"type\":\"RESUME_EVENT\",\"data\":" + data + "}"));
+
+		ArgumentCaptor<TextMessage> reply = ArgumentCaptor.forClass(TextMessage.class);
+		verify(session, atMost(1)).sendMessage(reply.capture());
+		return reply.getAllValues().isEmpty() ? null : objectMapper.readTree(reply.getValue().getPayload());
+	}
+
+	@Test
+	void inputGoesToTheSessionsOwnJobWhateverJobIdItNames() throws Exception {
+		when(jobMessagingService.jobIdCorrespondingToSession(session)).thenReturn("job-1");
+		when(redisPublisher.publishInput(anyString(), anyString())).thenReturn(new CompletableFuture<>());
+
+		handler.handleTextMessage(session, new TextMessage(
+				"{\"type\":\"INPUT_EVENT\",\"data\":{\"job_id\":\"job-2\",\"content\":\"42\\n\"}}"));
+
+		verify(redisPublisher).publishInput(ChannelNaming.inputChannel("job-1"), "42\n");
+	}
+
+	@Test
+	void inputStopsTheSessionsRunFromBeingCachedEvenWithoutAJobId() throws Exception {
+		when(jobMessagingService.jobIdCorrespondingToSession(session)).thenReturn("job-1");
+		when(redisPublisher.publishInput(anyString(), anyString())).thenReturn(new CompletableFuture<>());
+
+		handler.handleTextMessage(session, new TextMessage("{\"type\":\"INPUT_EVENT\",\"data\":{\"content\":\"42\\n\"}}"));
+
+		verify(resultCache).discard("job-1");
+	}
+
+	@Test
+	void runInAnUnsupportedLanguageIsRefusedBeforeTheJobStarts() throws Exception {
+		when(jobMessagingService.jobIdCorrespondingToSession(session)).thenReturn("job-1");
+		when(admissionControl.tryRun(any())).thenReturn(true);
+
+		handler.handleTextMessage(session, new TextMessage("{\"type\":\"RUN_EVENT\",\"data\":"
+				+ "{\"language\":\"cobol\",\"file_name\":\"Main\",\"source_code\":\"x\"}}"));
+
+		ArgumentCaptor<TextMessage> reply = ArgumentCaptor.forClass(TextMessage.class);
+		verify(session).sendMessage(reply.capture());
+		assertThat(objectMapper.readTree(reply.getValue().getPayload()).get("type").asText()).isEqualTo("ERROR");
+		verify(jobMessagingService, never()).jobStarted(anyString(), any());
+		verify(sqsBatchPublisher, never()).submit(any());
+	}
+
+	@Test
+	void resumeWithoutTheJobsTokenIsRefused() throws Exception {
+		JsonNode reply = resume("job-1", jobTokens.issue("job-2"), "5-1");
+
+		assertThat(reply.get("type").asText()).isEqualTo("ERROR");
+		verify(jobMessagingService, never()).resumeJob(anyString(), any(), any(), any());
+		verify(jobOutputReplay, never()).cancelClose(anyString());
+	}
+
+	@Test
+	void malformedLastSeqIsRefusedBeforeTheJobIsTouched() throws Exception {
+		JsonNode reply = resume("job-1", jobTokens.issue("job-1"), "42");
+
+		assertThat(reply.get("type").asText()).isEqualTo("ERROR");
+		assertThat(reply.get("content").asText()).contains("last_seq");
+		verify(jobMessagingService, never()).resumeJob(anyString(), any(), any(), any());
+	}
+
+	@Test
+	void resumeWithTheJobsTokenTakesTheJobOver() throws Exception {
+		JsonNode reply = resume("job-1", jobTokens.issue("job-1"), "5-1");
+
+		assertThat(reply).isNull();
+		verify(jobMessagingService).resumeJob(eq("job-1"), eq(session), eq("5-1"), any());
+	}
+}
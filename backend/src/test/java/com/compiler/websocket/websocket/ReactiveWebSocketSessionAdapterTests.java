@@ -0,0 +1,74 @@
+package com.compiler.websocket.websocket;
+
+import com.compiler.websocket.service.JobMessagingService;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.web.reactive.socket.WebSocketSession;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import reactor.core.publisher.BaseSubscriber;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ReactiveWebSocketSessionAdapterTests {
+
+	private static ReactiveWebSocketSessionAdapter adapter(int bufferFrames, long sendTimeLimitMillis) {
+		WebSocketSession session = mock(WebSocketSession.class);
+		when(session.getId()).thenReturn("s1");
+		when(session.isOpen()).thenReturn(true);
+		when(session.getAttributes()).thenReturn(Map.of());
+		when(session.bufferFactory()).thenReturn(DefaultDataBufferFactory.sharedInstance);
+		return new ReactiveWebSocketSessionAdapter(session, bufferFrames, sendTimeLimitMillis);
+	}
+
+	@Test
+	void sendsWaitForTheSocketToPullFrames() throws Exception {
+		ReactiveWebSocketSessionAdapter adapter = adapter(2, 50);
+		assertThat(adapter.getAttributes()).containsEntry(JobMessagingService.CONCURRENT_SENDS_ATTRIBUTE, true);
+
+		adapter.sendMessage(new TextMessage("a"));
+		adapter.sendMessage(new TextMessage("b"));
+		// nobody is reading: the third send times out instead of buffering
+		assertThatThrownBy(() -> adapter.sendMessage(new TextMessage("c"))).isInstanceOf(IOException.class);
+
+		List<String> sent = new ArrayList<>();
+		boolean[] completed = {false};
+		BaseSubscriber<org.springframework.web.reactive.socket.WebSocketMessage> socket = new BaseSubscriber<>() {
+			@Override
+			protected void hookOnSubscribe(org.reactivestreams.Subscription subscription) {
+				request(1);
+			}
+
+			@Override
+			protected void hookOnNext(org.springframework.web.reactive.socket.WebSocketMessage message) {
+				sent.add(message.getPayloadAsText());
+			}
+
+			@Override
+			protected void hookOnComplete() {
+				completed[0] = true;
+			}
+		};
+		adapter.outbound().subscribe(socket);
+		assertThat(sent).containsExactly("a");
+
+		// pulling a frame frees room for one more
+		adapter.sendMessage(new TextMessage("d"));
+		adapter.close(CloseStatus.NORMAL);
+		socket.request(10);
+		assertThat(sent).containsExactly("a", "b", "d");
+		assertThat(completed[0]).isTrue();
+
+		assertThat(adapter.isOpen()).isFalse();
+		assertThat(adapter.pendingClose()).isEqualTo(CloseStatus.NORMAL);
+		assertThatThrownBy(() -> adapter.sendMessage(new TextMessage("e"))).isInstanceOf(IOException.class);
+	}
+}
@@ -34,6 +34,8 @@ const compilers: compilerLink[] = [
   },
 ];
 
+const utf8Decoder = new TextDecoder();
+
 const CompilerLayout: React.FC = () => {
   const [clearTerminal, setClearTerminal] = useState<boolean>(false);
   const [output, setOutput] = useState<string>("");
@@ -60,6 +62,8 @@ const CompilerLayout: React.FC = () => {
 
     socketRef.current = new WebSocket("wss://websocket.cloudcompiler.live/ws");
     // socketRef.current = new WebSocket("ws://localhost:8009/ws");
+    // output may arrive as binary frames carrying UTF-8 JSON (app.jobs.output.byte-path)
+    socketRef.current.binaryType = "arraybuffer";
 
     socketRef.current.onopen = () => {
       console.log("Connected to WebSocket");
@@ -76,7 +80,11 @@ const CompilerLayout: React.FC = () => {
     };
 
     socketRef.current.onmessage = (event) => {
-      const data = JSON.parse(event.data);
+      const text =
+        typeof event.data === "string"
+          ? event.data
+          : utf8Decoder.decode(event.data);
+      const data = JSON.parse(text);
       // console.log("Received:", data);
 
       if (data.type === "SESSION_CREATED") {
@@ -0,0 +1,25 @@
+package com.compiler.websocket.messaging;
+
+public class ChannelNaming {
+
+    private ChannelNaming() {}
+
+    public static String jobChannel(String jobId) {
+        return "job:" + jobId;
+    }
+
+    public static String inputChannel(String jobId) {
+        return "input:" + jobId;
+    }
+
+    // capped stream holding a job's output for replay on reconnect
+    public static String jobStream(String jobId) {
+        return "job-stream:" + jobId;
+    }
+
+    // recorded output of a deterministic run, keyed by the hash of its source
+    public static String resultCache(String sourceHash) {
+        return "result-cache:" + sourceHash;
+    }
+
+}
\ No newline at end of file
@@ -13,7 +13,7 @@ import lombok.NoArgsConstructor;
 public class RedisPublisherPayload {
 
     @NotBlank
-    String event_type; // SESSION_CLOSED_EVENT, INPUT_EVENT
+    String event_type; // SESSION_CLOSED_EVENT, INPUT_EVENT, OUTPUT_PAUSE_EVENT, OUTPUT_RESUME_EVENT
 
     @NotBlank
     String content;
@@ -1,7 +1,7 @@
 const dotenv = require("dotenv");
 dotenv.config();
 const Redis = require("ioredis");
-const { activeJobs } = require("./script")
+const { activeJobs, pauseJob, resumeJob } = require("./script")
 
 
 const REDIS_CONFIG_ENDPOINT = process.env.REDIS_CONFIG_ENDPOINT;
@@ -52,6 +52,11 @@ subscriber.on('message', (channel, message) => {
         // Kill the PTY process
         console.log("\nKilling PTY process...");
         process.kill(ptyProcess.pid, 'SIGKILL');  // or 'SIGTERM' for graceful
+    } else if (data.event_type === "OUTPUT_PAUSE_EVENT") {
+        // client is behind: stop reading output until the backend drains
+        pauseJob(job_id);
+    } else if (data.event_type === "OUTPUT_RESUME_EVENT") {
+        resumeJob(job_id);
     }
 });
 
@@ -0,0 +1,34 @@
+package com.compiler.worker.config;
+
+import com.compiler.javacompiler.InMemoryJavaCompiler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+
+import java.util.List;
+
+@Configuration
+public class WorkerConfig {
+
+    /**
+     * One compiler for the whole worker: it stays JIT-warm across jobs.
+     */
+    @Bean
+    public InMemoryJavaCompiler inMemoryJavaCompiler(@Value("${app.worker.javac-options:-proc:none}") String options) {
+        return new InMemoryJavaCompiler(List.of(options.trim().split("\\s+")));
+    }
+
+    /**
+     * Delivers input:<jobId> events (INPUT_EVENT, SESSION_CLOSED_EVENT, OUTPUT_PAUSE/RESUME_EVENT) to running jobs.
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.setTopicSerializer(new StringRedisSerializer());
+        return container;
+    }
+}
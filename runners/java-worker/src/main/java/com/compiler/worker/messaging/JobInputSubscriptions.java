@@ -0,0 +1,63 @@
+package com.compiler.worker.messaging;
+
+import com.compiler.websocket.messaging.ChannelNaming;
+import com.compiler.websocket.model.RedisPublisherPayload;
+import com.compiler.worker.service.RunningJob;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+/**
+ * Routes {@code input:<jobId>} events to the running program, like redis-subscriber.js.
+ */
+@Component
+public class JobInputSubscriptions {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobInputSubscriptions.class);
+
+    private final RedisMessageListenerContainer container;
+    private final ObjectMapper objectMapper;
+
+    public JobInputSubscriptions(RedisMessageListenerContainer container, ObjectMapper objectMapper) {
+        this.container = container;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * @return the listener to hand back to {@link #unsubscribe} once the job is over
+     */
+    public MessageListener subscribe(RunningJob job) {
+        MessageListener listener = (message, pattern) -> handle(job, message.getBody());
+        container.addMessageListener(listener, new ChannelTopic(ChannelNaming.inputChannel(job.jobId())));
+        return listener;
+    }
+
+    public void unsubscribe(RunningJob job, MessageListener listener) {
+        container.removeMessageListener(listener, new ChannelTopic(ChannelNaming.inputChannel(job.jobId())));
+    }
+
+    void handle(RunningJob job, byte[] body) {
+        RedisPublisherPayload event;
+        try {
+            event = objectMapper.readValue(body, RedisPublisherPayload.class);
+        } catch (Exception e) {
+            logger.warn("Ignoring malformed input event for job {}: {}", job.jobId(), e.getMessage());
+            return;
+        }
+        if (event.getEvent_type() == null) return;
+
+        switch (event.getEvent_type()) {
+            case "INPUT_EVENT" -> {
+                if (event.getContent() != null) job.write(event.getContent());
+            }
+            case "SESSION_CLOSED_EVENT" -> job.terminate("Session closed");
+            case "OUTPUT_PAUSE_EVENT" -> job.pause();
+            case "OUTPUT_RESUME_EVENT" -> job.resume();
+            default -> logger.debug("Unknown event {} for job {}", event.getEvent_type(), job.jobId());
+        }
+    }
+}
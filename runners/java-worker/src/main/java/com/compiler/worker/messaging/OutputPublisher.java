@@ -0,0 +1,98 @@
+package com.compiler.worker.messaging;
+
+import com.compiler.websocket.messaging.ChannelNaming;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Publishes job output on {@code job:<jobId>} in the format the node runners use:
+ * {@code {job_id, type, content}}, in that order so the backend can stop parsing early.
+ * <p>
+ * With {@code app.worker.output.transport=stream} output is also appended to
+ * {@code job-stream:<jobId>} for resume, exactly as send-output.js does.
+ */
+@Component
+public class OutputPublisher {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutputPublisher.class);
+
+    // XADD + PUBLISH in one round trip; the published payload is tagged with the entry id as "seq"
+    private static final RedisScript<String> APPEND_OUTPUT = new DefaultRedisScript<>("""
+            local id = redis.call("XADD", KEYS[1], "MAXLEN", "~", ARGV[1], "*", "data", ARGV[4])
+            redis.call("EXPIRE", KEYS[1], ARGV[2])
+            redis.call("PUBLISH", ARGV[3], '{"seq":"' .. id .. '",' .. string.sub(ARGV[4], 2))
+            return id
+            """, String.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final boolean stream;
+    private final String streamMaxLen;
+    private final String streamTtlSeconds;
+
+    public OutputPublisher(StringRedisTemplate redisTemplate,
+                           ObjectMapper objectMapper,
+                           @Value("${app.worker.output.transport:pubsub}") String transport,
+                           @Value("${app.worker.output.stream-maxlen:10000}") long streamMaxLen,
+                           @Value("${app.worker.output.stream-ttl-seconds:600}") long streamTtlSeconds) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.stream = "stream".equalsIgnoreCase(transport);
+        this.streamMaxLen = Long.toString(streamMaxLen);
+        this.streamTtlSeconds = Long.toString(streamTtlSeconds);
+    }
+
+    public void stdout(String jobId, String content) {
+        publish(jobId, "STDOUT", content);
+    }
+
+    public void stderr(String jobId, String content) {
+        publish(jobId, "STDERR", content);
+    }
+
+    public void completion(String jobId, int exitCode, long executionMillis) {
+        Map<String, Object> content = new LinkedHashMap<>();
+        content.put("exitCode", exitCode);
+        content.put("metrics", Map.of("executionTime", executionMillis));
+        publish(jobId, "COMPLETION", content);
+    }
+
+    public void termination(String jobId, int exitCode, String reason, long executionMillis) {
+        Map<String, Object> content = new LinkedHashMap<>();
+        content.put("exitCode", exitCode);
+        content.put("reason", reason);
+        content.put("metrics", Map.of("executionTime", executionMillis));
+        publish(jobId, "TERMINATION", content);
+    }
+
+    private void publish(String jobId, String type, Object content) {
+        Map<String, Object> message = new LinkedHashMap<>();
+        message.put("job_id", jobId);
+        message.put("type", type);
+        message.put("content", content);
+        try {
+            String payload = objectMapper.writeValueAsString(message);
+            if (stream) {
+                redisTemplate.execute(APPEND_OUTPUT, List.of(ChannelNaming.jobStream(jobId)),
+                        streamMaxLen, streamTtlSeconds, ChannelNaming.jobChannel(jobId), payload);
+            } else {
+                redisTemplate.convertAndSend(ChannelNaming.jobChannel(jobId), payload);
+            }
+        } catch (JsonProcessingException e) {
+            logger.error("Failed to encode {} for job {}: {}", type, jobId, e.getMessage());
+        } catch (Exception e) {
+            logger.error("Error while publishing {} for job {} to redis {}", type, jobId, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.compiler.worker.service;
+
+import com.compiler.javacompiler.CompileResult;
+import com.compiler.javacompiler.InMemoryJavaCompiler;
+import com.compiler.websocket.model.SqsPayload;
+import com.compiler.worker.messaging.JobInputSubscriptions;
+import com.compiler.worker.messaging.OutputPublisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.stereotype.Service;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+
+/**
+ * Compiles and runs one submission, publishing its output the way runner.js did.
+ * <p>
+ * javac runs in-process on a few platform threads ({@code compile-threads}; the compiler keeps
+ * a file manager per thread, so it is not run on the per-job virtual threads). The program runs in its own JVM with
+ * {@code -Xmx<job-memory-mb>m} in {@code jobs/<jobId>/}, inside a {@link JobSandbox}. stdout and stderr are pumped on
+ * virtual threads; a job is killed when it exceeds {@code max-run-seconds}, produces more than
+ * {@code max-output-lines} lines, or goes {@code idle-timeout-seconds} without output.
+ */
+@Service
+public class JobRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobRunner.class);
+
+    private static final String JAVA = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+
+    private final InMemoryJavaCompiler compiler;
+    private final OutputPublisher outputPublisher;
+    private final JobInputSubscriptions inputSubscriptions;
+    private final JobSandbox sandbox;
+    private final Path jobsDir;
+    private final long jobMemoryMb;
+    private final long maxRunMillis;
+    private final long idleTimeoutNanos;
+    private final int maxOutputLines;
+    private final ExecutorService compileExecutor;
+
+    public JobRunner(InMemoryJavaCompiler compiler,
+                     OutputPublisher outputPublisher,
+                     JobInputSubscriptions inputSubscriptions,
+                     JobSandbox sandbox,
+                     @Value("${app.worker.jobs-dir:jobs}") Path jobsDir,
+                     @Value("${app.worker.job-memory-mb:800}") long jobMemoryMb,
+                     @Value("${app.worker.max-run-seconds:300}") long maxRunSeconds,
+                     @Value("${app.worker.idle-timeout-seconds:30}") long idleTimeoutSeconds,
+                     @Value("${app.worker.max-output-lines:5000}") int maxOutputLines,
+                     @Value("${app.worker.compile-threads:2}") int compileThreads) {
+        this.compiler = compiler;
+        this.outputPublisher = outputPublisher;
+        this.inputSubscriptions = inputSubscriptions;
+        this.sandbox = sandbox;
+        this.jobsDir = jobsDir.toAbsolutePath();
+        this.jobMemoryMb = jobMemoryMb;
+        this.maxRunMillis = TimeUnit.SECONDS.toMillis(maxRunSeconds);
+        this.idleTimeoutNanos = TimeUnit.SECONDS.toNanos(idleTimeoutSeconds);
+        this.maxOutputLines = maxOutputLines;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.compileExecutor = Executors.newFixedThreadPool(compileThreads, runnable -> {
+            Thread t = new Thread(runnable);
+            t.setName("javac-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Runs the job to completion on the calling thread. Never throws: every failure ends
+     * with a COMPLETION or TERMINATION message so the client is not left waiting.
+     */
+    public void run(SqsPayload payload) {
+        String jobId = payload.getJob_id();
+        CompileResult compiled;
+        try {
+            compiled = compileExecutor.submit(() -> compiler.compile(payload.getFile_name(), payload.getSource_code())).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (ExecutionException e) {
+            logger.error("Compilation of job {} failed: {}", jobId, e.getCause().getMessage());
+            outputPublisher.termination(jobId, 2, "Runner error: compilation failed", 0);
+            return;
+        }
+        if (!compiled.diagnostics().isEmpty()) {
+            outputPublisher.stderr(jobId, compiled.diagnostics());
+        }
+        if (!compiled.success()) {
+            outputPublisher.completion(jobId, 1, compiled.compileMillis());
+            return;
+        }
+
+        Path dir = jobsDir.resolve(jobId);
+        // closed before the directory is deleted, so nothing the program left behind still writes to it
+        try (JobSandbox.Sandbox jobSandbox = sandbox.open(dir)) {
+            writeClasses(dir, compiled.classes());
+            execute(jobId, payload.getFile_name(), jobSandbox);
+        } catch (Exception e) {
+            logger.error("Job {} failed: {}", jobId, e.getMessage());
+            outputPublisher.termination(jobId, 2, "Runner error: " + e.getMessage(), 0);
+        } finally {
+            try {
+                FileSystemUtils.deleteRecursively(dir);
+            } catch (IOException e) {
+                logger.warn("Could not delete {}: {}", dir, e.getMessage());
+            }
+        }
+    }
+
+    private void execute(String jobId, String mainClass, JobSandbox.Sandbox jobSandbox) throws IOException, InterruptedException {
+        Process process = jobSandbox.start(command(mainClass, jobSandbox.dir()));
+        RunningJob job = new RunningJob(jobId, process);
+        MessageListener input = inputSubscriptions.subscribe(job);
+
+        AtomicInteger lines = new AtomicInteger();
+        Thread stdout = Thread.ofVirtual().name("stdout-" + jobId)
+                .start(() -> pump(job, process.getInputStream(), lines, outputPublisher::stdout));
+        Thread stderr = Thread.ofVirtual().name("stderr-" + jobId)
+                .start(() -> pump(job, process.getErrorStream(), lines, outputPublisher::stderr));
+
+        try {
+            while (!process.waitFor(250, TimeUnit.MILLISECONDS)) {
+                if (job.elapsedMillis() > maxRunMillis) {
+                    job.terminate("Time limit exceeded: ran for more than " + maxRunMillis / 1000 + " seconds");
+                } else if (!job.isPaused() && job.idleNanos() > idleTimeoutNanos) {
+                    job.terminate("Process appears to be stuck (no output for "
+                            + TimeUnit.NANOSECONDS.toSeconds(idleTimeoutNanos) + "+ seconds)");
+                }
+            }
+            // everything the program wrote goes out before the terminal message
+            stdout.join();
+            stderr.join();
+        } finally {
+            inputSubscriptions.unsubscribe(job, input);
+            if (process.isAlive()) process.destroyForcibly();
+        }
+
+        String reason = job.terminationReason();
+        if (reason != null) {
+            outputPublisher.termination(jobId, 2, reason, job.elapsedMillis());
+        } else {
+            outputPublisher.completion(jobId, process.exitValue(), job.elapsedMillis());
+        }
+    }
+
+    /**
+     * SerialGC and a single visible CPU keep each program's JVM small, so several jobs share
+     * the box without each spinning up a full set of GC and compiler threads. Temporary files and
+     * user.home stay in the job directory rather than a /tmp that every job can read.
+     */
+    private List<String> command(String mainClass, Path dir) {
+        return List.of(JAVA,
+                "-Xmx" + jobMemoryMb + "m",
+                "-XX:+UseSerialGC",
+                "-XX:ActiveProcessorCount=1",
+                "-Dfile.encoding=UTF-8",
+                "-Djava.io.tmpdir=" + dir,
+                "-Duser.home=" + dir,
+                "-cp", dir.toString(),
+                mainClass);
+    }
+
+    private void pump(RunningJob job, InputStream stream, AtomicInteger lines, BiConsumer<String, String> publish) {
+        char[] buffer = new char[4096];
+        try (Reader reader = new InputStreamReader(stream, StandardCharsets.UTF_8)) {
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                if (job.terminationReason() != null) continue; // drain, but stop publishing
+                job.touch();
+
+                String chunk = new String(buffer, 0, read);
+                if (lines.addAndGet(countLines(chunk)) > maxOutputLines) {
+                    job.terminate("Output lines limit exceeded: > " + maxOutputLines + " lines");
+                    continue;
+                }
+                // the terminal expects CRLF, which the node runner's pty produced
+                publish.accept(job.jobId(), chunk.replace("\n", "\r\n"));
+
+                // backpressure: leave the pipe full so the program blocks on its next write
+                while (job.isPaused() && job.process().isAlive() && job.terminationReason() == null) {
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+                }
+            }
+        } catch (IOException e) {
+            // stream closed when the process was killed
+        }
+    }
+
+    private static int countLines(String chunk) {
+        int count = 0;
+        for (int i = 0; i < chunk.length(); i++) {
+            if (chunk.charAt(i) == '\n') count++;
+        }
+        return count;
+    }
+
+    private static void writeClasses(Path dir, Map<String, byte[]> classes) throws IOException {
+        for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+            Path file = dir.resolve(entry.getKey().replace('.', '/') + ".class");
+            Files.createDirectories(file.getParent());
+            Files.write(file, entry.getValue());
+        }
+    }
+}
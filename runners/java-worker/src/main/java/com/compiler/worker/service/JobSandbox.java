@@ -0,0 +1,175 @@
+package com.compiler.worker.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What a user program gets to see of the worker.
+ * <p>
+ * Every program starts with an empty environment: only the variables named in {@code job-env} are
+ * copied from the worker's, and HOME is its job directory, so the AWS credentials and Redis endpoint
+ * the worker was started with never reach it. The job directory is created owner-only.
+ * <p>
+ * With {@code sandbox-uids} set (e.g. {@code 20001-20064}), each running program also gets a uid of
+ * its own from that pool, switched to with setpriv: it owns its job directory, cannot read the other
+ * jobs' directories, and cannot signal other programs or the worker. Whatever it left running is
+ * killed before the uid goes back to the pool. That needs the worker to run as root and at least one
+ * uid per job slot; without it programs run as the worker's own user.
+ */
+@Component
+public class JobSandbox {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobSandbox.class);
+
+    private static final FileAttribute<?> OWNER_ONLY =
+            PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------"));
+
+    private final List<String> jobEnv;
+    private final Queue<Integer> freeUids = new ConcurrentLinkedQueue<>();
+    private final boolean isolated;
+
+    public JobSandbox(JobSlots slots,
+                      @Value("${app.worker.sandbox-uids:}") String sandboxUids,
+                      @Value("${app.worker.job-env:PATH,LANG,LC_ALL,TZ}") String jobEnv) {
+        this.jobEnv = split(jobEnv);
+        for (String range : split(sandboxUids)) {
+            int dash = range.indexOf('-');
+            int first = Integer.parseInt(range.substring(0, dash < 0 ? range.length() : dash).trim());
+            int last = dash < 0 ? first : Integer.parseInt(range.substring(dash + 1).trim());
+            if (first <= 0 || last < first) {
+                throw new IllegalStateException("app.worker.sandbox-uids: " + range + " is not a range of unprivileged uids");
+            }
+            for (int uid = first; uid <= last; uid++) freeUids.add(uid);
+        }
+        this.isolated = !freeUids.isEmpty();
+        if (isolated && freeUids.size() < slots.capacity()) {
+            throw new IllegalStateException("app.worker.sandbox-uids has " + freeUids.size()
+                    + " uids for " + slots.capacity() + " job slots");
+        }
+        if (!isolated) {
+            logger.warn("app.worker.sandbox-uids is not set, programs run as the worker's user");
+        }
+    }
+
+    /**
+     * Creates {@code dir} for one program, owned by the uid it will run as. Close the sandbox
+     * once the program has exited.
+     */
+    public Sandbox open(Path dir) throws IOException {
+        Integer uid = null;
+        if (isolated) {
+            uid = freeUids.poll();
+            // one uid per slot, checked at startup
+            if (uid == null) throw new IllegalStateException("No sandbox uid is free");
+        }
+        try {
+            Path jobsDir = Files.createDirectories(dir.getParent());
+            if (dir.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+                Files.createDirectory(dir, OWNER_ONLY);
+            } else {
+                Files.createDirectory(dir);
+            }
+            if (uid != null) {
+                Files.setAttribute(dir, "unix:uid", uid);
+                Files.setAttribute(dir, "unix:gid", uid);
+                // the program has to pass through the jobs directory to reach its own
+                Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(jobsDir);
+                if (permissions.add(PosixFilePermission.OTHERS_EXECUTE)) {
+                    Files.setPosixFilePermissions(jobsDir, permissions);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            if (uid != null) freeUids.add(uid);
+            throw e;
+        }
+        return new Sandbox(dir, uid);
+    }
+
+    private static List<String> split(String list) {
+        List<String> items = new ArrayList<>();
+        for (String item : list.split(",")) {
+            if (!item.isBlank()) items.add(item.trim());
+        }
+        return items;
+    }
+
+    /**
+     * One program's job directory and, when isolated, its uid.
+     */
+    public final class Sandbox implements AutoCloseable {
+
+        private final Path dir;
+        private final Integer uid;
+
+        private Sandbox(Path dir, Integer uid) {
+            this.dir = dir;
+            this.uid = uid;
+        }
+
+        public Path dir() {
+            return dir;
+        }
+
+        /**
+         * Starts {@code command} in the job directory with the allow-listed environment, as the sandbox uid.
+         */
+        public Process start(List<String> command) throws IOException {
+            ProcessBuilder pb = new ProcessBuilder(asUid(command)).directory(dir.toFile());
+            Map<String, String> env = pb.environment();
+            env.clear();
+            for (String name : jobEnv) {
+                String value = System.getenv(name);
+                if (value != null) env.put(name, value);
+            }
+            env.put("HOME", dir.toString());
+            return pb.start();
+        }
+
+        /**
+         * Kills anything the program left running under its uid and returns the uid to the pool.
+         */
+        @Override
+        public void close() {
+            if (uid == null) return;
+            try {
+                // as the uid itself, kill -1 reaches exactly that uid's processes
+                Process kill = new ProcessBuilder(asUid(List.of("kill", "-KILL", "-1")))
+                        .redirectErrorStream(true)
+                        .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                        .start();
+                if (!kill.waitFor(5, TimeUnit.SECONDS)) kill.destroyForcibly();
+            } catch (IOException e) {
+                logger.warn("Could not clean up after uid {}: {}", uid, e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                freeUids.add(uid);
+            }
+        }
+
+        private List<String> asUid(List<String> command) {
+            if (uid == null) return command;
+            List<String> wrapped = new ArrayList<>(List.of("setpriv",
+                    "--reuid=" + uid, "--regid=" + uid, "--clear-groups",
+                    "--inh-caps=-all", "--no-new-privs", "--"));
+            wrapped.addAll(command);
+            return wrapped;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.compiler.worker.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * How many programs this worker runs at once.
+ * <p>
+ * The limit is the smaller of {@code max-jobs} (one per core when unset) and how many
+ * {@code job-memory-mb} heaps fit in {@code memory-budget-mb}. The poller never asks SQS
+ * for more messages than there are free slots, so nothing sits invisible in a local queue.
+ */
+@Component
+public class JobSlots {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobSlots.class);
+
+    private final int capacity;
+    private final Semaphore slots;
+
+    public JobSlots(@Value("${app.worker.max-jobs:0}") int maxJobs,
+                    @Value("${app.worker.memory-budget-mb:4096}") long memoryBudgetMb,
+                    @Value("${app.worker.job-memory-mb:800}") long jobMemoryMb) {
+        int byCpu = maxJobs > 0 ? maxJobs : Runtime.getRuntime().availableProcessors();
+        int byMemory = (int) Math.max(1, memoryBudgetMb / jobMemoryMb);
+        this.capacity = Math.min(byCpu, byMemory);
+        this.slots = new Semaphore(capacity);
+        logger.info("Running up to {} jobs at once (cpu limit {}, memory limit {})", capacity, byCpu, byMemory);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int available() {
+        return slots.availablePermits();
+    }
+
+    /**
+     * Block until at least one slot is free, then take as many as are free, up to {@code max}.
+     */
+    public int acquireUpTo(int max) throws InterruptedException {
+        slots.acquire();
+        int taken = 1;
+        while (taken < max && slots.tryAcquire()) {
+            taken++;
+        }
+        return taken;
+    }
+
+    public void release(int count) {
+        if (count > 0) slots.release(count);
+    }
+}
@@ -0,0 +1,90 @@
+package com.compiler.worker.service;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A user program in flight: its process, stdin, and the state the input listener and
+ * output pumps share. The node runners kept the same state in script.js.
+ */
+public class RunningJob {
+
+    private final String jobId;
+    private final Process process;
+    private final Writer stdin;
+    private final long startedAtNanos = System.nanoTime();
+
+    // backend flow control: stop reading output until OUTPUT_RESUME_EVENT
+    private volatile boolean paused;
+    private volatile long lastActivityNanos = startedAtNanos;
+    private final AtomicReference<String> terminationReason = new AtomicReference<>();
+
+    public RunningJob(String jobId, Process process) {
+        this.jobId = jobId;
+        this.process = process;
+        this.stdin = new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8);
+    }
+
+    public String jobId() {
+        return jobId;
+    }
+
+    public Process process() {
+        return process;
+    }
+
+    /**
+     * Forward terminal input. xterm sends Enter as CR; the pty the node runner used turned
+     * that into LF, so do the same for a plain pipe.
+     */
+    public synchronized void write(String input) {
+        try {
+            touch();
+            stdin.write(input.replace("\r\n", "\n").replace('\r', '\n'));
+            stdin.flush();
+        } catch (IOException e) {
+            // program already exited or closed stdin
+        }
+    }
+
+    /**
+     * Kill the program; the first reason wins and is reported in TERMINATION.
+     */
+    public void terminate(String reason) {
+        if (terminationReason.compareAndSet(null, reason)) {
+            process.destroyForcibly();
+        }
+    }
+
+    public String terminationReason() {
+        return terminationReason.get();
+    }
+
+    public void pause() {
+        paused = true;
+    }
+
+    public void resume() {
+        paused = false;
+        touch();
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    public void touch() {
+        lastActivityNanos = System.nanoTime();
+    }
+
+    public long idleNanos() {
+        return System.nanoTime() - lastActivityNanos;
+    }
+
+    public long elapsedMillis() {
+        return (System.nanoTime() - startedAtNanos) / 1_000_000;
+    }
+}
@@ -0,0 +1,149 @@
+package com.compiler.worker.service;
+
+import com.compiler.websocket.model.SqsPayload;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.Message;
+
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Long-polls the Java runner queue, one receive per batch of free slots.
+ * <p>
+ * poller.js received a single message and ran it before asking again. Here the poller takes
+ * every free {@link JobSlots slot} (at most 10, the SQS limit), asks for that many messages
+ * with a {@code receive-wait-seconds} long poll, and hands each one to a virtual thread.
+ * A message is deleted once its job has finished, and kept invisible until then by the
+ * {@link VisibilityExtender}.
+ */
+@Service
+public class SqsPoller implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(SqsPoller.class);
+
+    private static final int MAX_RECEIVE = 10;
+
+    private final SqsClient sqsClient;
+    private final ObjectMapper objectMapper;
+    private final JobSlots jobSlots;
+    private final JobRunner jobRunner;
+    private final VisibilityExtender visibilityExtender;
+    private final String queueUrl;
+    private final int waitSeconds;
+
+    private volatile boolean running;
+    private Thread poller;
+
+    public SqsPoller(SqsClient sqsClient,
+                     ObjectMapper objectMapper,
+                     JobSlots jobSlots,
+                     JobRunner jobRunner,
+                     VisibilityExtender visibilityExtender,
+                     @Value("${aws.sqs.queue-url}") String queueUrl,
+                     @Value("${app.worker.receive-wait-seconds:20}") int waitSeconds) {
+        this.sqsClient = sqsClient;
+        this.objectMapper = objectMapper;
+        this.jobSlots = jobSlots;
+        this.jobRunner = jobRunner;
+        this.visibilityExtender = visibilityExtender;
+        this.queueUrl = queueUrl;
+        this.waitSeconds = waitSeconds;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        poller = Thread.ofPlatform().name("sqs-poller").daemon(false).start(this::pollLoop);
+        logger.info("Polling {} with {} job slots", queueUrl, jobSlots.capacity());
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (poller != null) poller.interrupt();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void pollLoop() {
+        while (running) {
+            try {
+                pollOnce();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                logger.error("Error polling SQS: {}", e.getMessage());
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * One receive: wait for a free slot, fetch up to as many messages as there are free slots,
+     * start them, and give back the slots nothing arrived for.
+     */
+    void pollOnce() throws InterruptedException {
+        int slots = jobSlots.acquireUpTo(MAX_RECEIVE);
+        List<Message> messages;
+        try {
+            messages = sqsClient.receiveMessage(b -> b
+                    .queueUrl(queueUrl)
+                    .maxNumberOfMessages(slots)
+                    .waitTimeSeconds(waitSeconds)
+                    .visibilityTimeout(visibilityExtender.visibilityTimeoutSeconds())).messages();
+        } catch (RuntimeException e) {
+            jobSlots.release(slots);
+            throw e;
+        }
+
+        jobSlots.release(slots - messages.size());
+        for (Message message : messages) {
+            Thread.ofVirtual().name("job-" + message.messageId()).start(() -> handle(message));
+        }
+    }
+
+    private void handle(Message message) {
+        SqsPayload payload;
+        try {
+            payload = objectMapper.readValue(message.body(), SqsPayload.class);
+        } catch (Exception e) {
+            logger.error("Dropping unreadable message {}: {}", message.messageId(), e.getMessage());
+            delete(message);
+            jobSlots.release(1);
+            return;
+        }
+
+        String jobId = payload.getJob_id();
+        ScheduledFuture<?> heartbeat = visibilityExtender.keepInvisible(jobId, message.receiptHandle());
+        try {
+            logger.info("Running job {}", jobId);
+            jobRunner.run(payload);
+        } finally {
+            heartbeat.cancel(false);
+            delete(message);
+            jobSlots.release(1);
+        }
+    }
+
+    private void delete(Message message) {
+        try {
+            sqsClient.deleteMessage(b -> b.queueUrl(queueUrl).receiptHandle(message.receiptHandle()));
+        } catch (Exception e) {
+            logger.warn("Failed to delete message {}: {}", message.messageId(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.compiler.worker.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.sqs.SqsClient;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a message invisible while its program runs, so a long interactive session is not
+ * redelivered to another worker. Every {@code visibility-timeout-seconds / 2} the timeout is
+ * pushed out again; a crashed worker stops extending and SQS hands the job to someone else.
+ */
+@Component
+public class VisibilityExtender {
+
+    private static final Logger logger = LoggerFactory.getLogger(VisibilityExtender.class);
+
+    private final SqsClient sqsClient;
+    private final String queueUrl;
+    private final int visibilityTimeoutSeconds;
+    private final ScheduledExecutorService scheduler;
+
+    public VisibilityExtender(SqsClient sqsClient,
+                              @Value("${aws.sqs.queue-url}") String queueUrl,
+                              @Value("${app.worker.visibility-timeout-seconds:60}") int visibilityTimeoutSeconds) {
+        this.sqsClient = sqsClient;
+        this.queueUrl = queueUrl;
+        this.visibilityTimeoutSeconds = visibilityTimeoutSeconds;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread t = new Thread(runnable);
+            t.setName("sqs-visibility");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public int visibilityTimeoutSeconds() {
+        return visibilityTimeoutSeconds;
+    }
+
+    public ScheduledFuture<?> keepInvisible(String jobId, String receiptHandle) {
+        long period = Math.max(1, visibilityTimeoutSeconds / 2);
+        // the SQS call itself runs off the scheduler thread so one slow call does not delay the rest
+        return scheduler.scheduleAtFixedRate(() -> Thread.ofVirtual().start(() -> {
+            try {
+                sqsClient.changeMessageVisibility(b -> b
+                        .queueUrl(queueUrl)
+                        .receiptHandle(receiptHandle)
+                        .visibilityTimeout(visibilityTimeoutSeconds));
+            } catch (Exception e) {
+                logger.warn("Failed to extend visibility for job {}: {}", jobId, e.getMessage());
+            }
+        }), period, period, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,148 @@
+package com.compiler.worker.service;
+
+import com.compiler.javacompiler.InMemoryJavaCompiler;
+import com.compiler.websocket.model.SqsPayload;
+import com.compiler.worker.messaging.JobInputSubscriptions;
+import com.compiler.worker.messaging.OutputPublisher;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class JobRunnerTests {
+
+	@TempDir
+	Path jobsDir;
+
+	private final OutputPublisher publisher = mock(OutputPublisher.class);
+	private final JobInputSubscriptions inputs = mock(JobInputSubscriptions.class);
+
+	private JobRunner runner(int maxOutputLines) {
+		return runner(maxOutputLines, "");
+	}
+
+	private JobRunner runner(int maxOutputLines, String sandboxUids) {
+		JobSandbox sandbox = new JobSandbox(new JobSlots(1, 4096, 64), sandboxUids, "PATH,LANG,LC_ALL,TZ");
+		return new JobRunner(new InMemoryJavaCompiler(List.of("-proc:none")), publisher, inputs, sandbox,
+				jobsDir, 64, 20, 20, maxOutputLines, 1);
+	}
+
+	private String stdout(String jobId) {
+		ArgumentCaptor<String> out = ArgumentCaptor.forClass(String.class);
+		verify(publisher, atLeastOnce()).stdout(eq(jobId), out.capture());
+		return String.join("", out.getAllValues());
+	}
+
+	private static SqsPayload payload(String jobId, String source) {
+		return SqsPayload.builder().job_id(jobId).language("java").file_name("Main").source_code(source).build();
+	}
+
+	@Test
+	void runsProgramAndCompletesWithItsExitCode() throws Exception {
+		runner(5000).run(payload("job-1", """
+				public class Main {
+				    public static void main(String[] args) {
+				        System.out.println("hello");
+				        System.exit(3);
+				    }
+				}
+				"""));
+
+		ArgumentCaptor<String> out = ArgumentCaptor.forClass(String.class);
+		verify(publisher, atLeastOnce()).stdout(eq("job-1"), out.capture());
+		assertThat(String.join("", out.getAllValues())).isEqualTo("hello\r\n");
+		verify(publisher).completion(eq("job-1"), eq(3), anyLong());
+		verify(inputs).unsubscribe(any(), any());
+		assertThat(Files.exists(jobsDir.resolve("job-1"))).isFalse();
+	}
+
+	@Test
+	void programsSeeNoneOfTheWorkersEnvironment() {
+		// set for the test JVM by surefire, as they are for the worker in production
+		assertThat(System.getenv("AWS_SECRET_KEY")).isNotNull();
+
+		runner(5000).run(payload("job-4", """
+				public class Main {
+				    public static void main(String[] args) {
+				        System.getenv().forEach((name, value) -> System.out.println(name + "=" + value));
+				        System.out.println("dir=" + System.getProperty("user.dir"));
+				    }
+				}
+				"""));
+
+		String env = stdout("job-4");
+		verify(publisher).completion(eq("job-4"), eq(0), anyLong());
+		assertThat(env).doesNotContain(System.getenv("AWS_SECRET_KEY"), System.getenv("REDIS_CONFIG_ENDPOINT"));
+		assertThat(env.lines().map(line -> line.substring(0, line.indexOf('='))))
+				.containsOnlyOnce("HOME")
+				.isSubsetOf("PATH", "LANG", "LC_ALL", "TZ", "HOME", "dir");
+		assertThat(env).contains("HOME=" + jobsDir.resolve("job-4") + "\r\n");
+	}
+
+	@Test
+	void isolatedProgramsRunAsTheirOwnUidAndCannotReachOtherJobs() throws Exception {
+		// switching uids needs root, setpriv and a JDK other users can reach, as in the worker's image
+		assumeTrue("root".equals(System.getProperty("user.name")) && Files.isExecutable(Path.of("/usr/bin/setpriv")));
+		for (Path dir = Path.of(System.getProperty("java.home")); dir != null; dir = dir.getParent()) {
+			assumeTrue(Files.getPosixFilePermissions(dir).contains(PosixFilePermission.OTHERS_EXECUTE));
+		}
+		Path other = Files.createDirectories(jobsDir.resolve("job-other"),
+				PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+		Files.writeString(other.resolve("Main.java"), "secret");
+
+		runner(5000, "20001").run(payload("job-5", """
+				import java.nio.file.*;
+
+				public class Main {
+				    public static void main(String[] args) throws Exception {
+				        System.out.println("uid=" + Files.getAttribute(Path.of("/proc/self"), "unix:uid"));
+				        try {
+				            Files.list(Path.of("../job-other")).count();
+				            System.out.println("sibling=readable");
+				        } catch (java.io.IOException e) {
+				            System.out.println("sibling=denied");
+				        }
+				        int kill = new ProcessBuilder("kill", "-0", "%d").start().waitFor();
+				        System.out.println("signal=" + (kill == 0 ? "sent" : "denied"));
+				    }
+				}
+				""".formatted(ProcessHandle.current().pid())));
+
+		verify(publisher).completion(eq("job-5"), eq(0), anyLong());
+		assertThat(stdout("job-5")).isEqualTo("uid=20001\r\nsibling=denied\r\nsignal=denied\r\n");
+		assertThat(Files.exists(jobsDir.resolve("job-5"))).isFalse();
+	}
+
+	@Test
+	void compileErrorsEndTheJobWithoutRunning() {
+		runner(5000).run(payload("job-2", "public class Main { int x = ; }"));
+
+		verify(publisher).stderr(eq("job-2"), contains("error:"));
+		verify(publisher).completion(eq("job-2"), eq(1), anyLong());
+		verifyNoInteractions(inputs);
+	}
+
+	@Test
+	void terminatesWhenOutputLimitIsExceeded() {
+		runner(100).run(payload("job-3", """
+				public class Main {
+				    public static void main(String[] args) {
+				        while (true) System.out.println("spam");
+				    }
+				}
+				"""));
+
+		verify(publisher).termination(eq("job-3"), eq(2), contains("Output lines limit exceeded"), anyLong());
+		verify(publisher, never()).completion(eq("job-3"), anyInt(), anyLong());
+	}
+}
@@ -0,0 +1,120 @@
+package com.compiler.worker.service;
+
+import com.compiler.websocket.model.SqsPayload;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class SqsPollerTests {
+
+	private final FakeSqs sqs = new FakeSqs();
+	private final JobRunner jobRunner = mock(JobRunner.class);
+	private final VisibilityExtender visibilityExtender = mock(VisibilityExtender.class);
+
+	private SqsPoller poller(JobSlots slots) {
+		when(visibilityExtender.visibilityTimeoutSeconds()).thenReturn(60);
+		when(visibilityExtender.keepInvisible(anyString(), anyString())).thenAnswer(inv -> mock(ScheduledFuture.class));
+		return new SqsPoller(sqs, new ObjectMapper(), slots, jobRunner, visibilityExtender, "java-queue", 20);
+	}
+
+	@Test
+	void slotsAreLimitedByCpuAndMemory() {
+		assertThat(new JobSlots(8, 4096, 800).capacity()).isEqualTo(5);
+		assertThat(new JobSlots(2, 4096, 800).capacity()).isEqualTo(2);
+		assertThat(new JobSlots(8, 512, 800).capacity()).isEqualTo(1);
+	}
+
+	@Test
+	void asksForOneMessagePerFreeSlotAndReturnsUnusedSlots() throws Exception {
+		JobSlots slots = new JobSlots(4, 4096, 800);
+		CountDownLatch release = new CountDownLatch(1);
+		doAnswer(inv -> {
+			release.await(1, TimeUnit.SECONDS);
+			return null;
+		}).when(jobRunner).run(any());
+		sqs.next.add(List.of(message("job-1"), message("job-2")));
+
+		poller(slots).pollOnce();
+
+		assertThat(sqs.receives.get(0).maxNumberOfMessages()).isEqualTo(4);
+		assertThat(sqs.receives.get(0).waitTimeSeconds()).isEqualTo(20);
+		// two jobs running, the other two slots were handed back
+		assertThat(slots.available()).isEqualTo(2);
+
+		release.countDown();
+		verify(jobRunner, timeout(1000).times(2)).run(any(SqsPayload.class));
+		verify(visibilityExtender, times(2)).keepInvisible(anyString(), anyString());
+		assertThat(waitFor(() -> sqs.deleted.size() == 2 && slots.available() == 4)).isTrue();
+		assertThat(sqs.deleted).containsExactlyInAnyOrder("rh-job-1", "rh-job-2");
+	}
+
+	@Test
+	void unreadableMessagesAreDeletedWithoutRunning() throws Exception {
+		JobSlots slots = new JobSlots(1, 4096, 800);
+		sqs.next.add(List.of(Message.builder().messageId("m").receiptHandle("rh-bad").body("not json").build()));
+
+		poller(slots).pollOnce();
+
+		assertThat(waitFor(() -> sqs.deleted.contains("rh-bad") && slots.available() == 1)).isTrue();
+		verifyNoInteractions(jobRunner);
+	}
+
+	private static Message message(String jobId) {
+		return Message.builder()
+				.messageId("msg-" + jobId)
+				.receiptHandle("rh-" + jobId)
+				.body("{\"job_id\":\"" + jobId + "\",\"language\":\"java\",\"file_name\":\"Main\",\"source_code\":\"code\"}")
+				.build();
+	}
+
+	private static boolean waitFor(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+		while (!condition.getAsBoolean()) {
+			if (System.nanoTime() > deadline) return false;
+			Thread.sleep(5);
+		}
+		return true;
+	}
+
+	private static final class FakeSqs implements SqsClient {
+		final List<ReceiveMessageRequest> receives = new ArrayList<>();
+		final List<List<Message>> next = new ArrayList<>();
+		final List<String> deleted = new CopyOnWriteArrayList<>();
+
+		@Override
+		public ReceiveMessageResponse receiveMessage(ReceiveMessageRequest request) {
+			receives.add(request);
+			List<Message> messages = next.isEmpty() ? List.of() : next.remove(0);
+			return ReceiveMessageResponse.builder().messages(messages).build();
+		}
+
+		@Override
+		public DeleteMessageResponse deleteMessage(DeleteMessageRequest request) {
+			deleted.add(request.receiptHandle());
+			return DeleteMessageResponse.builder().build();
+		}
+
+		@Override
+		public String serviceName() {
+			return "sqs";
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
@@ -10,6 +10,10 @@ const { terminateJob, addJob } = require("./script.js")
 
 let pending = Promise.resolve();
 
+// Long-lived in-memory javac (compile-service/, started by main.sh). When set, compilation skips
+// javac's start-up; if the service cannot be reached the job falls back to spawning javac.
+const JAVA_COMPILE_SERVICE_URL = process.env.JAVA_COMPILE_SERVICE_URL;
+
 
 const compileJavaCode = (file_name, job_id) => {
 
@@ -92,4 +96,44 @@ const compileJavaCode = (file_name, job_id) => {
 }
 
 
-module.exports = { compileJavaCode }
\ No newline at end of file
+// Same outcome as compileJavaCode: resolves when the classes are in jobs/, otherwise the
+// compiler output and a COMPLETION (exitCode 1) have been published and the promise rejects
+const compileWithService = async (file_name, source_code, job_id) => {
+    let result;
+    try {
+        const response = await fetch(`${JAVA_COMPILE_SERVICE_URL}/compile`, {
+            method: "POST",
+            headers: { "Content-Type": "application/json" },
+            body: JSON.stringify({ job_id, file_name, source_code }),
+        });
+        if (!response.ok) {
+            throw new Error(`compile service responded ${response.status}`);
+        }
+        result = await response.json();
+    } catch (err) {
+        console.error("Compile service unavailable, falling back to javac:", err.message);
+        return compileJavaCode(`${file_name}.java`, job_id);
+    }
+
+    console.log(`Compiled in ${result.compile_ms} ms by compile service`);
+    for (const message of result.messages) {
+        pending = pending.then(() =>
+            publishMessage(job_id, JSON.stringify(message))
+        );
+    }
+
+    if (!result.success) {
+        throw { job_id, "message": "Failed to compile code" };
+    }
+    return { job_id, "message": "java code compiled successfully" };
+}
+
+
+const compile = (file_name, source_code, job_id) => {
+    return JAVA_COMPILE_SERVICE_URL
+        ? compileWithService(file_name, source_code, job_id)
+        : compileJavaCode(`${file_name}.java`, job_id);
+}
+
+
+module.exports = { compileJavaCode, compile }
\ No newline at end of file
@@ -0,0 +1,12 @@
+package com.compiler.javacompiler;
+
+import java.util.Map;
+
+/**
+ * Outcome of one compilation.
+ *
+ * @param classes     binary class name -> class file, empty when compilation failed
+ * @param diagnostics javac-style report ("Main.java:3: error: ..."), empty when there is nothing to say
+ */
+public record CompileResult(boolean success, Map<String, byte[]> classes, String diagnostics, long compileMillis) {
+}
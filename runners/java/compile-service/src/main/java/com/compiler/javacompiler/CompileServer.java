@@ -0,0 +1,149 @@
+package com.compiler.javacompiler;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.logging.Logger;
+
+/**
+ * Local HTTP front for {@link InMemoryJavaCompiler}, started next to the Java runner.
+ * <p>
+ * {@code POST /compile} takes {@code {job_id, file_name, source_code}}, writes the class files to
+ * {@code COMPILE_CLASSES_DIR} (the runner's jobs directory) and answers
+ * {@code {success, compile_ms, messages}}, where messages are the STDERR/COMPLETION payloads the
+ * runner publishes on {@code job:<job_id>} unchanged. {@code GET /health} reports readiness.
+ */
+public class CompileServer {
+
+    private static final Logger logger = Logger.getLogger(CompileServer.class.getName());
+
+    private static final String WARMUP_SOURCE = """
+            import java.util.*;
+            public class Main {
+                public static void main(String[] args) {
+                    Scanner in = new Scanner(System.in);
+                    List<Integer> values = new ArrayList<>();
+                    for (int i = 0; i < 10; i++) values.add(i * i);
+                    System.out.println(values.stream().mapToInt(Integer::intValue).sum());
+                }
+            }
+            """;
+
+    private final InMemoryJavaCompiler compiler;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Path classesDir;
+
+    public CompileServer(InMemoryJavaCompiler compiler, Path classesDir) {
+        this.compiler = compiler;
+        this.classesDir = classesDir;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = Integer.parseInt(env("COMPILE_SERVICE_PORT", "8090"));
+        int threads = Integer.parseInt(env("COMPILE_SERVICE_THREADS", String.valueOf(Runtime.getRuntime().availableProcessors())));
+        int warmup = Integer.parseInt(env("COMPILE_SERVICE_WARMUP", "100"));
+        Path classesDir = Paths.get(env("COMPILE_CLASSES_DIR", "jobs")).toAbsolutePath();
+        List<String> options = List.of(env("JAVAC_OPTIONS", "-proc:none").trim().split("\\s+"));
+
+        InMemoryJavaCompiler compiler = new InMemoryJavaCompiler(options);
+        long start = System.nanoTime();
+        for (int i = 0; i < warmup; i++) {
+            compiler.compile("Main", WARMUP_SOURCE);
+        }
+        logger.info("Compiler warmed up with " + warmup + " compilations in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+
+        CompileServer server = new CompileServer(compiler, classesDir);
+        // loopback only: the runner is the sole client
+        HttpServer http = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        http.createContext("/compile", server::handleCompile);
+        http.createContext("/health", exchange -> respond(exchange, 200, "{\"status\":\"UP\"}".getBytes()));
+        http.setExecutor(Executors.newFixedThreadPool(threads));
+        http.start();
+        logger.info("Compile service listening on 127.0.0.1:" + port + ", writing classes to " + classesDir);
+    }
+
+    private static String env(String name, String fallback) {
+        String value = System.getenv(name);
+        return value == null || value.isBlank() ? fallback : value;
+    }
+
+    private void handleCompile(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, new byte[0]);
+                return;
+            }
+            JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+            String jobId = request.path("job_id").asText();
+            CompileResult result = compiler.compile(request.path("file_name").asText(), request.path("source_code").asText());
+            if (result.success()) {
+                writeClasses(result.classes());
+            }
+
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("success", result.success());
+            response.put("compile_ms", result.compileMillis());
+            response.put("messages", messages(jobId, result));
+            respond(exchange, 200, objectMapper.writeValueAsBytes(response));
+        } catch (Exception e) {
+            logger.warning("Compile request failed: " + e.getMessage());
+            respond(exchange, 500, objectMapper.writeValueAsBytes(Map.of("error", String.valueOf(e.getMessage()))));
+        }
+    }
+
+    private void writeClasses(Map<String, byte[]> classes) throws IOException {
+        for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+            Path file = classesDir.resolve(entry.getKey().replace('.', '/') + ".class");
+            Files.createDirectories(file.getParent());
+            Files.write(file, entry.getValue());
+        }
+    }
+
+    /**
+     * What compile-java-code.js published for a javac run: the compiler output as STDERR,
+     * and on failure a COMPLETION with exit code 1 that ends the job.
+     */
+    static List<Map<String, Object>> messages(String jobId, CompileResult result) {
+        List<Map<String, Object>> messages = new ArrayList<>(2);
+        if (!result.diagnostics().isEmpty()) {
+            Map<String, Object> stderr = new LinkedHashMap<>();
+            stderr.put("job_id", jobId);
+            stderr.put("type", "STDERR");
+            stderr.put("content", result.diagnostics());
+            messages.add(stderr);
+        }
+        if (!result.success()) {
+            Map<String, Object> completion = new LinkedHashMap<>();
+            completion.put("job_id", jobId);
+            completion.put("type", "COMPLETION");
+            completion.put("content", Map.of(
+                    "exitCode", 1,
+                    "metrics", Map.of("executionTime", result.compileMillis())));
+            messages.add(completion);
+        }
+        return messages;
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        if (body.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+}
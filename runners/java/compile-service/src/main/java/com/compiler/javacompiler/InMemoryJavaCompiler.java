@@ -0,0 +1,161 @@
+package com.compiler.javacompiler;
+
+import javax.lang.model.SourceVersion;
+import javax.tools.*;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * javac behind {@link JavaCompiler}, with sources read from strings and class files kept in memory.
+ * <p>
+ * The instance is meant to live as long as the process: the compiler classes get JIT-compiled
+ * after a few submissions and each thread keeps its {@link StandardJavaFileManager}, which caches
+ * the platform classes, so a typical submission compiles in tens of milliseconds instead of
+ * paying javac's start-up on every job.
+ */
+public class InMemoryJavaCompiler {
+
+    private final JavaCompiler compiler;
+    private final List<String> options;
+    // StandardJavaFileManager is not thread-safe; one per compiling thread
+    private final ThreadLocal<StandardJavaFileManager> fileManagers;
+
+    public InMemoryJavaCompiler(List<String> options) {
+        this.compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new IllegalStateException("No system Java compiler, run on a JDK rather than a JRE");
+        }
+        this.options = List.copyOf(options);
+        this.fileManagers = ThreadLocal.withInitial(() ->
+                compiler.getStandardFileManager(null, Locale.ROOT, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Compile one submission. {@code fileName} is the file name without ".java", as in SqsPayload.
+     */
+    public CompileResult compile(String fileName, String source) {
+        long start = System.nanoTime();
+        if (!SourceVersion.isIdentifier(fileName)) {
+            return new CompileResult(false, Map.of(), "error: invalid file name: " + fileName + "\r\n1 error\r\n",
+                    elapsedMillis(start));
+        }
+
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        ClassOutput output = new ClassOutput(fileManagers.get());
+        boolean success = compiler.getTask(null, output, diagnostics, options, null,
+                List.of(new SourceFile(fileName, source))).call();
+
+        return new CompileResult(success, success ? output.classes : Map.of(),
+                format(diagnostics.getDiagnostics(), source), elapsedMillis(start));
+    }
+
+    private static long elapsedMillis(long start) {
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    /**
+     * The report javac prints on the command line, with terminal line endings: the runner used to
+     * forward javac's pty output verbatim, so the frontend keeps seeing the same text.
+     */
+    static String format(List<Diagnostic<? extends JavaFileObject>> diagnostics, String source) {
+        if (diagnostics.isEmpty()) return "";
+
+        String[] lines = source.split("\r?\n", -1);
+        StringBuilder report = new StringBuilder();
+        int errors = 0;
+        int warnings = 0;
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics) {
+            String kind;
+            switch (diagnostic.getKind()) {
+                case ERROR -> { kind = "error"; errors++; }
+                case WARNING, MANDATORY_WARNING -> { kind = "warning"; warnings++; }
+                default -> kind = "Note";
+            }
+            String message = diagnostic.getMessage(Locale.ROOT);
+
+            long line = diagnostic.getLineNumber();
+            if (diagnostic.getSource() == null || line == Diagnostic.NOPOS || line > lines.length) {
+                report.append(kind).append(": ").append(message).append("\r\n");
+                continue;
+            }
+            report.append(diagnostic.getSource().getName()).append(':').append(line).append(": ")
+                    .append(kind).append(": ").append(message).append("\r\n");
+            String text = lines[(int) line - 1];
+            report.append(text).append("\r\n");
+            long column = diagnostic.getColumnNumber();
+            if (column != Diagnostic.NOPOS) {
+                report.append(" ".repeat((int) Math.min(column - 1, text.length()))).append("^\r\n");
+            }
+        }
+        if (errors > 0) report.append(errors).append(errors == 1 ? " error" : " errors").append("\r\n");
+        if (warnings > 0) report.append(warnings).append(warnings == 1 ? " warning" : " warnings").append("\r\n");
+        return report.toString();
+    }
+
+    private static final class SourceFile extends SimpleJavaFileObject {
+        private final String name;
+        private final String source;
+
+        SourceFile(String fileName, String source) {
+            super(URI.create("string:///" + fileName + Kind.SOURCE.extension), Kind.SOURCE);
+            this.name = fileName + Kind.SOURCE.extension;
+            this.source = source;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return source;
+        }
+    }
+
+    private static final class ClassFile extends SimpleJavaFileObject {
+        private final String className;
+        private final Map<String, byte[]> classes;
+
+        ClassFile(String className, Map<String, byte[]> classes) {
+            super(URI.create("bytes:///" + className.replace('.', '/') + Kind.CLASS.extension), Kind.CLASS);
+            this.className = className;
+            this.classes = classes;
+        }
+
+        @Override
+        public OutputStream openOutputStream() {
+            return new ByteArrayOutputStream() {
+                @Override
+                public void close() throws IOException {
+                    super.close();
+                    classes.put(className, toByteArray());
+                }
+            };
+        }
+    }
+
+    // Class files go to memory; everything else (platform classes, locations) comes from the standard manager
+    private static final class ClassOutput extends ForwardingJavaFileManager<StandardJavaFileManager> {
+        private final Map<String, byte[]> classes = new LinkedHashMap<>();
+
+        ClassOutput(StandardJavaFileManager fileManager) {
+            super(fileManager);
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind,
+                                                   FileObject sibling) {
+            return new ClassFile(className, classes);
+        }
+
+        @Override
+        public void close() {
+            // the standard manager is shared with later compilations on this thread
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.compiler.javacompiler;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.InstanceOfAssertFactories.MAP;
+
+class InMemoryJavaCompilerTests {
+
+	private final InMemoryJavaCompiler compiler = new InMemoryJavaCompiler(List.of("-proc:none"));
+
+	@Test
+	void compilesToClassFilesInMemory() {
+		CompileResult result = compiler.compile("Main", """
+				public class Main {
+					record Point(int x, int y) { }
+					public static void main(String[] args) {
+						System.out.println(new Point(1, 2));
+					}
+				}
+				""");
+
+		assertThat(result.success()).isTrue();
+		assertThat(result.diagnostics()).isEmpty();
+		assertThat(result.classes()).containsKeys("Main", "Main$Point");
+		// class file magic
+		assertThat(result.classes().get("Main")).startsWith(0xCA, 0xFE, 0xBA, 0xBE);
+	}
+
+	@Test
+	void reportsErrorsLikeJavac() {
+		CompileResult result = compiler.compile("Main", """
+				public class Main {
+				    public static void main(String[] args) {
+				        System.out.println("hi")
+				    }
+				}
+				""");
+
+		assertThat(result.success()).isFalse();
+		assertThat(result.classes()).isEmpty();
+		assertThat(result.diagnostics()).isEqualTo("""
+				Main.java:3: error: ';' expected\r
+				        System.out.println("hi")\r
+				                                ^\r
+				1 error\r
+				""");
+
+		List<Map<String, Object>> messages = CompileServer.messages("job-1", result);
+		assertThat(messages).extracting(m -> m.get("type")).containsExactly("STDERR", "COMPLETION");
+		assertThat(messages.get(1).get("content")).asInstanceOf(MAP)
+				.containsEntry("exitCode", 1);
+	}
+
+	@Test
+	void publicClassMustMatchFileName() {
+		CompileResult result = compiler.compile("Solution", "public class Main { }");
+
+		assertThat(result.success()).isFalse();
+		assertThat(result.diagnostics()).startsWith("Solution.java:1: error: class Main is public, should be declared in a file named Main.java");
+	}
+}
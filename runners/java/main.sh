@@ -1,3 +1,12 @@
 #!/bin/sh
 echo "Starting Java Runner..."
-exec node poller.js
\ No newline at end of file
+
+# In-memory javac kept warm for the poller (see compile-service/); the runner falls back
+# to spawning javac for any job that arrives before it is listening
+if [ -f compile-service.jar ]; then
+    echo "Starting Java compile service..."
+    java -XX:+UseSerialGC -Xmx512m -jar compile-service.jar &
+    export JAVA_COMPILE_SERVICE_URL="http://127.0.0.1:${COMPILE_SERVICE_PORT:-8090}"
+fi
+
+exec node poller.js
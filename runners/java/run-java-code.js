@@ -4,7 +4,7 @@ const path = require("path");
 const pidusage = require('pidusage');
 
 const { publishMessage } = require("./send-output");
-const { terminateJob, addJob } = require("./script.js");
+const { terminateJob, addJob, isPaused } = require("./script.js");
 
 let pending = Promise.resolve();
 
@@ -155,6 +155,9 @@ const runJavaCode = (file_name, job_id, options = {}) => {
         // first send 2 - 3 warning then terminate the process
         // ===============================================
         activityMonitor = setInterval(() => {
+            // held by backend flow control, not stuck
+            if (isPaused(job_id)) lastActivityTime = Date.now();
+
             const timeSinceLastActivity = Date.now() - lastActivityTime;
             // If no output for 30 seconds but process is still running, it might be stuck
             if (timeSinceLastActivity > 30000 && !isTerminated) {
@@ -1,7 +1,7 @@
 const { promises: fs } = require("fs");
 const path = require("path");
 
-const { compileJavaCode } = require("./compile-java-code");
+const { compile } = require("./compile-java-code");
 const { runJavaCode } = require("./run-java-code");
 const {subscribeToChannel, unsubscribeFromChannel} = require("./redis-subscriber")
 
@@ -26,7 +26,7 @@ function runCode(messageBody, job_id) {
 
       // compile
       console.log("compiling java code")
-      const compilationResult = await compileJavaCode(`${file_name}.java`, job_id)
+      const compilationResult = await compile(file_name, source_code, job_id)
       console.log("Compilation result:", compilationResult)
       
 
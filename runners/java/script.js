@@ -1,6 +1,9 @@
 // Active jobs map (job_id → ptyProcess)
 const activeJobs = new Map();
 
+// Jobs whose output the backend asked us to hold (OUTPUT_PAUSE_EVENT)
+const pausedJobs = new Set();
+
 
 const addJob = (job_id, ptyProcess) => {
   activeJobs.set(job_id, ptyProcess);
@@ -15,6 +18,7 @@ const terminateJob = (job_id) => {
     console.log(`Terminating job: ${job_id}`);
     process.kill(); // sends SIGTERM
     activeJobs.delete(job_id);
+    pausedJobs.delete(job_id);
     return true;
   }
 
@@ -22,4 +26,26 @@ const terminateJob = (job_id) => {
 }
 
 
-module.exports = { addJob, terminateJob, activeJobs }
\ No newline at end of file
+// Stop reading the PTY: once its buffer fills, the program blocks on write
+const pauseJob = (job_id) => {
+  const process = activeJobs.get(job_id);
+  if (process && !pausedJobs.has(job_id)) {
+    process.pause();
+    pausedJobs.add(job_id);
+  }
+}
+
+
+const resumeJob = (job_id) => {
+  const process = activeJobs.get(job_id);
+  if (process && pausedJobs.has(job_id)) {
+    process.resume();
+  }
+  pausedJobs.delete(job_id);
+}
+
+
+const isPaused = (job_id) => pausedJobs.has(job_id);
+
+
+module.exports = { addJob, terminateJob, pauseJob, resumeJob, isPaused, activeJobs }
\ No newline at end of file
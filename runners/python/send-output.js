@@ -15,8 +15,30 @@ const redis = new Redis({
 });
 
 
+// "stream": also record output in a capped Redis Stream so a client that
+// reconnects can have the gap replayed (backend app.jobs.output.transport=stream)
+const OUTPUT_TRANSPORT = process.env.OUTPUT_TRANSPORT || "pubsub";
+const OUTPUT_STREAM_MAXLEN = process.env.OUTPUT_STREAM_MAXLEN || 10000;
+const OUTPUT_STREAM_TTL_SECONDS = process.env.OUTPUT_STREAM_TTL_SECONDS || 600;
+
+// XADD + PUBLISH in one round trip; the published payload is tagged with the entry id as "seq"
+redis.defineCommand("appendOutput", {
+    numberOfKeys: 1,
+    lua: `
+        local id = redis.call("XADD", KEYS[1], "MAXLEN", "~", ARGV[1], "*", "data", ARGV[4])
+        redis.call("EXPIRE", KEYS[1], ARGV[2])
+        redis.call("PUBLISH", ARGV[3], '{"seq":"' .. id .. '",' .. string.sub(ARGV[4], 2))
+        return id
+    `
+});
+
+
 const publishMessage = async (job_id, sendData) => {
-    await redis.publish(`job:${job_id}`, sendData);
+    if (OUTPUT_TRANSPORT === "stream") {
+        await redis.appendOutput(`job-stream:${job_id}`, OUTPUT_STREAM_MAXLEN, OUTPUT_STREAM_TTL_SECONDS, `job:${job_id}`, sendData);
+    } else {
+        await redis.publish(`job:${job_id}`, sendData);
+    }
     // console.log(`Message published! job_id=${job_id}`);
 }
 